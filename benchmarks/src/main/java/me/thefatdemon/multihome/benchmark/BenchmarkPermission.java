@@ -0,0 +1,103 @@
+package me.thefatdemon.multihome.benchmark;
+
+import net.milkbowl.vault.permission.Permission;
+
+import java.util.Set;
+
+/**
+ * Vault permission provider that grants the same fixed set of nodes to every player and puts
+ * everyone in one group. Changes are refused.
+ */
+public class BenchmarkPermission extends Permission {
+	private final Set<String> granted;
+	private final String group;
+
+	/**
+	 * @param granted Permission nodes every player has.
+	 * @param group Group every player is in.
+	 */
+	public BenchmarkPermission(Set<String> granted, String group) {
+		this.granted = granted;
+		this.group = group;
+	}
+
+	@Override
+	public String getName() {
+		return "BenchmarkPermission";
+	}
+
+	@Override
+	public boolean isEnabled() {
+		return true;
+	}
+
+	@Override
+	public boolean hasSuperPermsCompat() {
+		return true;
+	}
+
+	@Override
+	public boolean playerHas(String world, String player, String permission) {
+		return this.granted.contains(permission);
+	}
+
+	@Override
+	public boolean playerAdd(String world, String player, String permission) {
+		return false;
+	}
+
+	@Override
+	public boolean playerRemove(String world, String player, String permission) {
+		return false;
+	}
+
+	@Override
+	public boolean groupHas(String world, String group, String permission) {
+		return this.group.equals(group) && this.granted.contains(permission);
+	}
+
+	@Override
+	public boolean groupAdd(String world, String group, String permission) {
+		return false;
+	}
+
+	@Override
+	public boolean groupRemove(String world, String group, String permission) {
+		return false;
+	}
+
+	@Override
+	public boolean playerInGroup(String world, String player, String group) {
+		return this.group.equals(group);
+	}
+
+	@Override
+	public boolean playerAddGroup(String world, String player, String group) {
+		return false;
+	}
+
+	@Override
+	public boolean playerRemoveGroup(String world, String player, String group) {
+		return false;
+	}
+
+	@Override
+	public String[] getPlayerGroups(String world, String player) {
+		return new String[] { this.group };
+	}
+
+	@Override
+	public String getPrimaryGroup(String world, String player) {
+		return this.group;
+	}
+
+	@Override
+	public String[] getGroups() {
+		return new String[] { this.group };
+	}
+
+	@Override
+	public boolean hasGroupSupport() {
+		return true;
+	}
+}
@@ -0,0 +1,70 @@
+package me.thefatdemon.multihome.benchmark;
+
+import org.bukkit.Location;
+import org.bukkit.entity.Player;
+
+import java.util.HashMap;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An online player stand-in. Messages and teleports are dropped, but counted as responses,
+ * so a benchmark can tell when a command has finished.
+ */
+public class BenchmarkPlayer {
+	private final Player player;
+	private final AtomicInteger responses = new AtomicInteger();
+
+	/**
+	 * @param server Server the player is on.
+	 * @param name Player name.
+	 * @param uuid Player UUID.
+	 * @param location Where the player stands. getLocation returns a copy.
+	 * @param permissions Permission nodes the player has.
+	 */
+	public BenchmarkPlayer(BenchmarkServer server, String name, UUID uuid, final Location location, final Set<String> permissions) {
+		Stubs.Answer respond = new Stubs.Answer() {
+			@Override
+			public Object answer(Object[] args) {
+				responses.incrementAndGet();
+				return true;
+			}
+		};
+
+		HashMap<String, Object> answers = new HashMap<String, Object>();
+		answers.put("getName", name);
+		answers.put("getDisplayName", name);
+		answers.put("getUniqueId", uuid);
+		answers.put("isOnline", true);
+		answers.put("getServer", server.getServer());
+		answers.put("getWorld", location.getWorld());
+		answers.put("getLocation", new Stubs.Answer() {
+			@Override
+			public Object answer(Object[] args) {
+				return location.clone();
+			}
+		});
+		answers.put("hasPermission", new Stubs.Answer() {
+			@Override
+			public Object answer(Object[] args) {
+				return permissions.contains(args[0]);
+			}
+		});
+		answers.put("sendMessage", respond);
+		answers.put("teleport", respond);
+
+		this.player = Stubs.create(Player.class, answers);
+	}
+
+	public Player getPlayer() {
+		return this.player;
+	}
+
+	/**
+	 * @return AtomicInteger Number of messages and teleports the player has received.
+	 */
+	public AtomicInteger getResponses() {
+		return this.responses;
+	}
+}
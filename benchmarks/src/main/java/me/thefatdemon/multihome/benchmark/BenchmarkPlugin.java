@@ -0,0 +1,61 @@
+package me.thefatdemon.multihome.benchmark;
+
+import me.thefatdemon.multihome.MultiHome;
+import me.thefatdemon.multihome.Settings;
+import org.bukkit.plugin.PluginDescriptionFile;
+import org.bukkit.plugin.PluginLoader;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+/**
+ * The plug-in, created against a BenchmarkServer with its data folder in a temporary directory.
+ * Settings are loaded from the bundled config.yml, so managers see the shipped defaults.
+ */
+public class BenchmarkPlugin extends MultiHome {
+	private BenchmarkPlugin(BenchmarkServer server, File dataFolder) {
+		super(Stubs.create(PluginLoader.class), server.getServer(), new PluginDescriptionFile("MultiHome", "benchmark", MultiHome.class.getName()),
+				dataFolder, new File(dataFolder, "MultiHome.jar"));
+	}
+
+	public static BenchmarkPlugin create(BenchmarkServer server) throws IOException {
+		BenchmarkPlugin plugin = new BenchmarkPlugin(server, Files.createTempDirectory("multihome-benchmark").toFile());
+
+		Settings.initialize(plugin);
+		Settings.loadSettings();
+		return plugin;
+	}
+
+	/**
+	 * Enables the plug-in as the server would, running onEnable.
+	 */
+	public void enable() {
+		setEnabled(true);
+	}
+
+	/**
+	 * Disables the plug-in as the server would, running onDisable.
+	 */
+	public void disable() {
+		setEnabled(false);
+	}
+
+	/**
+	 * Removes the data folder and everything in it.
+	 */
+	public void deleteDataFolder() {
+		delete(getDataFolder());
+	}
+
+	private static void delete(File file) {
+		File[] children = file.listFiles();
+
+		if (children != null) {
+			for (File child : children) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+}
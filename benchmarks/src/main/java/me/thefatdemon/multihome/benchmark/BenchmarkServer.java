@@ -0,0 +1,238 @@
+package me.thefatdemon.multihome.benchmark;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Server;
+import org.bukkit.World;
+import org.bukkit.command.PluginCommand;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.plugin.PluginManager;
+import org.bukkit.plugin.RegisteredServiceProvider;
+import org.bukkit.plugin.ServicePriority;
+import org.bukkit.plugin.ServicesManager;
+import org.bukkit.scheduler.BukkitScheduler;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.UUID;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * Minimal stand-in for a Bukkit server.
+ * Tasks scheduled with runTask are queued for the primary thread and run by runTasksUntil;
+ * repeating and asynchronous tasks are accepted but never run, so background flushes and
+ * sweeps stay out of the measurements. The newest server is the one Bukkit.getServer() returns.
+ */
+public class BenchmarkServer {
+	private static final long TASK_TIMEOUT = 5000; // Milliseconds runTasksUntil waits before giving up.
+	private static volatile BenchmarkServer current;
+
+	private final LinkedHashMap<String, World> worlds = new LinkedHashMap<String, World>();
+	private final LinkedHashMap<UUID, Player> players = new LinkedHashMap<UUID, Player>();
+	private final HashMap<Class<?>, RegisteredServiceProvider<?>> services = new HashMap<Class<?>, RegisteredServiceProvider<?>>();
+	private final HashMap<String, PluginCommand> commands = new HashMap<String, PluginCommand>();
+	private final LinkedBlockingQueue<Runnable> mainThreadTasks = new LinkedBlockingQueue<Runnable>();
+	private volatile Thread primaryThread = Thread.currentThread();
+	private Plugin commandOwner;
+	private final Server server;
+
+	public BenchmarkServer() {
+		final BukkitTask task = Stubs.create(BukkitTask.class);
+
+		HashMap<String, Object> scheduler = new HashMap<String, Object>();
+		for (String method : new String[] { "runTaskAsynchronously", "runTaskLater", "runTaskLaterAsynchronously", "runTaskTimer", "runTaskTimerAsynchronously" }) {
+			scheduler.put(method, task);
+		}
+		scheduler.put("runTask", new Stubs.Answer() {
+			@Override
+			public Object answer(Object[] args) {
+				mainThreadTasks.add((Runnable) args[1]);
+				return task;
+			}
+		});
+
+		HashMap<String, Object> servicesManager = new HashMap<String, Object>();
+		servicesManager.put("getRegistration", new Stubs.Answer() {
+			@Override
+			public Object answer(Object[] args) {
+				return services.get(args[0]);
+			}
+		});
+
+		HashMap<String, Object> server = new HashMap<String, Object>();
+		server.put("getName", "BenchmarkServer");
+		server.put("getVersion", "benchmark");
+		server.put("getBukkitVersion", "1.8-R0.1-SNAPSHOT");
+		server.put("getLogger", Logger.getLogger("Minecraft"));
+		server.put("isPrimaryThread", new Stubs.Answer() {
+			@Override
+			public Object answer(Object[] args) {
+				return Thread.currentThread() == primaryThread;
+			}
+		});
+		server.put("getScheduler", Stubs.create(BukkitScheduler.class, scheduler));
+		server.put("getServicesManager", Stubs.create(ServicesManager.class, servicesManager));
+		server.put("getPluginManager", Stubs.create(PluginManager.class));
+		server.put("getWorld", new Stubs.Answer() {
+			@Override
+			public Object answer(Object[] args) {
+				return args[0] instanceof String ? worlds.get(args[0]) : null;
+			}
+		});
+		server.put("getWorlds", new Stubs.Answer() {
+			@Override
+			public Object answer(Object[] args) {
+				return new ArrayList<World>(worlds.values());
+			}
+		});
+		Stubs.Answer findPlayer = new Stubs.Answer() {
+			@Override
+			public Object answer(Object[] args) {
+				return findPlayer(args[0]);
+			}
+		};
+		server.put("getPlayer", findPlayer);
+		server.put("getPlayerExact", findPlayer);
+		server.put("matchPlayer", new Stubs.Answer() {
+			@Override
+			public Object answer(Object[] args) {
+				ArrayList<Player> matches = new ArrayList<Player>(1);
+				Player player = findPlayer(args[0]);
+				if (player != null) matches.add(player);
+				return matches;
+			}
+		});
+		server.put("getOnlinePlayers", new Stubs.Answer() {
+			@Override
+			public Object answer(Object[] args) {
+				return new ArrayList<Player>(players.values());
+			}
+		});
+		server.put("getPluginCommand", new Stubs.Answer() {
+			@Override
+			public Object answer(Object[] args) throws Exception {
+				return getPluginCommand((String) args[0]);
+			}
+		});
+
+		this.server = Stubs.create(Server.class, server);
+		makeCurrent(this);
+	}
+
+	/**
+	 * Creates a world the server will return from getWorld.
+	 */
+	public World addWorld(String name) {
+		HashMap<String, Object> answers = new HashMap<String, Object>();
+		answers.put("getName", name);
+
+		World world = Stubs.create(World.class, answers);
+		this.worlds.put(name, world);
+		return world;
+	}
+
+	/**
+	 * Puts a player online.
+	 */
+	public void addPlayer(Player player) {
+		this.players.put(player.getUniqueId(), player);
+	}
+
+	/**
+	 * Registers a service provider, such as a Vault permission or economy implementation.
+	 */
+	public <T> void registerService(Class<T> service, T provider, Plugin owner) {
+		this.services.put(service, new RegisteredServiceProvider<T>(service, provider, ServicePriority.Normal, owner));
+	}
+
+	/**
+	 * Every command looked up from now on is created on the fly and owned by this plug-in.
+	 */
+	public void registerCommands(Plugin owner) {
+		this.commandOwner = owner;
+		this.commands.clear();
+	}
+
+	/**
+	 * Makes the calling thread the one isPrimaryThread answers true for.
+	 */
+	public void claimPrimaryThread() {
+		this.primaryThread = Thread.currentThread();
+	}
+
+	/**
+	 * Runs queued primary thread tasks until the counter reaches the target.
+	 * @throws IllegalStateException If nothing moves the counter within a few seconds.
+	 */
+	public void runTasksUntil(AtomicInteger counter, int target) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(TASK_TIMEOUT);
+
+		while (counter.get() < target) {
+			Runnable task = this.mainThreadTasks.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+
+			if (task == null) {
+				throw new IllegalStateException("Timed out waiting for the command to finish.");
+			}
+			task.run();
+		}
+	}
+
+	public PluginCommand getPluginCommand(String name) throws ReflectiveOperationException {
+		if (this.commandOwner == null) return null;
+
+		PluginCommand command = this.commands.get(name);
+		if (command == null) {
+			// PluginCommand is final with a protected constructor; servers create them the same way.
+			Constructor<PluginCommand> constructor = PluginCommand.class.getDeclaredConstructor(String.class, Plugin.class);
+			constructor.setAccessible(true);
+			command = constructor.newInstance(name, this.commandOwner);
+			this.commands.put(name, command);
+		}
+		return command;
+	}
+
+	public Server getServer() {
+		return this.server;
+	}
+
+	private Player findPlayer(Object key) {
+		if (key instanceof UUID) return this.players.get(key);
+
+		for (Player player : this.players.values()) {
+			if (player.getName().equalsIgnoreCase((String) key)) return player;
+		}
+		return null;
+	}
+
+	/**
+	 * Bukkit accepts one server per JVM, so the first server installs a proxy that forwards
+	 * to whichever server was created last.
+	 */
+	private static synchronized void makeCurrent(BenchmarkServer server) {
+		boolean install = current == null;
+		current = server;
+
+		if (install) {
+			Bukkit.setServer((Server) Proxy.newProxyInstance(Server.class.getClassLoader(), new Class<?>[] { Server.class }, new InvocationHandler() {
+				@Override
+				public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+					try {
+						return method.invoke(current.server, args);
+					} catch (InvocationTargetException e) {
+						throw e.getCause();
+					}
+				}
+			}));
+		}
+	}
+}
@@ -0,0 +1,160 @@
+package me.thefatdemon.multihome.benchmark;
+
+import net.milkbowl.vault.economy.Economy;
+import net.milkbowl.vault.economy.EconomyResponse;
+import net.milkbowl.vault.permission.Permission;
+import org.bukkit.Location;
+import org.bukkit.command.CommandExecutor;
+import org.bukkit.command.PluginCommand;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Player commands run end to end through MultiHomeCommandExecutor.onCommand on an enabled
+ * plug-in: permission checks through a Vault stand-in, settings lookups, the economy check
+ * and charge, the cooldown check and update, the warmup or teleport, and the home lookup
+ * on the I/O threads with its callback back on the primary thread. One operation lasts
+ * until the player has been answered. Run with -prof gc for allocation per command.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CommandBenchmark {
+	private static final String GROUP = "default";
+	private static final int HOMES = 20;
+	private static final int COST = 10;
+
+	/**
+	 * home: /home. homeNamed: /home home1. setHomeNamed: /sethome home1. listHomes: /listhomes.
+	 */
+	@Param({ "home", "homeNamed", "setHomeNamed", "listHomes" })
+	public String command;
+
+	/**
+	 * Seconds permission decisions are cached for. 0 asks Vault on every check.
+	 */
+	@Param({ "0", "5" })
+	public int permissionCacheTime;
+
+	/**
+	 * Warmup in seconds. With a warmup, /home ends once the warmup is scheduled.
+	 */
+	@Param({ "0", "3" })
+	public int warmup;
+
+	private BenchmarkServer server;
+	private BenchmarkPlugin plugin;
+	private BenchmarkPlayer player;
+
+	private PluginCommand pluginCommand;
+	private CommandExecutor executor;
+	private String[] args;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		this.server = new BenchmarkServer();
+		Location location = new Location(this.server.addWorld(Dataset.WORLD), 100.5, 64, -100.5);
+		this.plugin = BenchmarkPlugin.create(this.server);
+
+		this.plugin.getConfig().set("MultiHome.enableEconomy", true);
+		this.plugin.getConfig().set("MultiHome.dataStoreMethod", "file");
+		this.plugin.getConfig().set("MultiHome.permissionCacheTime", this.permissionCacheTime);
+		this.plugin.getConfig().set("MultiHome.default.warmup", this.warmup);
+		this.plugin.getConfig().set("MultiHome.default.cooldown", 5);
+		for (String cost : new String[] { "homeCost", "namedHomeCost", "setHomeCost", "setNamedHomeCost" }) {
+			this.plugin.getConfig().set("MultiHome.default." + cost, COST);
+		}
+
+		// Everything a paying player needs. The cooldown is recorded but never blocks the next command.
+		HashSet<String> permissions = new HashSet<String>(Arrays.asList("multihome.defaulthome.go", "multihome.namedhome.go",
+				"multihome.namedhome.set", "multihome.namedhome.list", "multihome.ignore.cooldown"));
+
+		Dataset dataset = new Dataset(HOMES, HOMES);
+		UUID uuid = dataset.player(0);
+		dataset.writeHomesFile(new File(this.plugin.getDataFolder(), "homes.txt"));
+
+		this.player = new BenchmarkPlayer(this.server, "Player0", uuid, location, permissions);
+		this.server.addPlayer(this.player.getPlayer());
+		this.server.registerService(Permission.class, new BenchmarkPermission(permissions, GROUP), this.plugin);
+		this.server.registerService(Economy.class, createEconomy(), this.plugin);
+		this.server.registerCommands(this.plugin);
+
+		this.plugin.enable();
+		this.plugin.getHomeManager().addHome(uuid, "", location);
+
+		if (this.command.equals("home")) {
+			use("home");
+		} else if (this.command.equals("homeNamed")) {
+			use("home", dataset.homeName(1));
+		} else if (this.command.equals("setHomeNamed")) {
+			use("sethome", dataset.homeName(1));
+		} else if (this.command.equals("listHomes")) {
+			use("listhomes");
+		} else {
+			throw new IllegalArgumentException("Unknown command: " + this.command);
+		}
+	}
+
+	@Setup(Level.Iteration)
+	public void claimPrimaryThread() {
+		this.server.claimPrimaryThread();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		this.plugin.disable();
+		this.plugin.deleteDataFolder();
+	}
+
+	@Benchmark
+	public int runCommand() throws InterruptedException {
+		int target = this.player.getResponses().get() + 1;
+
+		this.executor.onCommand(this.player.getPlayer(), this.pluginCommand, this.pluginCommand.getName(), this.args);
+		this.server.runTasksUntil(this.player.getResponses(), target);
+		return target;
+	}
+
+	private void use(String name, String... args) throws ReflectiveOperationException {
+		this.pluginCommand = this.server.getPluginCommand(name);
+		this.executor = this.pluginCommand.getExecutor();
+		this.args = args;
+	}
+
+	/**
+	 * Vault economy where every player can afford everything and every charge succeeds.
+	 */
+	private static Economy createEconomy() {
+		Stubs.Answer charge = new Stubs.Answer() {
+			@Override
+			public Object answer(Object[] args) {
+				return new EconomyResponse((Double) args[1], 1000000, EconomyResponse.ResponseType.SUCCESS, null);
+			}
+		};
+		Stubs.Answer format = new Stubs.Answer() {
+			@Override
+			public Object answer(Object[] args) {
+				return String.format("$%.2f", (Double) args[0]);
+			}
+		};
+
+		HashMap<String, Object> answers = new HashMap<String, Object>();
+		answers.put("getName", "BenchmarkEconomy");
+		answers.put("isEnabled", true);
+		answers.put("has", true);
+		answers.put("format", format);
+		answers.put("bankWithdraw", charge);
+		answers.put("withdrawPlayer", charge);
+
+		return Stubs.create(Economy.class, answers);
+	}
+}
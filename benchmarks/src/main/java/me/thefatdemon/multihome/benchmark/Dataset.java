@@ -0,0 +1,190 @@
+package me.thefatdemon.multihome.benchmark;
+
+import me.thefatdemon.multihome.data.home.HomeEntry;
+import me.thefatdemon.multihome.data.home.HomeManager;
+import me.thefatdemon.multihome.data.invite.InviteEntry;
+import me.thefatdemon.multihome.data.invite.InviteManager;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * A reproducible set of players, homes and invites.
+ * Every player owns the same number of homes, named "home0", "home1" and so on, and invites
+ * the next player to their first home. The same parameters always produce the same data.
+ */
+public class Dataset {
+	public static final String WORLD = "world";
+	private static final long PLAYER_PREFIX = 0x4D756C7469486F6DL; // High bits shared by every generated player UUID.
+
+	private final int players;
+	private final int homesPerPlayer;
+
+	/**
+	 * @param homes Total number of homes. Rounded down to a whole number of players.
+	 * @param homesPerPlayer Homes owned by each player.
+	 */
+	public Dataset(int homes, int homesPerPlayer) {
+		this.homesPerPlayer = Math.max(1, homesPerPlayer);
+		this.players = Math.max(1, homes / this.homesPerPlayer);
+	}
+
+	public int getPlayers() {
+		return this.players;
+	}
+
+	public int getHomesPerPlayer() {
+		return this.homesPerPlayer;
+	}
+
+	public UUID player(int player) {
+		return new UUID(PLAYER_PREFIX, player);
+	}
+
+	public String homeName(int home) {
+		return "home" + home;
+	}
+
+	public HomeEntry home(int player, int home) {
+		return new HomeEntry(player(player), homeName(home), WORLD, player * 16 + 0.5, 64, home * 16 + 0.5, 0, home % 360);
+	}
+
+	/**
+	 * @return InviteEntry The invite the player sends to the next player.
+	 */
+	public InviteEntry invite(int player) {
+		return new InviteEntry(player(player).toString(), homeName(0), player((player + 1) % this.players).toString());
+	}
+
+	/**
+	 * Writes every home in the homes.txt format read by HomeManagerFile.
+	 */
+	public void writeHomesFile(File file) throws IOException {
+		BufferedWriter writer = new BufferedWriter(new FileWriter(file));
+
+		try {
+			writer.write("# Stores user home locations.\n");
+			writer.write("# <username>;<x>;<y>;<z>;<pitch>;<yaw>;<world>[;<name>]\n\n");
+
+			for (int player = 0; player < this.players; player++) {
+				for (int home = 0; home < this.homesPerPlayer; home++) {
+					HomeEntry entry = home(player, home);
+
+					writer.write(entry.getOwner() + ";" + entry.getX() + ";" + entry.getY() + ";" + entry.getZ() + ";"
+							+ entry.getPitch() + ";" + entry.getYaw() + ";" + entry.getWorld() + ";" + entry.getHomeName() + "\n");
+				}
+			}
+		} finally {
+			writer.close();
+		}
+	}
+
+	/**
+	 * Writes every invite in the invites.txt format read by InviteManagerFile.
+	 */
+	public void writeInvitesFile(File file) throws IOException {
+		BufferedWriter writer = new BufferedWriter(new FileWriter(file));
+
+		try {
+			writer.write("# Stores user home invites.\n");
+			writer.write("# <owner>;<home>;<target>;[<expiry>];[<reason>]\n\n");
+
+			for (int player = 0; player < this.players; player++) {
+				InviteEntry invite = invite(player);
+
+				writer.write(invite.getInviteSource() + ";" + invite.getInviteHome() + ";" + invite.getInviteTarget() + ";;\n");
+			}
+		} finally {
+			writer.close();
+		}
+	}
+
+	/**
+	 * Loads every home into the manager through importHomes, a batch at a time.
+	 */
+	public void importHomes(HomeManager manager, int batchSize) {
+		ArrayList<HomeEntry> batch = new ArrayList<HomeEntry>(batchSize);
+
+		for (int player = 0; player < this.players; player++) {
+			for (int home = 0; home < this.homesPerPlayer; home++) {
+				batch.add(home(player, home));
+
+				if (batch.size() >= batchSize) {
+					manager.importHomes(batch, false);
+					batch.clear();
+				}
+			}
+		}
+		if (!batch.isEmpty()) {
+			manager.importHomes(batch, false);
+		}
+	}
+
+	/**
+	 * Loads every invite into the manager through importInvites, a batch at a time.
+	 */
+	public void importInvites(InviteManager manager, int batchSize) {
+		ArrayList<InviteEntry> batch = new ArrayList<InviteEntry>(batchSize);
+
+		for (int player = 0; player < this.players; player++) {
+			batch.add(invite(player));
+
+			if (batch.size() >= batchSize) {
+				manager.importInvites(batch, false);
+				batch.clear();
+			}
+		}
+		if (!batch.isEmpty()) {
+			manager.importInvites(batch, false);
+		}
+	}
+
+	/**
+	 * Picks existing homes at random, so lookups are not served from one warm spot.
+	 * @param size Number of picks. Rounded up to a power of two.
+	 */
+	public Sample sample(int size, long seed) {
+		return new Sample(this, Integer.highestOneBit(Math.max(1, size - 1)) << 1, new Random(seed));
+	}
+
+	/**
+	 * Pre-built keys of existing homes, cycled through by benchmarks so key creation is not measured.
+	 */
+	public static class Sample {
+		private final UUID[] owners;
+		private final String[] homes;
+		private final int mask;
+		private int cursor = 0;
+
+		private Sample(Dataset dataset, int size, Random random) {
+			this.owners = new UUID[size];
+			this.homes = new String[size];
+			this.mask = size - 1;
+
+			for (int index = 0; index < size; index++) {
+				this.owners[index] = dataset.player(random.nextInt(dataset.players));
+				this.homes[index] = dataset.homeName(random.nextInt(dataset.homesPerPlayer));
+			}
+		}
+
+		/**
+		 * Moves to the next pick.
+		 */
+		public void next() {
+			this.cursor = (this.cursor + 1) & this.mask;
+		}
+
+		public UUID owner() {
+			return this.owners[this.cursor];
+		}
+
+		public String home() {
+			return this.homes[this.cursor];
+		}
+	}
+}
@@ -0,0 +1,34 @@
+package me.thefatdemon.multihome.benchmark;
+
+import me.thefatdemon.multihome.data.cooldown.CoolDownManagerFile;
+import me.thefatdemon.multihome.data.home.HomeManagerFile;
+import me.thefatdemon.multihome.data.invite.InviteManagerFile;
+import org.openjdk.jmh.annotations.Param;
+
+import java.io.File;
+
+/**
+ * The "file" storage method. The data files are written out before the managers are
+ * created, so setup measures nothing but the initial load.
+ */
+public class FileStorageBenchmark extends StorageBenchmark {
+	@Param({ "true", "false" })
+	public boolean writeBehind;
+
+	@Override
+	protected void open() throws Exception {
+		this.plugin.getConfig().set("MultiHome.dataStoreSettings.file.writeBehind", this.writeBehind);
+
+		this.dataset.writeHomesFile(new File(this.plugin.getDataFolder(), "homes.txt"));
+		this.dataset.writeInvitesFile(new File(this.plugin.getDataFolder(), "invites.txt"));
+
+		this.homeManager = new HomeManagerFile(this.plugin);
+		this.inviteManager = new InviteManagerFile(this.plugin);
+		this.coolDownManager = new CoolDownManagerFile(this.plugin);
+	}
+
+	@Override
+	protected void close() {
+		this.homeManager.shutdown();
+	}
+}
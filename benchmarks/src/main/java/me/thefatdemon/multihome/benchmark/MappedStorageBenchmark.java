@@ -0,0 +1,33 @@
+package me.thefatdemon.multihome.benchmark;
+
+import me.thefatdemon.multihome.data.cooldown.CoolDownManagerFile;
+import me.thefatdemon.multihome.data.home.HomeManagerMapped;
+import me.thefatdemon.multihome.data.invite.InviteManagerFile;
+
+import java.io.File;
+
+/**
+ * The "mapped" storage method. homes.dat is filled by a first manager and reopened by a
+ * second one, so the measured manager starts from the file like it would on a restart.
+ */
+public class MappedStorageBenchmark extends StorageBenchmark {
+	private static final int IMPORT_BATCH_SIZE = 10000;
+
+	@Override
+	protected void open() throws Exception {
+		HomeManagerMapped writer = new HomeManagerMapped(this.plugin);
+		this.dataset.importHomes(writer, IMPORT_BATCH_SIZE);
+		writer.shutdown();
+
+		this.dataset.writeInvitesFile(new File(this.plugin.getDataFolder(), "invites.txt"));
+
+		this.homeManager = new HomeManagerMapped(this.plugin);
+		this.inviteManager = new InviteManagerFile(this.plugin);
+		this.coolDownManager = new CoolDownManagerFile(this.plugin);
+	}
+
+	@Override
+	protected void close() {
+		this.homeManager.shutdown();
+	}
+}
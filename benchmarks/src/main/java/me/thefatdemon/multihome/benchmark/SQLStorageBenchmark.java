@@ -0,0 +1,52 @@
+package me.thefatdemon.multihome.benchmark;
+
+import me.thefatdemon.multihome.data.ConnectionPool;
+import me.thefatdemon.multihome.data.SchemaManager;
+import me.thefatdemon.multihome.data.cooldown.CoolDownManagerMySQL;
+import me.thefatdemon.multihome.data.home.HomeManagerMySQL;
+import me.thefatdemon.multihome.data.invite.InviteManagerMySQL;
+
+import java.sql.Connection;
+import java.sql.Statement;
+
+/**
+ * The "sql" storage method against an in-memory H2 database in MySQL mode, created through
+ * SchemaManager like a real one. Numbers show the cost of the managers and their queries,
+ * not network round trips to a MySQL server.
+ */
+public class SQLStorageBenchmark extends StorageBenchmark {
+	private static final int IMPORT_BATCH_SIZE = 1000;
+
+	private ConnectionPool pool;
+
+	@Override
+	protected void open() throws Exception {
+		String url = "jdbc:h2:mem:multihome-" + System.nanoTime() + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1";
+
+		this.pool = new ConnectionPool(this.plugin, url, "sa", "", 4, 5000, 30000, 0);
+		if (!new SchemaManager(this.plugin, this.pool).update()) {
+			throw new IllegalStateException("Could not create the benchmark schema.");
+		}
+
+		this.homeManager = new HomeManagerMySQL(this.plugin, this.pool);
+		this.inviteManager = new InviteManagerMySQL(this.plugin, this.pool);
+		this.coolDownManager = new CoolDownManagerMySQL(this.plugin, this.pool);
+
+		this.dataset.importHomes(this.homeManager, IMPORT_BATCH_SIZE);
+		this.dataset.importInvites(this.inviteManager, IMPORT_BATCH_SIZE);
+	}
+
+	@Override
+	protected void close() throws Exception {
+		Connection connection = this.pool.getConnection();
+
+		try {
+			Statement statement = connection.createStatement();
+			statement.execute("SHUTDOWN");
+			statement.close();
+		} finally {
+			connection.close();
+			this.pool.close();
+		}
+	}
+}
@@ -0,0 +1,118 @@
+package me.thefatdemon.multihome.benchmark;
+
+import me.thefatdemon.multihome.data.cooldown.CoolDownEntry;
+import me.thefatdemon.multihome.data.cooldown.CoolDownManager;
+import me.thefatdemon.multihome.data.home.HomeEntry;
+import me.thefatdemon.multihome.data.home.HomeManager;
+import me.thefatdemon.multihome.data.invite.InviteEntry;
+import me.thefatdemon.multihome.data.invite.InviteManager;
+import org.bukkit.Location;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Operations every storage backend is measured on. Subclasses open the managers for one
+ * backend over the generated dataset; the dataset size and shape are JMH parameters.
+ * addHome and addCooldown overwrite existing entries, so the dataset does not grow while measuring.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public abstract class StorageBenchmark {
+	private static final int SAMPLE_SIZE = 4096;
+	private static final long SEED = 42;
+
+	@Param({ "1000", "100000", "1000000" })
+	public int homes;
+
+	@Param({ "1", "10", "500" })
+	public int homesPerPlayer;
+
+	protected BenchmarkServer server;
+	protected BenchmarkPlugin plugin;
+	protected Dataset dataset;
+
+	protected HomeManager homeManager;
+	protected InviteManager inviteManager;
+	protected CoolDownManager coolDownManager;
+
+	private Dataset.Sample sample;
+	private Location location;
+	private Date expiry;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		this.server = new BenchmarkServer();
+		this.location = new Location(this.server.addWorld(Dataset.WORLD), 100.5, 64, -100.5);
+		this.plugin = BenchmarkPlugin.create(this.server);
+		this.dataset = new Dataset(this.homes, this.homesPerPlayer);
+		this.sample = this.dataset.sample(SAMPLE_SIZE, SEED);
+		this.expiry = new Date(System.currentTimeMillis() + TimeUnit.DAYS.toMillis(1));
+
+		open();
+
+		// Give every sampled player a cooldown, so getCooldown measures hits.
+		for (int index = 0; index < SAMPLE_SIZE; index++) {
+			this.sample.next();
+			this.coolDownManager.addCooldown(this.sample.owner(), this.expiry);
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception {
+		close();
+		this.plugin.deleteDataFolder();
+	}
+
+	/**
+	 * Creates the managers and fills them with the dataset.
+	 */
+	protected abstract void open() throws Exception;
+
+	/**
+	 * Shuts the managers down.
+	 */
+	protected abstract void close() throws Exception;
+
+	@Benchmark
+	public HomeEntry getHome() {
+		this.sample.next();
+		return this.homeManager.getHome(this.sample.owner(), this.sample.home());
+	}
+
+	@Benchmark
+	public void addHome() {
+		this.sample.next();
+		this.homeManager.addHome(this.sample.owner(), this.sample.home(), this.location);
+	}
+
+	@Benchmark
+	public ArrayList<HomeEntry> listUserHomes() {
+		this.sample.next();
+		return this.homeManager.listUserHomes(this.sample.owner());
+	}
+
+	@Benchmark
+	public ArrayList<InviteEntry> listPlayerInvitesToMe() {
+		this.sample.next();
+		return this.inviteManager.listPlayerInvitesToMe(this.sample.owner());
+	}
+
+	@Benchmark
+	public void addCooldown() {
+		this.sample.next();
+		this.coolDownManager.addCooldown(this.sample.owner(), this.expiry);
+	}
+
+	@Benchmark
+	public CoolDownEntry getCooldown() {
+		this.sample.next();
+		return this.coolDownManager.getCooldown(this.sample.owner());
+	}
+}
@@ -0,0 +1,70 @@
+package me.thefatdemon.multihome.benchmark;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Builds stand-ins for Bukkit interfaces out of java.lang.reflect.Proxy.
+ * Methods without an answer return null, false or zero, so a stub only has to fill in what
+ * the code under test actually calls.
+ */
+public final class Stubs {
+	/**
+	 * Computes the result of a stubbed call from its arguments.
+	 */
+	public interface Answer {
+		Object answer(Object[] args) throws Throwable;
+	}
+
+	private Stubs() {}
+
+	public static <T> T create(Class<T> type) {
+		return create(type, Collections.<String, Object>emptyMap());
+	}
+
+	/**
+	 * @param type Interface to stub.
+	 * @param answers Results by method name. An Answer is called; anything else is returned as is.
+	 */
+	public static <T> T create(Class<T> type, final Map<String, ?> answers) {
+		final String name = type.getSimpleName();
+
+		return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, new InvocationHandler() {
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+				Object answer = answers.get(method.getName());
+
+				if (answer instanceof Answer) {
+					return ((Answer) answer).answer(args);
+				} else if (answer != null) {
+					return answer;
+				}
+
+				if (method.getName().equals("equals") && args != null && args.length == 1) {
+					return proxy == args[0];
+				} else if (method.getName().equals("hashCode") && args == null) {
+					return System.identityHashCode(proxy);
+				} else if (method.getName().equals("toString") && args == null) {
+					return "Stub" + name;
+				}
+
+				return defaultValue(method.getReturnType());
+			}
+		}));
+	}
+
+	private static Object defaultValue(Class<?> type) {
+		if (!type.isPrimitive() || type == void.class) return null;
+		if (type == boolean.class) return false;
+		if (type == char.class) return '\0';
+		if (type == byte.class) return (byte) 0;
+		if (type == short.class) return (short) 0;
+		if (type == int.class) return 0;
+		if (type == long.class) return 0L;
+		if (type == float.class) return 0F;
+		return 0D;
+	}
+}
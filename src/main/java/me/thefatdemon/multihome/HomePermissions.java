@@ -9,6 +9,9 @@ import org.bukkit.plugin.java.JavaPlugin;
 import ru.tehkode.permissions.bukkit.PermissionsEx;
 
 import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
 *
@@ -20,6 +23,12 @@ public class HomePermissions {
 	private static Plugin permissionPlugin = null;
 	private static Permission vault = null;
 
+	// Recent permission decisions per player, so repeated checks skip the permissions plug-in.
+	private static final ConcurrentHashMap<UUID, ConcurrentHashMap<String, CachedDecision>> cache = new ConcurrentHashMap<UUID, ConcurrentHashMap<String, CachedDecision>>();
+	private static volatile long cacheTime = 0; // Milliseconds a decision is reused for. 0 disables the cache.
+	private static final AtomicLong hits = new AtomicLong();
+	private static final AtomicLong misses = new AtomicLong();
+
 	private enum PermissionsHandler {
 		VAULT, PERMISSIONSEX, PERMISSIONS, PERMISSIONSBUKKIT, SUPERPERMS, NONE
 	}
@@ -69,7 +78,67 @@ public class HomePermissions {
 		}
 	}
 
+	/**
+	 * Sets how long permission decisions are cached for, and drops all cached decisions.
+	 * @param milliseconds Time to reuse a decision for. 0 disables the cache.
+	 */
+	public static void setCacheTime(long milliseconds) {
+		cacheTime = Math.max(0, milliseconds);
+		invalidate();
+	}
+
+	/**
+	 * Drops the cached decisions of one player.
+	 */
+	public static void invalidate(UUID player) {
+		cache.remove(player);
+	}
+
+	/**
+	 * Drops the cached decisions of every player.
+	 */
+	public static void invalidate() {
+		cache.clear();
+	}
+
+	/**
+	 * @return String One-line summary of the permission cache metrics.
+	 */
+	public static String getStatistics() {
+		long hitCount = hits.get();
+		long total = hitCount + misses.get();
+
+		return "players=" + cache.size() + ", hits=" + hitCount + ", misses=" + misses.get()
+				+ ", hitRate=" + (total == 0 ? "n/a" : String.format("%.1f%%", hitCount * 100.0 / total));
+	}
+
 	public static boolean has(Player player, String permission) {
+		long time = cacheTime;
+		if (time <= 0) return lookup(player, permission);
+
+		long now = System.currentTimeMillis();
+		ConcurrentHashMap<String, CachedDecision> decisions = cache.get(player.getUniqueId());
+
+		if (decisions == null) {
+			decisions = new ConcurrentHashMap<String, CachedDecision>();
+			ConcurrentHashMap<String, CachedDecision> existing = cache.putIfAbsent(player.getUniqueId(), decisions);
+			if (existing != null) decisions = existing;
+		}
+
+		CachedDecision decision = decisions.get(permission);
+		if (decision != null && decision.expires > now) {
+			hits.incrementAndGet();
+			return decision.allowed;
+		}
+
+		misses.incrementAndGet();
+		boolean allowed = lookup(player, permission);
+		decisions.put(permission, new CachedDecision(allowed, now + time));
+
+		return allowed;
+	}
+
+	private static boolean lookup(Player player, String permission) {
 		boolean blnHasPermission;
 
 		switch (handler) {
@@ -117,4 +186,14 @@ public class HomePermissions {
 
 		return "default";
 	}
+
+	private static class CachedDecision {
+		private final boolean allowed;
+		private final long expires;
+
+		private CachedDecision(boolean allowed, long expires) {
+			this.allowed = allowed;
+			this.expires = expires;
+		}
+	}
 }
@@ -2,320 +2,112 @@ package me.thefatdemon.multihome;
 
 import me.thefatdemon.multihome.data.invite.InviteEntry;
 import me.thefatdemon.multihome.data.home.HomeEntry;
-import org.bukkit.Bukkit;
-import org.bukkit.configuration.ConfigurationSection;
-import org.bukkit.configuration.file.YamlConfiguration;
+import me.thefatdemon.multihome.data.importer.*;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 public class ImportData {
+	/**
+	 * Plug-ins whose homes can be imported with /multihome import.
+	 */
+	public static final List<String> SOURCES = Arrays.asList("essentials", "multiplehomes", "myhome");
+
+	/**
+	 * Streams homes from another plug-in's data into the plug-in's home manager.
+	 * May be called from any thread.
+	 * @param source One of SOURCES.
+	 * @param overwrite True to overwrite homes that already exist.
+	 * @param players Online players by lower case name, from HomeSource.onlinePlayers, to resolve owners stored by name.
+	 * @return long Number of homes written, or -1 if the source could not be opened.
+	 */
+	public static long importHomesFrom(MultiHome plugin, String source, boolean overwrite, Map<String, UUID> players) {
+		if (source.equals("essentials")) {
+			return importHomesFromEssentialsParallel(plugin, overwrite, players);
+		}
 
-	public static ArrayList<HomeEntry> importHomesFromMultiHomeFile(MultiHome plugin) {
-		File homesFile = new File(plugin.getDataFolder(), "homes.txt");
-		ArrayList<HomeEntry> homes = new ArrayList<HomeEntry>();
-		
-		if (homesFile.exists()) {
-			try {
-				FileReader fstream = new FileReader(homesFile);
-				BufferedReader reader = new BufferedReader(fstream);
-	
-				String line = reader.readLine().trim();
-	
-				while (line != null) {
-					if (!line.startsWith("#") && line.length() > 0) {
-						HomeEntry thisHome;
-						
-						String[] values = line.split(";");
-						double X = 0, Y = 0, Z = 0;
-						float pitch = 0, yaw = 0;
-						String world = "";
-						String name = "";
-						String player = "";
-                        UUID uuid = null;
-
-
-						try {
-							if (values.length == 7) {
-								player = values[0];
-                                uuid = UUID.fromString(player);
-								X = Double.parseDouble(values[1]);
-								Y = Double.parseDouble(values[2]);
-								Z = Double.parseDouble(values[3]);
-								pitch = Float.parseFloat(values[4]);
-								yaw = Float.parseFloat(values[5]);
-
-								world = values[6];
-								name = "";
-							} else if (values.length == 8) {
-								player = values[0];
-                                uuid = UUID.fromString(player);
-								X = Double.parseDouble(values[1]);
-								Y = Double.parseDouble(values[2]);
-								Z = Double.parseDouble(values[3]);
-								pitch = Float.parseFloat(values[4]);
-								yaw = Float.parseFloat(values[5]);
+		try {
+			if (source.equals("multiplehomes")) {
+				return importHomes(plugin, new MultipleHomesSource(new File("plugins" + File.separator + "MultipleHomes" + File.separator + "Homes"), players), overwrite);
+			} else if (source.equals("myhome")) {
+				return importHomes(plugin, new MyHomeSource(new File("plugins" + File.separator + "MyHome" + File.separator + "homes.db"), players), overwrite);
+			}
+		} catch (Exception e) {
+			Messaging.logSevere("Could not open the " + source + " data for import: " + e.getMessage(), plugin);
+			return -1;
+		}
 
-								world = values[6];
-								name = values[7];
-							}
-						} catch (Exception e) {
-							// This entry failed. Ignore and continue.
-						}
+		throw new IllegalArgumentException("Unknown import source: " + source);
+	}
 
-						if (values.length == 7 || values.length == 8) {
-							boolean save = true;
+	/**
+	 * Streams homes from a source into the plug-in's home manager in batches, skipping duplicates.
+	 * @param overwrite True to overwrite homes that already exist.
+	 * @return long Number of homes written.
+	 */
+	public static long importHomes(MultiHome plugin, HomeSource source, boolean overwrite) {
+		return new HomeImporter(plugin, plugin.getHomeManager(), overwrite, HomeImporter.DEFAULT_BATCH_SIZE).importFrom(source);
+	}
 
-							thisHome = new HomeEntry(uuid, name.toLowerCase(), world, X, Y, Z, pitch, yaw);
+	/**
+	 * Imports Essentials userdata files into the plug-in's home manager, parsing them on several threads.
+	 * @param overwrite True to overwrite homes that already exist.
+	 * @param players Online players by lower case name, from HomeSource.onlinePlayers.
+	 * @return long Number of homes written.
+	 */
+	public static long importHomesFromEssentialsParallel(MultiHome plugin, boolean overwrite, Map<String, UUID> players) {
+		return new ParallelEssentialsImporter(plugin, plugin.getHomeManager(), overwrite, players, HomeImporter.DEFAULT_BATCH_SIZE, Settings.getImportThreads())
+				.importFrom(new File("plugins" + File.separator + "Essentials" + File.separator + "userdata"));
+	}
 
-							for (HomeEntry home : homes) {
-								if (home.getHomeName().compareToIgnoreCase(thisHome.getHomeName()) == 0 && home.getOwner().compareToIgnoreCase(thisHome.getOwner()) == 0) {
-									save = false;
-								}
-							}
-							
-							if (save) {
-								homes.add(thisHome);
-							}
-						}
-					}
-	
-					line = reader.readLine();
-				}
-	
-				reader.close();
-			} catch (Exception e) {
-				Messaging.logSevere("Could not read the homes file.", plugin);
-				e.printStackTrace();
-				return new ArrayList<HomeEntry>();
-			}
+	public static ArrayList<HomeEntry> importHomesFromMultiHomeFile(MultiHome plugin) {
+		try {
+			return HomeImporter.collect(new MultiHomeFileSource(new File(plugin.getDataFolder(), "homes.txt"), HomeSource.onlinePlayers(plugin.getServer())));
+		} catch (Exception e) {
+			Messaging.logSevere("Could not read the homes file: " + e.getMessage(), plugin);
+			return new ArrayList<HomeEntry>();
 		}
-		
-		return homes;
 	}
 
 	public static ArrayList<HomeEntry> importHomesFromMultiHomeMySQL(MultiHome plugin) {
-		Connection connection = null;
-		PreparedStatement statement = null;
-		ResultSet resultSet = null;
-		ArrayList<HomeEntry> homes = new ArrayList<HomeEntry> ();
-
 		try {
-			connection = DriverManager.getConnection(Settings.getDataStoreSettingString("sql", "url"), 
+			return HomeImporter.collect(new MultiHomeMySQLSource(Settings.getDataStoreSettingString("sql", "url"),
 					Settings.getDataStoreSettingString("sql", "user"),
-					Settings.getDataStoreSettingString("sql", "pass"));
-			if (!connection.isValid(100)) {
-				throw new SQLException();
-			}
-
-			statement = connection.prepareStatement("SELECT * FROM `homes`;");
-			resultSet = statement.executeQuery();
-			if (resultSet.first()) {
-				do {
-					homes.add(new HomeEntry(UUID.fromString(resultSet.getString("owner").toLowerCase()),
-							resultSet.getString("home").toLowerCase(), 
-							resultSet.getString("world").toLowerCase(), 
-							resultSet.getDouble("x"), 
-							resultSet.getDouble("y"), 
-							resultSet.getDouble("z"), 
-							resultSet.getFloat("yaw"), 
-							resultSet.getFloat("pitch")));
-				} while (resultSet.next());
-			}
-			
-		} catch (SQLException e) {
+					Settings.getDataStoreSettingString("sql", "pass"), HomeSource.onlinePlayers(plugin.getServer())));
+		} catch (Exception e) {
 			// Ignore errors
-		} finally {
-			if (resultSet != null) {
-				try {
-					resultSet.close();
-				} catch (SQLException ex) {} // Eat errors
-			}
-
-			if (statement != null) {
-				try {
-					statement.close();
-				} catch (SQLException ex) {} // Eat errors
-			}
-
-			if (connection != null) {
-				try {
-					connection.close();
-				} catch (SQLException ex) {} // Eat errors
-			}
+			return new ArrayList<HomeEntry>();
 		}
-
-		return homes;
 	}
 
 	public static ArrayList<HomeEntry> importHomesFromEssentials(MultiHome plugin) {
-		File essentialsDir = new File("plugins" + File.separator + "Essentials" + File.separator + "userdata");
-		ArrayList<HomeEntry> homes = new ArrayList<HomeEntry> ();
-
-		if (essentialsDir.exists()) {
-			File[] userFiles = essentialsDir.listFiles();
-			List<?> homeLocation;
-			
-			for (File userFile : userFiles) {
-				try {
-					String user = userFile.getName().replaceAll("\\.yml", "");
-					YamlConfiguration userConfig = new YamlConfiguration();
-					userConfig.load(userFile);
-	
-					// Load old Essentials home format.
-					homeLocation = userConfig.getList("home");
-					if (homeLocation != null && !homeLocation.isEmpty()) {
-						try {
-							homes.add(new HomeEntry(Bukkit.getPlayer(user).getUniqueId(),
-									"", 
-									((String) homeLocation.get(5)).toLowerCase(), 
-									(Double) homeLocation.get(0), 
-									(Double) homeLocation.get(1), 
-									(Double) homeLocation.get(2), 
-									(Float) homeLocation.get(4), 
-									(Float) homeLocation.get(3)));
-						} catch (Exception e) {
-							// This entry failed. Ignore and continue.
-						}
-					}
-	
-					// Load new Essentials home format.
-					ConfigurationSection homeWorlds = userConfig.getConfigurationSection("home.worlds");
-					if (homeWorlds != null) {
-						for (String homeWorld : homeWorlds.getKeys(false)) {
-							ConfigurationSection homeData = userConfig.getConfigurationSection("home.worlds." + homeWorld);
-							
-							if (homeData != null) {
-								try {
-									homes.add(new HomeEntry(Bukkit.getPlayer(user).getUniqueId(),
-											"", 
-											(homeData.getString("world")).toLowerCase(), 
-											homeData.getDouble("x", 0), homeData.getDouble("y", 0), homeData.getDouble("z", 0),
-											(float) homeData.getDouble("pitch", 0), (float) homeData.getDouble("yaw", 0)));
-								} catch (Exception e) {
-									// This entry failed. Ignore and continue.
-								}
-							}
-						}
-					}
-				} catch (Exception e) {
-				}
-			}
+		try {
+			return HomeImporter.collect(new EssentialsSource(new File("plugins" + File.separator + "Essentials" + File.separator + "userdata"), HomeSource.onlinePlayers(plugin.getServer())));
+		} catch (Exception e) {
+			return new ArrayList<HomeEntry>();
 		}
-		
-		return homes;
 	}
 	
 	public static ArrayList<HomeEntry> importHomesFromMultipleHomes(MultiHome plugin) {
-		File multipleHomesDir = new File("plugins" + File.separator + "MultipleHomes" + File.separator + "Homes");
-		ArrayList<HomeEntry> homes = new ArrayList<HomeEntry> ();
-
-		if (multipleHomesDir.exists()) {
-			File[] userFiles = multipleHomesDir.listFiles();
-			
-			for (File userFile : userFiles) {
-				String name = userFile.getName().replaceAll("home\\_", "").replaceAll("\\.txt", "");
-				
-				try {
-					FileReader fstream = new FileReader(userFile);
-					BufferedReader reader = new BufferedReader(fstream);
-
-					String line = reader.readLine().trim();
-
-					while (line != null) {
-						if (line.startsWith("~")) {
-							String[] split = line.split(":");
-							
-							if (split.length == 2) {
-								String user = split[0].substring(1);
-								String[] values = split[1].split("_");
-								double X = 0, Y = 0, Z = 0;
-								float pitch = 0, yaw = 0;
-	
-								try {
-									X = Double.parseDouble(values[0]);
-									Y = Double.parseDouble(values[1]);
-									Z = Double.parseDouble(values[2]);
-									pitch = Float.parseFloat(values[4]);
-									yaw = Float.parseFloat(values[3]);
-
-									if (name == null || name.length() == 0 || name.compareTo("0") == 0) {
-										homes.add(new HomeEntry(Bukkit.getPlayer(user).getUniqueId(), "", values[5].toLowerCase(), X, Y, Z, pitch, yaw));
-									} else {
-										homes.add(new HomeEntry(Bukkit.getPlayer(user).getUniqueId(), name, values[5].toLowerCase(), X, Y, Z, pitch, yaw));
-									}
-								} catch (Exception e) {
-									// This entry failed. Ignore and continue.
-								}
-							}
-						}
-
-						line = reader.readLine();
-					}
-
-					reader.close();
-				} catch (Exception e) {
-					// Eat errors
-				}
-			}
+		try {
+			return HomeImporter.collect(new MultipleHomesSource(new File("plugins" + File.separator + "MultipleHomes" + File.separator + "Homes"), HomeSource.onlinePlayers(plugin.getServer())));
+		} catch (Exception e) {
+			// Eat errors
+			return new ArrayList<HomeEntry>();
 		}
-		
-		return homes;
 	}
 	
 	public static ArrayList<HomeEntry> importHomesFromMyHome(MultiHome plugin) {
-		File myHomeFile = new File("plugins" + File.separator + "MyHome" + File.separator + "homes.db");
-		ArrayList<HomeEntry> homes = new ArrayList<HomeEntry> ();
-
-		if (myHomeFile.exists()) {
-			// connect to the MyHomes database.
-			Connection conn;
-
-	        try {
-	            Class.forName("org.sqlite.JDBC");
-	            conn = DriverManager.getConnection("jdbc:sqlite:" + myHomeFile.getAbsolutePath());
-	            conn.setAutoCommit(false);
-	        } catch (SQLException ex) {
-				return homes;
-	        } catch (ClassNotFoundException ex) {
-				return homes;
-	        }
-
-	        try {
-	            Statement statement = null;
-	            ResultSet set = null;
-
-	            statement = conn.createStatement();
-	            set = statement.executeQuery("SELECT * FROM homeTable");
-	            while (set.next()) {
-	                String name = set.getString("name");
-	                String world = set.getString("world");
-	                double X = set.getDouble("x");
-	                int Y = set.getInt("y");
-	                double Z = set.getDouble("z");
-	                int yaw = set.getInt("yaw");
-	                int pitch = set.getInt("pitch");
-
-					homes.add(new HomeEntry(plugin.getServer().getPlayer(name).getUniqueId(), "", world.toLowerCase(), X, Y, Z, pitch, yaw));
-	            }
-	            
-	            set.close();
-	            statement.close();
-	        } catch (SQLException e) {
-	        }
-	        
-            try {
-                conn.close();
-            } catch (SQLException ex) {
-            }
+		try {
+			return HomeImporter.collect(new MyHomeSource(new File("plugins" + File.separator + "MyHome" + File.separator + "homes.db"), HomeSource.onlinePlayers(plugin.getServer())));
+		} catch (Exception e) {
+			return new ArrayList<HomeEntry>();
 		}
-		
-		return homes;
 	}
 	
 	public static ArrayList<InviteEntry> importInvitesFromMyHome(MultiHome plugin) {
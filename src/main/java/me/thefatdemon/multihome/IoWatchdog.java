@@ -0,0 +1,169 @@
+package me.thefatdemon.multihome;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Debug aid that reports file and database I/O done on the server's primary thread.
+ * The data managers call start before and end after each write or borrowed connection;
+ * calls that took at least the threshold are logged with the command being run, the
+ * duration and, now and then, the stack trace that led there. Off unless MultiHome.ioWatchdog
+ * is set; while it is off, start is a single field read.
+ */
+public class IoWatchdog {
+	private static final long REPORT_INTERVAL = TimeUnit.SECONDS.toNanos(10); // Per operation, repeats in between are only counted.
+	private static final long TRACE_INTERVAL = TimeUnit.SECONDS.toNanos(60); // Per operation, how often a stack trace is included.
+	private static final int TRACE_DEPTH = 12;
+
+	private static volatile boolean enabled = false;
+	private static volatile String command = null;
+	private static MultiHome plugin;
+	private static long threshold;
+	private static final ConcurrentHashMap<String, Site> sites = new ConcurrentHashMap<String, Site>();
+
+	public static void initialize(MultiHome plugin, boolean enabled, long thresholdMillis) {
+		IoWatchdog.plugin = plugin;
+		IoWatchdog.threshold = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+		IoWatchdog.sites.clear();
+		IoWatchdog.enabled = enabled;
+
+		if (enabled) {
+			Messaging.logInfo("I/O watchdog enabled. Storage I/O on the main thread taking " + thresholdMillis + "ms or more will be reported.", plugin);
+		}
+	}
+
+	public static boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Sets the command the primary thread is running, so reports can name it. Null when it is done.
+	 */
+	public static void setCommand(String command) {
+		IoWatchdog.command = command;
+	}
+
+	/**
+	 * @return long Start time to pass to end, or 0 when the watchdog is off or this is not the primary thread.
+	 */
+	public static long start() {
+		if (!enabled || !plugin.getServer().isPrimaryThread()) return 0;
+		return System.nanoTime();
+	}
+
+	/**
+	 * Reports the I/O started at start if it took at least the threshold. Does nothing when start is 0.
+	 * @param operation What was done, such as "homes.txt write".
+	 */
+	public static void end(String operation, long start) {
+		if (start == 0) return;
+
+		long now = System.nanoTime();
+		long duration = now - start;
+		if (duration < threshold) return;
+
+		Site site = sites.get(operation);
+		if (site == null) {
+			site = new Site();
+			Site existing = sites.putIfAbsent(operation, site);
+			if (existing != null) site = existing;
+		}
+
+		String report = site.record(operation, duration, now);
+		if (report != null) {
+			Messaging.logWarning(report, plugin);
+		}
+	}
+
+	/**
+	 * @return String One-line summary of every operation seen on the primary thread, for the log.
+	 */
+	public static String getSummary() {
+		StringBuilder builder = new StringBuilder();
+
+		for (Map.Entry<String, Site> entry : new TreeMap<String, Site>(sites).entrySet()) {
+			if (builder.length() > 0) builder.append("; ");
+			builder.append(entry.getKey()).append(' ').append(entry.getValue().getSummary());
+		}
+		return builder.length() == 0 ? "no main thread I/O seen" : builder.toString();
+	}
+
+	private static String formatMillis(long nanos) {
+		return String.format("%.3fms", nanos / 1000000.0);
+	}
+
+	/**
+	 * Totals for one operation, and what has happened since it was last reported.
+	 */
+	private static class Site {
+		private long count = 0;
+		private long total = 0;
+		private long max = 0;
+
+		private long pendingCount = 0;
+		private long pendingMax = 0;
+		private long lastReport = 0;
+		private long lastTrace = 0;
+		private boolean reported = false;
+		private boolean traced = false;
+
+		/**
+		 * @return String Log message if this operation is due to be reported, otherwise null.
+		 */
+		private synchronized String record(String operation, long duration, long now) {
+			this.count++;
+			this.total += duration;
+			this.max = Math.max(this.max, duration);
+			this.pendingCount++;
+			this.pendingMax = Math.max(this.pendingMax, duration);
+
+			if (this.reported && now - this.lastReport < REPORT_INTERVAL) return null;
+
+			String current = command;
+			StringBuilder builder = new StringBuilder("Main thread I/O: ").append(operation)
+					.append(" took ").append(formatMillis(duration))
+					.append(" during ").append(current == null ? "a server task or event" : "/" + current);
+
+			if (this.pendingCount > 1) {
+				builder.append(" (").append(this.pendingCount).append(" times since last report, max ")
+						.append(formatMillis(this.pendingMax)).append(')');
+			}
+
+			if (!this.traced || now - this.lastTrace >= TRACE_INTERVAL) {
+				appendTrace(builder);
+				this.lastTrace = now;
+				this.traced = true;
+			}
+
+			this.pendingCount = 0;
+			this.pendingMax = 0;
+			this.lastReport = now;
+			this.reported = true;
+			return builder.toString();
+		}
+
+		private synchronized String getSummary() {
+			return "n=" + this.count + " total=" + formatMillis(this.total) + " max=" + formatMillis(this.max);
+		}
+
+		/**
+		 * Appends the caller's stack, starting below the watchdog itself.
+		 */
+		private static void appendTrace(StringBuilder builder) {
+			StackTraceElement[] trace = new Throwable().getStackTrace();
+			int written = 0;
+
+			for (StackTraceElement element : trace) {
+				if (element.getClassName().startsWith(IoWatchdog.class.getName())) continue;
+				if (written == TRACE_DEPTH) {
+					builder.append(Util.newLine()).append("\t...");
+					break;
+				}
+				builder.append(Util.newLine()).append("\tat ").append(element);
+				written++;
+			}
+		}
+	}
+}
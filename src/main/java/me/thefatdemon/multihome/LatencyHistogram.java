@@ -0,0 +1,103 @@
+package me.thefatdemon.multihome;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of durations in nanoseconds, in the style of HdrHistogram.
+ * Each power of two is split into 32 linear buckets, so a percentile is reported within about
+ * 3% of the true value while the whole range fits in a fixed array. Recording is a few
+ * atomic adds and never allocates.
+ */
+public class LatencyHistogram {
+	private static final int SUB_BUCKET_BITS = 5;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int BUCKETS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private final AtomicLong count = new AtomicLong();
+	private final AtomicLong total = new AtomicLong();
+	private final AtomicLong max = new AtomicLong();
+
+	/**
+	 * Records one duration.
+	 * @param nanos Duration in nanoseconds. Negative values are recorded as 0.
+	 */
+	public void record(long nanos) {
+		long value = Math.max(0, nanos);
+
+		this.counts.incrementAndGet(indexOf(value));
+		this.count.incrementAndGet();
+		this.total.addAndGet(value);
+
+		long current;
+		while (value > (current = this.max.get()) && !this.max.compareAndSet(current, value)) {}
+	}
+
+	public long getCount() {
+		return this.count.get();
+	}
+
+	/**
+	 * @return long Longest duration recorded, in nanoseconds.
+	 */
+	public long getMax() {
+		return this.max.get();
+	}
+
+	/**
+	 * @return double Average duration, in nanoseconds.
+	 */
+	public double getMean() {
+		long samples = this.count.get();
+		return samples == 0 ? 0 : (double) this.total.get() / samples;
+	}
+
+	/**
+	 * @param percentile Percentile between 0 and 100.
+	 * @return long Highest duration in the bucket holding the percentile, in nanoseconds. 0 if nothing was recorded.
+	 */
+	public long getValueAtPercentile(double percentile) {
+		long samples = this.count.get();
+		if (samples == 0) return 0;
+
+		long target = Math.max(1, (long) Math.ceil(samples * Math.min(100, Math.max(0, percentile)) / 100));
+		long seen = 0;
+
+		for (int index = 0; index < BUCKETS; index++) {
+			seen += this.counts.get(index);
+			if (seen >= target) {
+				return Math.min(highestValueOf(index), getMax());
+			}
+		}
+		return getMax();
+	}
+
+	/**
+	 * Clears all recorded durations. Durations recorded while resetting may be partly kept.
+	 */
+	public void reset() {
+		for (int index = 0; index < BUCKETS; index++) {
+			this.counts.set(index, 0);
+		}
+		this.count.set(0);
+		this.total.set(0);
+		this.max.set(0);
+	}
+
+	private static int indexOf(long value) {
+		if (value < SUB_BUCKETS) return (int) value;
+
+		int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+		return ((shift + 1) << SUB_BUCKET_BITS) + (int) (value >>> shift) - SUB_BUCKETS;
+	}
+
+	private static long highestValueOf(int index) {
+		if (index < SUB_BUCKETS) return index;
+
+		int shift = (index >>> SUB_BUCKET_BITS) - 1;
+		long subBucket = (index & (SUB_BUCKETS - 1)) + SUB_BUCKETS;
+		long highest = ((subBucket + 1) << shift) - 1;
+		return highest < 0 ? Long.MAX_VALUE : highest;
+	}
+}
@@ -0,0 +1,89 @@
+package me.thefatdemon.multihome;
+
+import java.util.ArrayList;
+
+/**
+ * A message from config.yml, split once into literal text and placeholder slots such as
+ * {HOME}, so sending it is a few appends instead of a regex replace per placeholder.
+ * Immutable and safe to share between threads.
+ */
+public class MessageTemplate {
+	private static final ThreadLocal<StringBuilder> BUILDER = new ThreadLocal<StringBuilder>() {
+		@Override
+		protected StringBuilder initialValue() {
+			return new StringBuilder(128);
+		}
+	};
+
+	private final String[] literals; // Text before each slot, then the text after the last one.
+	private final int[] slots; // Index into the render values for each placeholder found.
+
+	private MessageTemplate(String[] literals, int[] slots) {
+		this.literals = literals;
+		this.slots = slots;
+	}
+
+	/**
+	 * Parses a message.
+	 * @param text Message text.
+	 * @param placeholders Placeholder names, without braces, in the order their values are passed to render.
+	 * Unknown placeholders are left in the text as they are.
+	 */
+	public static MessageTemplate compile(String text, String... placeholders) {
+		ArrayList<String> literals = new ArrayList<String>();
+		ArrayList<Integer> slots = new ArrayList<Integer>();
+		int start = 0;
+		int index = 0;
+
+		while (index < text.length()) {
+			int slot = text.charAt(index) == '{' ? matchPlaceholder(text, index, placeholders) : -1;
+
+			if (slot >= 0) {
+				literals.add(text.substring(start, index));
+				slots.add(slot);
+				index += placeholders[slot].length() + 2;
+				start = index;
+			} else {
+				index++;
+			}
+		}
+		literals.add(text.substring(start));
+
+		int[] slotArray = new int[slots.size()];
+		for (int i = 0; i < slotArray.length; i++) {
+			slotArray[i] = slots.get(i);
+		}
+
+		return new MessageTemplate(literals.toArray(new String[literals.size()]), slotArray);
+	}
+
+	/**
+	 * Builds the message.
+	 * @param values Placeholder values, in the order the placeholders were given to compile.
+	 */
+	public String render(String... values) {
+		if (this.slots.length == 0) return this.literals[0];
+
+		StringBuilder builder = BUILDER.get();
+		builder.setLength(0);
+
+		for (int index = 0; index < this.slots.length; index++) {
+			builder.append(this.literals[index]).append(values[this.slots[index]]);
+		}
+		builder.append(this.literals[this.slots.length]);
+
+		return builder.toString();
+	}
+
+	private static int matchPlaceholder(String text, int index, String[] placeholders) {
+		for (int slot = 0; slot < placeholders.length; slot++) {
+			String name = placeholders[slot];
+			int end = index + name.length() + 1;
+
+			if (end < text.length() && text.charAt(end) == '}' && text.regionMatches(index + 1, name, 0, name.length())) {
+				return slot;
+			}
+		}
+		return -1;
+	}
+}
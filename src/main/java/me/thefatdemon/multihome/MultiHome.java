@@ -1,18 +1,32 @@
 package me.thefatdemon.multihome;
 
+import me.thefatdemon.multihome.data.ConnectionPool;
+import me.thefatdemon.multihome.data.SchemaManager;
+import me.thefatdemon.multihome.data.home.AsyncHomeManager;
 import me.thefatdemon.multihome.data.home.HomeManager;
+import me.thefatdemon.multihome.data.home.HomeManagerCached;
 import me.thefatdemon.multihome.data.home.HomeManagerFile;
+import me.thefatdemon.multihome.data.home.HomeManagerJournal;
+import me.thefatdemon.multihome.data.home.HomeManagerMapped;
 import me.thefatdemon.multihome.data.home.HomeManagerMySQL;
+import me.thefatdemon.multihome.data.home.TimedHomeManager;
 import me.thefatdemon.multihome.data.invite.InviteManager;
 import me.thefatdemon.multihome.data.invite.InviteManagerFile;
 import me.thefatdemon.multihome.data.invite.InviteManagerMySQL;
+import me.thefatdemon.multihome.data.invite.TimedInviteManager;
 import me.thefatdemon.multihome.data.warmup.WarmUpManager;
 import me.thefatdemon.multihome.data.warmup.WarmUpManagerFile;
+import me.thefatdemon.multihome.data.warmup.WarmUpManagerMemory;
+import me.thefatdemon.multihome.data.warmup.TimedWarmUpManager;
 import me.thefatdemon.multihome.data.warmup.WarmUpManagerMySQL;
 import me.thefatdemon.multihome.data.cooldown.CoolDownManager;
 import me.thefatdemon.multihome.data.cooldown.CoolDownManagerFile;
 import me.thefatdemon.multihome.data.cooldown.CoolDownManagerMySQL;
+import me.thefatdemon.multihome.data.cooldown.TimedCoolDownManager;
+import org.bukkit.Server;
 import org.bukkit.plugin.Plugin;
+import org.bukkit.plugin.PluginDescriptionFile;
+import org.bukkit.plugin.PluginLoader;
 import org.bukkit.plugin.PluginManager;
 import org.bukkit.plugin.java.JavaPlugin;
 
@@ -20,9 +34,11 @@ import java.io.File;
 
 public class MultiHome extends JavaPlugin {
 	private HomeManager homes;
+	private AsyncHomeManager asyncHomes;
 	private InviteManager invites;
 	private WarmUpManager warmups;
 	private CoolDownManager cooldowns;
+	private ConnectionPool connectionPool;
 
 	private String pluginDataPath;
 	
@@ -30,10 +46,43 @@ public class MultiHome extends JavaPlugin {
 	private MultiHomePlayerListener playerListener = new MultiHomePlayerListener(this);
 	private MultiHomeEntityListener entityListener = new MultiHomeEntityListener(this);
 	
+	public MultiHome() {
+		super();
+	}
+
+	/**
+	 * Creates the plug-in outside a running server, for benchmarks and tools that drive the
+	 * data managers directly. onEnable is not called.
+	 */
+	@SuppressWarnings("deprecation")
+	protected MultiHome(PluginLoader loader, Server server, PluginDescriptionFile description, File dataFolder, File file) {
+		super(loader, server, description, dataFolder, file);
+		this.pluginDataPath = dataFolder.getAbsolutePath() + File.separator;
+	}
+
 	@Override
 	public void onDisable() {
 		getServer().getScheduler().cancelTasks(this);
-		warmups.clearWarmups();
+		if (asyncHomes != null) asyncHomes.shutdown();
+		if (homes instanceof HomeManagerCached) {
+			Messaging.logInfo("Home cache: " + ((HomeManagerCached) homes).getStatistics(), this);
+		}
+		Messaging.logInfo("Permission cache: " + HomePermissions.getStatistics(), this);
+		if (Timings.isEnabled()) {
+			Messaging.logInfo("Timings: " + Timings.getSummary(), this);
+		}
+		if (homes != null) homes.shutdown();
+		if (warmups != null) {
+			warmups.shutdown();
+			warmups.clearWarmups();
+		}
+		if (connectionPool != null) {
+			Messaging.logInfo("Connection pool: " + connectionPool.getStatistics(), this);
+			connectionPool.close();
+		}
+		if (IoWatchdog.isEnabled()) {
+			Messaging.logInfo("Main thread I/O: " + IoWatchdog.getSummary(), this);
+		}
 		Messaging.logInfo("Version " + this.getDescription().getVersion() + " unloaded.", this);
 	}
 
@@ -51,6 +100,9 @@ public class MultiHome extends JavaPlugin {
 		disableEssentials();
 		Settings.initialize(this);
 		Settings.loadSettings();
+		HomePermissions.setCacheTime(Settings.getPermissionCacheTime() * 1000L);
+		Timings.setEnabled(Settings.isTimingsEnabled());
+		IoWatchdog.initialize(this, Settings.isIoWatchdogEnabled(), Settings.getIoWatchdogThreshold());
 		MultiHomeEconManager.initialize(this);
 
 		dataStoreMethod = Settings.getDataStoreMethod();
@@ -58,26 +110,71 @@ public class MultiHome extends JavaPlugin {
 		if (dataStoreMethod.compareToIgnoreCase("file") == 0) {
 			this.homes = new HomeManagerFile(this);
 			this.invites = new InviteManagerFile(this);
-			this.warmups = new WarmUpManagerFile(this);
 			this.cooldowns = new CoolDownManagerFile(this);
 
 			Messaging.logInfo("Using \"file\" storage method for database.", this);
+		} else if (dataStoreMethod.compareToIgnoreCase("journal") == 0) {
+			this.homes = new HomeManagerJournal(this);
+			this.invites = new InviteManagerFile(this);
+			this.cooldowns = new CoolDownManagerFile(this);
+
+			Messaging.logInfo("Using \"journal\" storage method for database.", this);
+		} else if (dataStoreMethod.compareToIgnoreCase("mapped") == 0) {
+			this.homes = new HomeManagerMapped(this);
+			this.invites = new InviteManagerFile(this);
+			this.cooldowns = new CoolDownManagerFile(this);
+
+			Messaging.logInfo("Using \"mapped\" storage method for database.", this);
 		} else if (dataStoreMethod.compareToIgnoreCase("sql") == 0) {
-			this.homes = new HomeManagerMySQL(this);
-			this.invites = new InviteManagerMySQL(this);
-			this.warmups = new WarmUpManagerMySQL(this);
-			this.cooldowns = new CoolDownManagerMySQL(this);
+			this.connectionPool = new ConnectionPool(this,
+					Settings.getDataStoreSettingString("sql", "url"),
+					Settings.getDataStoreSettingString("sql", "user"),
+					Settings.getDataStoreSettingString("sql", "pass"),
+					Settings.getDataStoreSettingInt("sql", "poolSize", 8),
+					Settings.getDataStoreSettingInt("sql", "connectionTimeout", 5000),
+					Settings.getDataStoreSettingInt("sql", "validationInterval", 30000),
+					Settings.getDataStoreSettingInt("sql", "statementCacheSize", 250));
+			if (!new SchemaManager(this, this.connectionPool).update()) {
+				// The managers would query columns that do not exist, failing every command.
+				Messaging.logSevere("The database schema could not be updated. Disabling MultiHome.", this);
+				getServer().getPluginManager().disablePlugin(this);
+				return;
+			}
+
+			this.homes = new HomeManagerMySQL(this, this.connectionPool);
+			if (Timings.isEnabled()) {
+				// Time the database itself; the cache in front of it is covered by the command timings.
+				this.homes = new TimedHomeManager(this, this.homes, "sql");
+			}
+			if (Settings.getDataStoreSettingBoolean("sql", "cacheHomes", true)) {
+				this.homes = new HomeManagerCached(this, this.homes);
+			}
+			this.invites = new InviteManagerMySQL(this, this.connectionPool);
+			this.cooldowns = new CoolDownManagerMySQL(this, this.connectionPool);
 
 			Messaging.logInfo("Using \"sql\" storage method for database.", this);
 		} else {
 			this.homes = new HomeManagerFile(this);
 			this.invites = new InviteManagerFile(this);
-			this.warmups = new WarmUpManagerFile(this);
 			this.cooldowns = new CoolDownManagerFile(this);
 
 			Messaging.logInfo("Unknown storage method. Defaulting to \"file\" storage method for database.", this);
 		}
 
+		if (Settings.isVolatileWarmupsEnabled()) {
+			this.warmups = new WarmUpManagerMemory(this, Settings.isPersistWarmupsEnabled());
+		} else if (this.connectionPool != null) {
+			this.warmups = new WarmUpManagerMySQL(this, this.connectionPool);
+		} else {
+			this.warmups = new WarmUpManagerFile(this);
+		}
+
+		if (Timings.isEnabled()) {
+			installTimings(dataStoreMethod.toLowerCase());
+		}
+
+		this.asyncHomes = new AsyncHomeManager(this, this.homes, Settings.getAsyncThreads());
+
 		
 
 		/*ImportData.importHomesFromEssentials(out, this.plugin);
@@ -92,6 +189,30 @@ public class MultiHome extends JavaPlugin {
 		Messaging.logInfo("Version " + this.getDescription().getVersion() + " loaded.", this);
 	}
 	
+	/**
+	 * Wraps the data managers so every call is recorded in Timings, and logs a summary periodically.
+	 */
+	private void installTimings(String backend) {
+		if (!(this.homes instanceof HomeManagerCached)) {
+			this.homes = new TimedHomeManager(this, this.homes, backend);
+		}
+		this.invites = new TimedInviteManager(this, this.invites, backend);
+		this.cooldowns = new TimedCoolDownManager(this, this.cooldowns, backend);
+		this.warmups = new TimedWarmUpManager(this, this.warmups, Settings.isVolatileWarmupsEnabled() ? "memory" : backend);
+
+		long interval = Settings.getTimingsLogInterval() * 20L;
+		if (interval > 0) {
+			getServer().getScheduler().runTaskTimerAsynchronously(this, new Runnable() {
+				@Override
+				public void run() {
+					Messaging.logInfo("Timings: " + Timings.getSummary(), MultiHome.this);
+				}
+			}, interval, interval);
+		}
+
+		Messaging.logInfo("Timings enabled. Use /multihome stats to see them.", this);
+	}
+
 	private void disableEssentials() {
 		// Disable EssentialsHome
 		Plugin essentialsHome = getServer().getPluginManager().getPlugin("EssentialsHome");
@@ -109,6 +230,13 @@ public class MultiHome extends JavaPlugin {
 		PluginManager pm = getServer().getPluginManager();
 		pm.registerEvents(playerListener, this);
 		pm.registerEvents(entityListener, this);
+		if (pm.getPlugin("PermissionsEx") != null) {
+			pm.registerEvents(new MultiHomePermissionListener(), this);
+		}
+		if (homes instanceof HomeManagerCached) {
+			pm.registerEvents((HomeManagerCached) homes, this);
+			((HomeManagerCached) homes).loadOnlinePlayers();
+		}
 	}
     
     private void setupCommands() {
@@ -132,12 +260,20 @@ public class MultiHome extends JavaPlugin {
     	getCommand("mlistinvites").setExecutor(commandExecutor);
     	getCommand("listmyinvites").setExecutor(commandExecutor);
     	getCommand("mlistmyinvites").setExecutor(commandExecutor);
+    	getCommand("multihome").setExecutor(commandExecutor);
     }
     
     public HomeManager getHomeManager() {
     	return this.homes;
     }
     
+    /**
+     * @return AsyncHomeManager Home database calls that run off the main thread.
+     */
+    public AsyncHomeManager getAsyncHomeManager() {
+    	return this.asyncHomes;
+    }
+    
     public InviteManager getInviteManager() {
     	return this.invites;
     }
@@ -150,6 +286,13 @@ public class MultiHome extends JavaPlugin {
     	return this.cooldowns;
     }
     
+    /**
+     * @return ConnectionPool Shared database connections, or null when not using the "sql" storage method.
+     */
+    public ConnectionPool getConnectionPool() {
+    	return this.connectionPool;
+    }
+    
     public String getPluginDataPath() {
     	return this.pluginDataPath;
     }
@@ -15,12 +15,25 @@ public class MultiHomeCommandExecutor implements CommandExecutor {
 	@Override
 	public boolean onCommand(CommandSender sender, Command cmd, String commandLabel, String[] args)
 	{
-		if (!(sender instanceof Player)) {
-			// Command sent by console/plugin
-			onCommandFromConsole(sender, cmd, commandLabel, args);
-		} else {
-			// Command sent by player
-			onCommandFromPlayer((Player) sender, cmd, commandLabel, args);
+		long start = Timings.start();
+		boolean watched = IoWatchdog.isEnabled();
+
+		if (watched) IoWatchdog.setCommand(cmd.getName().toLowerCase());
+		try {
+			if (!(sender instanceof Player)) {
+				// Command sent by console/plugin
+				onCommandFromConsole(sender, cmd, commandLabel, args);
+			} else {
+				// Command sent by player
+				onCommandFromPlayer((Player) sender, cmd, commandLabel, args);
+			}
+		} finally {
+			if (watched) IoWatchdog.setCommand(null);
+		}
+
+		// Covers the work done before returning; home lookups finish later on the I/O threads.
+		if (start != 0) {
+			Timings.record("command." + cmd.getName().toLowerCase(), start);
 		}
 		return true;
 	}
@@ -77,9 +90,13 @@ public class MultiHomeCommandExecutor implements CommandExecutor {
 		} else if (cmd.getName().compareToIgnoreCase("listhomes") == 0 || cmd.getName().compareToIgnoreCase("mlisthomes") == 0) {
 			
 			if (args.length == 0) {
-				MultiHomeCommands.listHomes(this.plugin, player);
+				MultiHomeCommands.listHomes(this.plugin, player, 1);
+			} else if (args.length == 1 && parsePage(args[0]) > 0) {
+				MultiHomeCommands.listHomes(this.plugin, player, parsePage(args[0]));
 			} else if (args.length == 1) {
-				MultiHomeCommands.listPlayerHomes(this.plugin, player, args[0]);
+				MultiHomeCommands.listPlayerHomes(this.plugin, player, args[0], 1);
+			} else if (args.length == 2 && parsePage(args[1]) > 0) {
+				MultiHomeCommands.listPlayerHomes(this.plugin, player, args[0], parsePage(args[1]));
 			} else {
 				Settings.sendMessageTooManyParameters(player);
 			}
@@ -115,7 +132,9 @@ public class MultiHomeCommandExecutor implements CommandExecutor {
 		} else if (cmd.getName().compareToIgnoreCase("listinvites") == 0 || cmd.getName().compareToIgnoreCase("mlistinvites") == 0) {
 
 			if (args.length == 0) {
-				MultiHomeCommands.listInvitesToMe(this.plugin, player);
+				MultiHomeCommands.listInvitesToMe(this.plugin, player, 1);
+			} else if (args.length == 1 && parsePage(args[0]) > 0) {
+				MultiHomeCommands.listInvitesToMe(this.plugin, player, parsePage(args[0]));
 			} else {
 				Settings.sendMessageTooManyParameters(player);
 			}
@@ -123,11 +142,17 @@ public class MultiHomeCommandExecutor implements CommandExecutor {
 		} else if (cmd.getName().compareToIgnoreCase("listmyinvites") == 0 || cmd.getName().compareToIgnoreCase("mlistmyinvites") == 0) {
 
 			if (args.length == 0) {
-				MultiHomeCommands.listInvitesToOthers(this.plugin, player);
+				MultiHomeCommands.listInvitesToOthers(this.plugin, player, 1);
+			} else if (args.length == 1 && parsePage(args[0]) > 0) {
+				MultiHomeCommands.listInvitesToOthers(this.plugin, player, parsePage(args[0]));
 			} else {
 				Settings.sendMessageTooManyParameters(player);
 			}
 
+		} else if (cmd.getName().compareToIgnoreCase("multihome") == 0) {
+
+			onMultiHomeCommand(player, args);
+
 		}
 	}
 
@@ -142,8 +167,37 @@ public class MultiHomeCommandExecutor implements CommandExecutor {
 				Settings.sendMessageTooManyParameters(sender);
 			}
 
+		} else if (cmd.getName().compareToIgnoreCase("multihome") == 0) {
+
+			onMultiHomeCommand(sender, args);
+
 		} else {
 			Messaging.sendError(sender, "This command is not available from console.");
 		}
     }
+
+	/**
+	 * @return int Page number given as a command argument, or -1 if the argument is not a page number.
+	 */
+	private static int parsePage(String arg) {
+		try {
+			int page = Integer.parseInt(arg);
+			return page > 0 ? page : -1;
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	private void onMultiHomeCommand(CommandSender sender, String[] args) {
+		if (args.length == 1 && args[0].equalsIgnoreCase("reload")) {
+			MultiHomeCommands.reloadSettings(this.plugin, sender);
+		} else if (args.length == 1 && args[0].equalsIgnoreCase("stats")) {
+			MultiHomeCommands.showStats(this.plugin, sender);
+		} else if ((args.length == 2 || args.length == 3 && args[2].equalsIgnoreCase("overwrite"))
+				&& args[0].equalsIgnoreCase("import") && ImportData.SOURCES.contains(args[1].toLowerCase())) {
+			MultiHomeCommands.importHomes(this.plugin, sender, args[1].toLowerCase(), args.length == 3);
+		} else {
+			Messaging.sendError(sender, "Usage: /multihome <reload|stats|import <essentials|multiplehomes|myhome> [overwrite]>");
+		}
+	}
 }
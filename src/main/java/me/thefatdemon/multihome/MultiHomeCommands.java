@@ -1,205 +1,237 @@
 package me.thefatdemon.multihome;
 
+import com.google.common.util.concurrent.FutureCallback;
 import me.thefatdemon.multihome.data.invite.InviteEntry;
 import me.thefatdemon.multihome.data.warmup.WarmUpEntry;
 import me.thefatdemon.multihome.data.cooldown.CoolDownEntry;
 import me.thefatdemon.multihome.data.home.HomeEntry;
+import me.thefatdemon.multihome.data.home.HomeManager;
+import me.thefatdemon.multihome.data.importer.HomeSource;
 import org.bukkit.Bukkit;
 import org.bukkit.command.CommandSender;
 import org.bukkit.entity.Player;
 
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class MultiHomeCommands {
-	public static void goDefaultHome(MultiHome plugin, Player player) {
+	private static final AtomicBoolean importing = new AtomicBoolean(false);
+
+	public static void goDefaultHome(final MultiHome plugin, final Player player) {
 		if (HomePermissions.has(player, "multihome.defaulthome.go")) {
 			double amount = 0;
 			
+			PlayerSettings settings = Settings.getPlayerSettings(player);
+
 			//Check for economy first - and make sure the player either has permission for free homes or has enough money
 			if (Settings.isEconomyEnabled() && !HomePermissions.has(player, "multihome.free.defaulthome.go")) {
-				if (!MultiHomeEconManager.hasEnough(player.getName(), Settings.getHomeCost(player))) {
-					Settings.sendMessageNotEnoughMoney(player, Settings.getHomeCost(player));
+				if (!MultiHomeEconManager.hasEnough(player.getName(), settings.getHomeCost())) {
+					Settings.sendMessageNotEnoughMoney(player, settings.getHomeCost());
 					return;
 				} else {
-					amount = Settings.getHomeCost(player);
+					amount = settings.getHomeCost();
 				}
 			}
 			
-			// Get user cooldown timer.
-			CoolDownEntry cooldown = plugin.getCoolDownManager().getCooldown(player);
+			if (isOnCooldown(plugin, player)) return;
 
-			if (cooldown != null && !HomePermissions.has(player, "multihome.ignore.cooldown")) {
-				Settings.sendMessageCooldown(player, Math.max((int) (cooldown.getExpiry().getTime() - new Date().getTime()), 1000) / 1000);
-				return;
-			}
+			final double cost = amount;
 
-			int warmupTime = Settings.getSettingWarmup(player);
-			HomeEntry homeEntry = plugin.getHomeManager().getHome(player, "");
+			// Look the home up off the main thread, then continue back on it.
+			plugin.getAsyncHomeManager().onMainThread(plugin.getAsyncHomeManager().getHome(player.getUniqueId(), ""), new FutureCallback<HomeEntry>() {
+				@Override
+				public void onSuccess(HomeEntry homeEntry) {
+					if (!player.isOnline()) return;
 
-			if (homeEntry != null) {
-				if (warmupTime > 0 && !HomePermissions.has(player, "multihome.ignore.warmup")) {
-					// Warpup required.
-					WarmUpEntry warmup = new WarmUpEntry(player.getName(), Util.dateInFuture(warmupTime), homeEntry.getHomeLocation(plugin.getServer()), amount);
-					plugin.getWarmUpManager().addWarmup(warmup);
-					Settings.sendMessageWarmup(player, warmupTime);
-				} else {
-					// Can transfer instantly
-
-					//Double Check the charge before teleporting the player
-					if (!HomePermissions.has(player, "multihome.free.defaulthome.go") && amount != 0) {
-						if (!MultiHomeEconManager.chargePlayer(player.getName(), amount)) {
-							return;
-						} else {
-							Settings.sendMessageDeductForHome(player, amount);
-						}
+					if (homeEntry != null) {
+						goToHome(plugin, player, homeEntry, cost, "multihome.free.defaulthome.go");
+					} else {
+						Settings.sendMessageNoDefaultHome(player);
 					}
+				}
 
-					Util.teleportPlayer(player, homeEntry.getHomeLocation(plugin.getServer()), plugin);
-
-					int cooldownTime = Settings.getSettingCooldown(player);
-					if (cooldownTime > 0) plugin.getCoolDownManager().addCooldown(player, Util.dateInFuture(cooldownTime));
+				@Override
+				public void onFailure(Throwable t) {
+					Messaging.logSevere("Failed to look up default home for player " + player.getName() + ": " + t.getMessage(), plugin);
 				}
-			} else {
-				Settings.sendMessageNoDefaultHome(player);
-			}
+			});
 		} else {
 			Messaging.logInfo("Player " + player.getName() + " tried to warp to default home location. Permission not granted.", plugin);
 		}
 	}
 
-	public static void goNamedHome(MultiHome plugin, Player player, String home) {
+	public static void goNamedHome(final MultiHome plugin, final Player player, final String home) {
 		if (HomePermissions.has(player, "multihome.namedhome.go")) {
 			double amount = 0;
 			
-			// Get user cooldown timer.
-			CoolDownEntry cooldown = plugin.getCoolDownManager().getCooldown(player);
+			if (isOnCooldown(plugin, player)) return;
 
-			if (cooldown != null && !HomePermissions.has(player, "multihome.ignore.cooldown")) {
-				Settings.sendMessageCooldown(player, Math.max((int) (cooldown.getExpiry().getTime() - new Date().getTime()), 1000) / 1000);
-				return;
-			}
+			PlayerSettings settings = Settings.getPlayerSettings(player);
 
 			//Check for economy first - and make sure the player either has permission for free homes or has enough money
 			if (Settings.isEconomyEnabled() && !HomePermissions.has(player, "multihome.free.namedhome.go")) {
-				if (!MultiHomeEconManager.hasEnough(player.getName(), Settings.getNamedHomeCost(player))) {
-					Settings.sendMessageNotEnoughMoney(player, Settings.getNamedHomeCost(player));
+				if (!MultiHomeEconManager.hasEnough(player.getName(), settings.getNamedHomeCost())) {
+					Settings.sendMessageNotEnoughMoney(player, settings.getNamedHomeCost());
 					return;
 				} else {
-					amount = Settings.getNamedHomeCost(player);
+					amount = settings.getNamedHomeCost();
 				}
 			}
-		
-			int warmupTime = Settings.getSettingWarmup(player);
-			HomeEntry homeEntry = plugin.getHomeManager().getHome(player, home);
-
-			if (homeEntry != null) {
-				if (warmupTime > 0 && !HomePermissions.has(player, "multihome.ignore.warmup")) {
-					// Warpup required.
-					WarmUpEntry warmup = new WarmUpEntry(player.getName(), Util.dateInFuture(warmupTime), homeEntry.getHomeLocation(plugin.getServer()), amount);
-					plugin.getWarmUpManager().addWarmup(warmup);
-					Settings.sendMessageWarmup(player, warmupTime);
-				} else {
-					// Can transfer instantly
-
-					//Double Check the charge before teleporting the player
-					if (!HomePermissions.has(player, "multihome.free.namedhome.go") && amount != 0) {
-						if (!MultiHomeEconManager.chargePlayer(player.getName(), amount)) {
-							return;
-						} else {
-							Settings.sendMessageDeductForHome(player, amount);
-						}
+
+			final double cost = amount;
+
+			// Look the home up off the main thread, then continue back on it.
+			plugin.getAsyncHomeManager().onMainThread(plugin.getAsyncHomeManager().getHome(player.getUniqueId(), home), new FutureCallback<HomeEntry>() {
+				@Override
+				public void onSuccess(HomeEntry homeEntry) {
+					if (!player.isOnline()) return;
+
+					if (homeEntry != null) {
+						goToHome(plugin, player, homeEntry, cost, "multihome.free.namedhome.go");
+					} else {
+						Settings.sendMessageNoHome(player, home);
 					}
-					
-					Util.teleportPlayer(player, homeEntry.getHomeLocation(plugin.getServer()), plugin);
+				}
 
-					int cooldownTime = Settings.getSettingCooldown(player);
-					if (cooldownTime > 0) plugin.getCoolDownManager().addCooldown(player, Util.dateInFuture(cooldownTime));
+				@Override
+				public void onFailure(Throwable t) {
+					Messaging.logSevere("Failed to look up home [" + home + "] for player " + player.getName() + ": " + t.getMessage(), plugin);
 				}
-			} else {
-				Settings.sendMessageNoHome(player, home);
-			}
+			});
 		} else {
 			Messaging.logInfo("Player " + player.getName() + " tried to warp to home location [" + home + "]. Permission not granted.", plugin);
 		}
 	}
 
-	public static void goPlayerNamedHome(MultiHome plugin, Player player, String owner, String home) {
+	public static void goPlayerNamedHome(final MultiHome plugin, final Player player, final String owner, final String home) {
 		if (HomePermissions.has(player, "multihome.othershome.go") || plugin.getInviteManager().getInvite(Bukkit.getPlayer(owner), home, player) != null) {
 			double amount = 0;
 			
-			// Get user cooldown timer.
-			CoolDownEntry cooldown = plugin.getCoolDownManager().getCooldown(player);
+			if (isOnCooldown(plugin, player)) return;
 
-			if (cooldown != null && !HomePermissions.has(player, "multihome.ignore.cooldown")) {
-				Settings.sendMessageCooldown(player, Math.max((int) (cooldown.getExpiry().getTime() - new Date().getTime()), 1000) / 1000);
-				return;
-			}
+			PlayerSettings settings = Settings.getPlayerSettings(player);
 
 			//Check for economy first - and make sure the player either has permission for free homes or has enough money
 			if (Settings.isEconomyEnabled() && !HomePermissions.has(player, "multihome.free.othershome.go")) {
-				if (!MultiHomeEconManager.hasEnough(player.getName(), Settings.getOthersHomeCost(player))) {
-					Settings.sendMessageNotEnoughMoney(player, Settings.getOthersHomeCost(player));
+				if (!MultiHomeEconManager.hasEnough(player.getName(), settings.getOthersHomeCost())) {
+					Settings.sendMessageNotEnoughMoney(player, settings.getOthersHomeCost());
 					return;
 				} else {
-					amount = Settings.getOthersHomeCost(player);
+					amount = settings.getOthersHomeCost();
 				}
 			}
 
-			int warmupTime = Settings.getSettingWarmup(player);
+			Player ownerPlayer = plugin.getServer().getPlayer(owner);
 
-			if (plugin.getHomeManager().getUserExists(plugin.getServer().getPlayer(owner))) {
-				HomeEntry homeEntry = plugin.getHomeManager().getHome(Bukkit.getPlayer(owner), home);
+			if (ownerPlayer == null) {
+				Settings.sendMessageNoPlayer(player, owner);
+				return;
+			}
 
-				if (homeEntry != null) {
-					if (warmupTime > 0 && !HomePermissions.has(player, "multihome.ignore.warmup")) {
-						// Warpup required.
-						WarmUpEntry warmup = new WarmUpEntry(player.getName(), Util.dateInFuture(warmupTime), homeEntry.getHomeLocation(plugin.getServer()), amount);
-						plugin.getWarmUpManager().addWarmup(warmup);
-						Settings.sendMessageWarmup(player, warmupTime);
-						Messaging.logInfo("Player " + player.getName() + " warped to player " + owner + "'s home location: " + home, plugin);
-					} else {
-						// Can transfer instantly
-						
-						//Double Check the charge before teleporting the player
-						if (!HomePermissions.has(player, "multihome.free.othershome.go") && amount != 0) {
-							if (!MultiHomeEconManager.chargePlayer(player.getName(), amount)) {
-								return;
-							} else {
-								Settings.sendMessageDeductForHome(player, amount);
-							}
-						}
+			final double cost = amount;
+			final UUID ownerUUID = ownerPlayer.getUniqueId();
 
-						Util.teleportPlayer(player, homeEntry.getHomeLocation(plugin.getServer()), plugin);
+			// Look the home up off the main thread, then continue back on it.
+			plugin.getAsyncHomeManager().onMainThread(plugin.getAsyncHomeManager().getHome(ownerUUID, home), new FutureCallback<HomeEntry>() {
+				@Override
+				public void onSuccess(HomeEntry homeEntry) {
+					if (!player.isOnline()) return;
 
-						int cooldownTime = Settings.getSettingCooldown(player);
-						if (cooldownTime > 0) plugin.getCoolDownManager().addCooldown(player, Util.dateInFuture(cooldownTime));
+					if (homeEntry != null) {
+						if (goToHome(plugin, player, homeEntry, cost, "multihome.free.othershome.go")) {
+							Messaging.logInfo("Player " + player.getName() + " warped to player " + owner + "'s home location: " + home, plugin);
+						}
+					} else {
+						Settings.sendMessageNoHome(player, owner + ":" + home);
 					}
-				} else {
-					Settings.sendMessageNoHome(player, owner + ":" + home);
 				}
-			} else {
-				Settings.sendMessageNoPlayer(player, owner);
-			}
+
+				@Override
+				public void onFailure(Throwable t) {
+					Messaging.logSevere("Failed to look up " + owner + "'s home [" + home + "] for player " + player.getName() + ": " + t.getMessage(), plugin);
+				}
+			});
 		} else {
 			Messaging.logInfo("Player " + player.getName() + " tried to warp to " + owner + "'s home location [" + home + "]. Permission not granted.", plugin);
 		}
 	}
 
+	/**
+	 * Sends the player to a home they have already been cleared to visit, either after a warmup or instantly.
+	 * Must be called on the main thread.
+	 * @return True if a warmup was started, false if the player was teleported or could not pay.
+	 */
+	private static boolean goToHome(MultiHome plugin, Player player, HomeEntry homeEntry, double amount, String freePermission) {
+		// The lookup ran off the main thread, so a repeated /home may have teleported and charged the player since the first checks.
+		if (isOnCooldown(plugin, player)) return false;
+		if (amount != 0 && !HomePermissions.has(player, freePermission) && !MultiHomeEconManager.hasEnough(player.getName(), amount)) {
+			Settings.sendMessageNotEnoughMoney(player, amount);
+			return false;
+		}
+
+		PlayerSettings settings = Settings.getPlayerSettings(player);
+		int warmupTime = settings.getWarmup();
+
+		if (warmupTime > 0 && !HomePermissions.has(player, "multihome.ignore.warmup")) {
+			// Warpup required.
+			WarmUpEntry warmup = new WarmUpEntry(player.getName(), player.getUniqueId(), Util.dateInFuture(warmupTime),
+					homeEntry.getHomeLocation(plugin.getServer()), amount, settings.isDisruptWarmup());
+			plugin.getWarmUpManager().addWarmup(warmup);
+			Settings.sendMessageWarmup(player, warmupTime);
+			return true;
+		}
+
+		// Can transfer instantly
+
+		//Double Check the charge before teleporting the player
+		if (!HomePermissions.has(player, freePermission) && amount != 0) {
+			if (!MultiHomeEconManager.chargePlayer(player.getName(), amount)) {
+				return false;
+			} else {
+				Settings.sendMessageDeductForHome(player, amount);
+			}
+		}
+
+		Util.teleportPlayer(player, homeEntry.getHomeLocation(plugin.getServer()), plugin);
+
+		int cooldownTime = settings.getCooldown();
+		if (cooldownTime > 0) plugin.getCoolDownManager().addCooldown(player, Util.dateInFuture(cooldownTime));
+
+		return false;
+	}
+
+	/**
+	 * Tells the player how long is left if their cooldown has not expired.
+	 * @return True if the player has to wait.
+	 */
+	private static boolean isOnCooldown(MultiHome plugin, Player player) {
+		CoolDownEntry cooldown = plugin.getCoolDownManager().getCooldown(player);
+
+		if (cooldown != null && !HomePermissions.has(player, "multihome.ignore.cooldown")) {
+			Settings.sendMessageCooldown(player, Math.max((int) (cooldown.getExpiry().getTime() - new Date().getTime()), 1000) / 1000);
+			return true;
+		}
+		return false;
+	}
+
 	public static void setDefaultHome(MultiHome plugin, Player player) {
 		if (HomePermissions.has(player, "multihome.defaulthome.set")) {
 			int numHomes = plugin.getHomeManager().getUserHomeCount(player);
-			int maxHomes = Settings.getSettingMaxHomes(player);
+			PlayerSettings settings = Settings.getPlayerSettings(player);
+			int maxHomes = settings.getMaxHomes();
 			double amount = 0;
 
 			if (numHomes < maxHomes || maxHomes == -1 || plugin.getHomeManager().getHome(player, "") != null) {
 				//Check for economy first - and make sure the player either has permission for free homes or has enough money
 				if (Settings.isEconomyEnabled() && !HomePermissions.has(player, "multihome.free.defaulthome.set")) {
-					if (!MultiHomeEconManager.hasEnough(player.getName(), Settings.getSetHomeCost(player))) {
-						Settings.sendMessageNotEnoughMoney(player, Settings.getSetHomeCost(player));
+					if (!MultiHomeEconManager.hasEnough(player.getName(), settings.getSetHomeCost())) {
+						Settings.sendMessageNotEnoughMoney(player, settings.getSetHomeCost());
 						return;
 					} else {
-						amount = Settings.getSetHomeCost(player);
+						amount = settings.getSetHomeCost();
 					}
 				}
 
@@ -227,17 +259,18 @@ public class MultiHomeCommands {
 	public static void setNamedHome(MultiHome plugin, Player player, String home) {
 		if (HomePermissions.has(player, "multihome.namedhome.set")) {
 			int numHomes = plugin.getHomeManager().getUserHomeCount(player);
-			int maxHomes = Settings.getSettingMaxHomes(player);
+			PlayerSettings settings = Settings.getPlayerSettings(player);
+			int maxHomes = settings.getMaxHomes();
 			double amount = 0;
 
 			if (numHomes < maxHomes || maxHomes == -1 || plugin.getHomeManager().getHome(player, home) != null) {
 				//Check for economy first - and make sure the player either has permission for free homes or has enough money
 				if (Settings.isEconomyEnabled() && !HomePermissions.has(player, "multihome.free.namedhome.set")) {
-					if (!MultiHomeEconManager.hasEnough(player.getName(), Settings.getSetNamedHomeCost(player))) {
-						Settings.sendMessageNotEnoughMoney(player, Settings.getSetNamedHomeCost(player));
+					if (!MultiHomeEconManager.hasEnough(player.getName(), settings.getSetNamedHomeCost())) {
+						Settings.sendMessageNotEnoughMoney(player, settings.getSetNamedHomeCost());
 						return;
 					} else {
-						amount = Settings.getSetNamedHomeCost(player);
+						amount = settings.getSetNamedHomeCost();
 					}
 				}
 
@@ -309,21 +342,25 @@ public class MultiHomeCommands {
 		}
 	}
 
-	public static void listHomes(MultiHome plugin, Player player) {
+	public static void listHomes(MultiHome plugin, Player player, int page) {
 		if (HomePermissions.has(player, "multihome.namedhome.list")) {
-			ArrayList<HomeEntry> homes = plugin.getHomeManager().listUserHomes(player);
+			ArrayList<HomeEntry> homes = listPage(plugin.getHomeManager(), player.getUniqueId(), page);
+			boolean more = trimPage(homes);
 
 			Settings.sendMessageHomeList(player, Util.compileHomeList(homes));
+			if (more) Settings.sendMessageNextPage(player, page, "listhomes");
 		} else {
 			Messaging.logInfo("Player " + player.getName() + " tried to list home locations. Permission not granted.", plugin);
 		}
 	}
 
-	public static void listPlayerHomes(MultiHome plugin, Player player, String owner) {
+	public static void listPlayerHomes(MultiHome plugin, Player player, String owner, int page) {
 		if (HomePermissions.has(player, "multihome.othershome.list")) {
-			ArrayList<HomeEntry> homes = plugin.getHomeManager().listUserHomes(plugin.getServer().getPlayer(owner));
+			ArrayList<HomeEntry> homes = listPage(plugin.getHomeManager(), plugin.getServer().getPlayer(owner).getUniqueId(), page);
+			boolean more = trimPage(homes);
 
 			Settings.sendMessageOthersHomeList(player, owner, Util.compileHomeList(homes));
+			if (more) Settings.sendMessageNextPage(player, page, "listhomes " + owner);
 		} else {
 			Messaging.logInfo("Player " + player.getName() + " tried to list " + owner + "'s home locations. Permission not granted.", plugin);
 		}
@@ -457,23 +494,143 @@ public class MultiHomeCommands {
 		}
 	}
 
-	public static void listInvitesToMe(MultiHome plugin, Player player) {
+	public static void listInvitesToMe(MultiHome plugin, Player player, int page) {
 		if (HomePermissions.has(player, "multihome.listinvites.tome")) {
-			ArrayList<InviteEntry> invites = plugin.getInviteManager().listPlayerInvitesToMe(player);
+			int pageSize = Settings.getListPageSize();
+			ArrayList<InviteEntry> invites = pageSize < 0
+					? plugin.getInviteManager().listPlayerInvitesToMe(player)
+					: plugin.getInviteManager().listPlayerInvitesToMe(player.getUniqueId(), (page - 1) * pageSize, pageSize + 1);
+			boolean more = trimPage(invites);
 
 			Settings.sendMessageInviteListToMe(player, player.getName(), Util.compileInviteListForMe(player.getName(), invites));
+			if (more) Settings.sendMessageNextPage(player, page, "listinvites");
 		} else {
 			Messaging.logInfo("Player " + player.getName() + " tried to list invitations open to them. Permission not granted.", plugin);
 		}
 	}
 
-	public static void listInvitesToOthers(MultiHome plugin, Player player) {
+	public static void listInvitesToOthers(MultiHome plugin, Player player, int page) {
 		if (HomePermissions.has(player, "multihome.listinvites.toothers")) {
-			ArrayList<InviteEntry> invites = plugin.getInviteManager().listPlayerInvitesToOthers(player);
+			int pageSize = Settings.getListPageSize();
+			ArrayList<InviteEntry> invites = pageSize < 0
+					? plugin.getInviteManager().listPlayerInvitesToOthers(player)
+					: plugin.getInviteManager().listPlayerInvitesToOthers(player.getUniqueId(), (page - 1) * pageSize, pageSize + 1);
+			boolean more = trimPage(invites);
 
 			Settings.sendMessageInviteListToOthers(player, player.getName(), Util.compileInviteListForOthers(invites));
+			if (more) Settings.sendMessageNextPage(player, page, "listmyinvites");
 		} else {
 			Messaging.logInfo("Player " + player.getName() + " tried to list invitations they've given. Permission not granted.", plugin);
 		}
 	}
+
+	/**
+	 * Fetches one page of homes, plus one extra entry when paging so trimPage can tell whether another page follows.
+	 */
+	private static ArrayList<HomeEntry> listPage(HomeManager homes, UUID owner, int page) {
+		int pageSize = Settings.getListPageSize();
+
+		if (pageSize < 0) return homes.listUserHomes(owner);
+
+		return homes.listUserHomes(owner, (page - 1) * pageSize, pageSize + 1);
+	}
+
+	/**
+	 * Drops the look-ahead entry fetched past the end of the page.
+	 * @return True if another page follows.
+	 */
+	private static boolean trimPage(ArrayList<?> entries) {
+		int pageSize = Settings.getListPageSize();
+
+		if (pageSize < 0 || entries.size() <= pageSize) return false;
+
+		entries.remove(entries.size() - 1);
+		return true;
+	}
+
+	/**
+	 * Reloads config.yml. Console senders are always allowed.
+	 */
+	public static void reloadSettings(MultiHome plugin, CommandSender sender) {
+		if (!(sender instanceof Player) || HomePermissions.has((Player) sender, "multihome.reload")) {
+			Settings.reloadSettings();
+			Messaging.sendSuccess(sender, "MultiHome configuration reloaded.");
+			Messaging.logInfo(sender.getName() + " reloaded the configuration.", plugin);
+		} else {
+			Messaging.logInfo("Player " + sender.getName() + " tried to reload the configuration. Permission not granted.", plugin);
+		}
+	}
+
+	/**
+	 * Shows command and storage latencies. Console senders are always allowed.
+	 */
+	public static void showStats(MultiHome plugin, CommandSender sender) {
+		if (sender instanceof Player && !HomePermissions.has((Player) sender, "multihome.stats")) {
+			Messaging.logInfo("Player " + sender.getName() + " tried to view timings. Permission not granted.", plugin);
+			return;
+		}
+
+		if (!Timings.isEnabled()) {
+			Messaging.sendError(sender, "Timings are disabled. Set MultiHome.timings to true and restart to enable them.");
+			return;
+		}
+
+		ArrayList<String> report = Timings.getReport();
+		if (report.isEmpty()) {
+			Messaging.sendSuccess(sender, "No timings recorded yet.");
+			return;
+		}
+
+		Messaging.sendSuccess(sender, "MultiHome timings (p50, p99, p999, max):");
+		for (String line : report) {
+			sender.sendMessage(line);
+		}
+	}
+
+	/**
+	 * Imports homes from another plug-in in the background. Console senders are always allowed.
+	 * @param source One of ImportData.SOURCES.
+	 * @param overwrite True to overwrite homes that already exist.
+	 */
+	public static void importHomes(final MultiHome plugin, final CommandSender sender, final String source, final boolean overwrite) {
+		if (sender instanceof Player && !HomePermissions.has((Player) sender, "multihome.import")) {
+			Messaging.logInfo("Player " + sender.getName() + " tried to import homes. Permission not granted.", plugin);
+			return;
+		}
+
+		if (!importing.compareAndSet(false, true)) {
+			Messaging.sendError(sender, "An import is already running.");
+			return;
+		}
+
+		Messaging.sendSuccess(sender, "Importing homes from " + source + ". Progress is shown in the server log.");
+		Messaging.logInfo(sender.getName() + " started an import from " + source + (overwrite ? ", overwriting existing homes." : "."), plugin);
+
+		// Player lookups are not thread safe, so owners stored by name are resolved against the players online now.
+		final Map<String, UUID> players = HomeSource.onlinePlayers(plugin.getServer());
+
+		plugin.getServer().getScheduler().runTaskAsynchronously(plugin, new Runnable() {
+			@Override
+			public void run() {
+				long imported;
+				try {
+					imported = ImportData.importHomesFrom(plugin, source, overwrite, players);
+				} finally {
+					importing.set(false);
+				}
+
+				final String message = imported < 0 ? "Import from " + source + " failed. See the server log for details."
+						: "Imported " + imported + " homes from " + source + ".";
+
+				plugin.getServer().getScheduler().runTask(plugin, new Runnable() {
+					@Override
+					public void run() {
+						if (!(sender instanceof Player) || ((Player) sender).isOnline()) {
+							Messaging.sendSuccess(sender, message);
+						}
+					}
+				});
+			}
+		});
+	}
 }
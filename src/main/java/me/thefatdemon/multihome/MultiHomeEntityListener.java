@@ -1,5 +1,6 @@
 package me.thefatdemon.multihome;
 
+import me.thefatdemon.multihome.data.warmup.WarmUpEntry;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
@@ -25,8 +26,9 @@ public class MultiHomeEntityListener implements Listener {
 			return;
 		else {
 			Player player = (Player) event.getEntity();
-			if (plugin.getWarmUpManager().getWarmup(player.getUniqueId()) != null && Settings.getSettingDisrupt(player)) {
-				plugin.getWarmUpManager().removeWarmup(player.getName().toLowerCase());
+			WarmUpEntry warmup = plugin.getWarmUpManager().getWarmup(player.getUniqueId());
+			if (warmup != null && warmup.isDisruptible()) {
+				plugin.getWarmUpManager().removeWarmup(warmup.getPlayer());
 				Settings.sendMessageWarmupDisrupted(player);
 			}
 		}
@@ -0,0 +1,36 @@
+package me.thefatdemon.multihome;
+
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import ru.tehkode.permissions.PermissionEntity;
+import ru.tehkode.permissions.PermissionUser;
+import ru.tehkode.permissions.events.PermissionEntityEvent;
+
+import java.util.UUID;
+
+/**
+ * Drops cached player settings and permissions when PermissionsEx changes a user or group.
+ * Only registered when PermissionsEx is installed.
+ */
+public class MultiHomePermissionListener implements Listener {
+	@EventHandler(priority = EventPriority.MONITOR)
+	public void onPermissionEntity(PermissionEntityEvent event) {
+		PermissionEntity entity = event.getEntity();
+
+		if (entity instanceof PermissionUser) {
+			try {
+				UUID player = UUID.fromString(entity.getIdentifier());
+				Settings.invalidatePlayerSettings(player);
+				HomePermissions.invalidate(player);
+				return;
+			} catch (IllegalArgumentException ignored) {
+				// Name based user. Fall through and drop everything.
+			}
+		}
+
+		// A group change can affect any player.
+		Settings.invalidatePlayerSettings();
+		HomePermissions.invalidate();
+	}
+}
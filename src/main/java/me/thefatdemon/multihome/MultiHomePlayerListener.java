@@ -32,5 +32,7 @@ public class MultiHomePlayerListener implements Listener {
 		String player = event.getPlayer().getName();
 		
 		plugin.getWarmUpManager().removeWarmup(player);
+		Settings.invalidatePlayerSettings(event.getPlayer().getUniqueId());
+		HomePermissions.invalidate(event.getPlayer().getUniqueId());
 	}
 }
@@ -0,0 +1,74 @@
+package me.thefatdemon.multihome;
+
+import org.bukkit.entity.Player;
+
+/**
+ * Group settings of one player, resolved once from the permission group and the config.
+ * Instances are immutable and cached by Settings until the config is reloaded, the player
+ * quits or their permissions change.
+ */
+public class PlayerSettings {
+	private final String group;
+	private final int warmup;
+	private final int cooldown;
+	private final int maxHomes;
+	private final boolean disruptWarmup;
+	private final int homeCost;
+	private final int namedHomeCost;
+	private final int othersHomeCost;
+	private final int setHomeCost;
+	private final int setNamedHomeCost;
+
+	PlayerSettings(Player player) {
+		this.group = HomePermissions.getGroup(player);
+		this.warmup = Settings.getGroupSettingInt(this.group, "warmup", 0);
+		this.cooldown = Settings.getGroupSettingInt(this.group, "cooldown", 0);
+		this.maxHomes = Settings.getGroupSettingInt(this.group, "maxhomes", -1);
+		this.disruptWarmup = Settings.getGroupSettingInt(this.group, "disruptWarmup", 1) == 1;
+		this.homeCost = Settings.getGroupSettingInt(this.group, "homeCost", 0);
+		this.namedHomeCost = Settings.getGroupSettingInt(this.group, "namedHomeCost", 0);
+		this.othersHomeCost = Settings.getGroupSettingInt(this.group, "othersHomeCost", 0);
+		this.setHomeCost = Settings.getGroupSettingInt(this.group, "setHomeCost", 0);
+		this.setNamedHomeCost = Settings.getGroupSettingInt(this.group, "setNamedHomeCost", 0);
+	}
+
+	public String getGroup() {
+		return group;
+	}
+
+	public int getWarmup() {
+		return warmup;
+	}
+
+	public int getCooldown() {
+		return cooldown;
+	}
+
+	public int getMaxHomes() {
+		return maxHomes;
+	}
+
+	public boolean isDisruptWarmup() {
+		return disruptWarmup;
+	}
+
+	public int getHomeCost() {
+		return homeCost;
+	}
+
+	public int getNamedHomeCost() {
+		return namedHomeCost;
+	}
+
+	public int getOthersHomeCost() {
+		return othersHomeCost;
+	}
+
+	public int getSetHomeCost() {
+		return setHomeCost;
+	}
+
+	public int getSetNamedHomeCost() {
+		return setNamedHomeCost;
+	}
+}
@@ -3,8 +3,16 @@ package me.thefatdemon.multihome;
 import org.bukkit.command.CommandSender;
 import org.bukkit.entity.Player;
 
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
 public class Settings {
 	private static MultiHome plugin;
+	private static volatile Map<String, MessageTemplate> messages = Collections.emptyMap(); // Replaced whole on reload.
+	private static final ConcurrentHashMap<UUID, PlayerSettings> playerSettings = new ConcurrentHashMap<UUID, PlayerSettings>();
 	
 	public static void initialize(MultiHome plugin) {
 		Settings.plugin = plugin;
@@ -13,12 +21,26 @@ public class Settings {
     public static void loadSettings() {
     	plugin.getConfig().options().copyDefaults(true);
         plugin.saveConfig();
+        compileMessages();
     }
 
+	/**
+	 * Reloads config.yml from disk and drops all cached player settings and permissions.
+	 */
+	public static void reloadSettings() {
+		plugin.reloadConfig();
+		plugin.getConfig().options().copyDefaults(true);
+		compileMessages();
+		invalidatePlayerSettings();
+		HomePermissions.setCacheTime(getPermissionCacheTime() * 1000L);
+	}
+
 	public static int getSettingInt(Player player, String setting, int defaultValue) {
 		// Get the player group
-		String playerGroup = HomePermissions.getGroup(player);
-		
+		return getGroupSettingInt(HomePermissions.getGroup(player), setting, defaultValue);
+	}
+
+	static int getGroupSettingInt(String playerGroup, String setting, int defaultValue) {
 		if (playerGroup != null) {
 			// Player group found
 			if (plugin.getConfig().isSet("MultiHome.groups." + playerGroup + "." + setting)) {
@@ -31,6 +53,34 @@ public class Settings {
 		return plugin.getConfig().getInt("MultiHome.default." + setting, defaultValue);
 	}
 
+	/**
+	 * Returns the player's group settings, resolving them on first use.
+	 */
+	public static PlayerSettings getPlayerSettings(Player player) {
+		PlayerSettings settings = playerSettings.get(player.getUniqueId());
+
+		if (settings == null) {
+			settings = new PlayerSettings(player);
+			playerSettings.put(player.getUniqueId(), settings);
+		}
+
+		return settings;
+	}
+
+	/**
+	 * Drops the cached settings of one player, so they are resolved again on next use.
+	 */
+	public static void invalidatePlayerSettings(UUID player) {
+		playerSettings.remove(player);
+	}
+
+	/**
+	 * Drops the cached settings of every player.
+	 */
+	public static void invalidatePlayerSettings() {
+		playerSettings.clear();
+	}
+
 	public static String getSettingString(Player player, String setting, String defaultValue) {
 		// Get the player group
 		String playerGroup = HomePermissions.getGroup(player);
@@ -53,12 +103,77 @@ public class Settings {
 		return plugin.getConfig().getString("MultiHome.dataStoreSettings." + storeMethod + "." + setting, "");
 	}
 
+	public static int getDataStoreSettingInt(String storeMethod, String setting, int defaultValue) {
+		return plugin.getConfig().getInt("MultiHome.dataStoreSettings." + storeMethod + "." + setting, defaultValue);
+	}
+
+	public static boolean getDataStoreSettingBoolean(String storeMethod, String setting, boolean defaultValue) {
+		return plugin.getConfig().getBoolean("MultiHome.dataStoreSettings." + storeMethod + "." + setting, defaultValue);
+	}
+
 	public static String getDataStoreMethod() {
 		return plugin.getConfig().getString("MultiHome.dataStoreMethod", "file");
 	}
 
 	
 	
+	public static int getAsyncThreads() {
+		return plugin.getConfig().getInt("MultiHome.asyncThreads", 2);
+	}
+
+	/**
+	 * @return int Worker threads for parallel imports. Defaults to one per processor.
+	 */
+	public static int getImportThreads() {
+		int threads = plugin.getConfig().getInt("MultiHome.importThreads", 0);
+		return threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+	}
+
+	public static boolean isVolatileWarmupsEnabled() {
+		return plugin.getConfig().getBoolean("MultiHome.volatileWarmups", true);
+	}
+
+	public static boolean isPersistWarmupsEnabled() {
+		return plugin.getConfig().getBoolean("MultiHome.persistWarmups", true);
+	}
+
+	/**
+	 * @return boolean True to record command and data manager latencies. Read once on startup.
+	 */
+	public static boolean isTimingsEnabled() {
+		return plugin.getConfig().getBoolean("MultiHome.timings", false);
+	}
+
+	/**
+	 * @return int Seconds between timing summaries in the log. 0 to only show them with /multihome stats.
+	 */
+	public static int getTimingsLogInterval() {
+		return plugin.getConfig().getInt("MultiHome.timingsLogInterval", 300);
+	}
+
+	public static boolean isIoWatchdogEnabled() {
+		return plugin.getConfig().getBoolean("MultiHome.ioWatchdog", false);
+	}
+
+	/**
+	 * @return int Milliseconds main thread storage I/O must take before the watchdog reports it. 0 reports every call.
+	 */
+	public static int getIoWatchdogThreshold() {
+		return plugin.getConfig().getInt("MultiHome.ioWatchdogThreshold", 0);
+	}
+
+	public static int getPermissionCacheTime() {
+		return plugin.getConfig().getInt("MultiHome.permissionCacheTime", 5);
+	}
+
+	/**
+	 * @return int Entries per page of /listhomes and the invite lists, or -1 to list everything at once.
+	 */
+	public static int getListPageSize() {
+		int size = plugin.getConfig().getInt("MultiHome.listPageSize", 50);
+		return size > 0 ? size : -1;
+	}
+
 	public static boolean isHomeOnDeathEnabled() {
 		return plugin.getConfig().getBoolean("MultiHome.enableHomeOnDeath", false);
 	}
@@ -68,262 +183,250 @@ public class Settings {
 	}
 
 	public static int getSetNamedHomeCost(Player player) {
-		return getSettingInt(player, "setNamedHomeCost", 0);
+		return getPlayerSettings(player).getSetNamedHomeCost();
 	}
 
 	public static int getSetHomeCost(Player player) {
-		return getSettingInt(player, "setHomeCost", 0);
+		return getPlayerSettings(player).getSetHomeCost();
 	}
 
-	public static int getHomeCost (Player player) {
-		return getSettingInt(player, "homeCost", 0);
+	public static int getHomeCost(Player player) {
+		return getPlayerSettings(player).getHomeCost();
 	}
 
 	public static int getNamedHomeCost(Player player) {
-		return getSettingInt(player, "namedHomeCost", 0);
+		return getPlayerSettings(player).getNamedHomeCost();
 	}
 	
 	public static int getOthersHomeCost(Player player) {
-		return getSettingInt(player, "othersHomeCost", 0);
+		return getPlayerSettings(player).getOthersHomeCost();
 	}
 
 	public static int getSettingWarmup(Player player) {
-		return getSettingInt(player, "warmup", 0);
+		return getPlayerSettings(player).getWarmup();
 	}
 	
 	public static int getSettingCooldown(Player player) {
-		return getSettingInt(player, "cooldown", 0);
+		return getPlayerSettings(player).getCooldown();
 	}
 	
 	public static int getSettingMaxHomes(Player player) {
-		return getSettingInt(player, "maxhomes", -1);
+		return getPlayerSettings(player).getMaxHomes();
 	}
 	
 	public static boolean getSettingDisrupt(Player player) {
-		return getSettingInt(player, "disruptWarmup", 1) == 1;
+		return getPlayerSettings(player).isDisruptWarmup();
 	}
 	
+	/**
+	 * Parses every message in config.yml and swaps them in at once, so senders never see a half-loaded set.
+	 */
+	private static void compileMessages() {
+		HashMap<String, MessageTemplate> compiled = new HashMap<String, MessageTemplate>();
+
+		compileMessage(compiled, "tooManyParameters");
+		compileMessage(compiled, "defaultHomeSetMessage");
+		compileMessage(compiled, "cannotDeleteDefaultHomeMessage");
+		compileMessage(compiled, "homeSetMessage", "HOME");
+		compileMessage(compiled, "homeDeletedMessage", "NAME", "HOME");
+		compileMessage(compiled, "warmupMessage", "SECONDS");
+		compileMessage(compiled, "warmupCompleteMessage");
+		compileMessage(compiled, "warmupDisruptedMessage");
+		compileMessage(compiled, "cooldownMessage", "SECONDS");
+		compileMessage(compiled, "tooManyHomesMessage", "CURRENT", "MAX");
+		compileMessage(compiled, "noHomeMessage", "HOME");
+		compileMessage(compiled, "noDefaultHomeMessage");
+		compileMessage(compiled, "noPlayerMessage", "PLAYER");
+		compileMessage(compiled, "homeListMessage", "LIST");
+		compileMessage(compiled, "homeListOthersMessage", "PLAYER", "LIST");
+		compileMessage(compiled, "homeInviteOwnerMessage", "TARGET", "HOME");
+		compileMessage(compiled, "homeInviteTargetMessage", "OWNER", "HOME");
+		compileMessage(compiled, "homeInviteTimedOwnerMessage", "TARGET", "HOME", "TIME");
+		compileMessage(compiled, "homeInviteTimedTargetMessage", "OWNER", "HOME", "TIME");
+		compileMessage(compiled, "homeUninviteOwnerMessage", "TARGET", "HOME");
+		compileMessage(compiled, "homeUninviteTargetMessage", "OWNER", "HOME");
+		compileMessage(compiled, "homeListInvitesToMe", "TARGET", "LIST");
+		compileMessage(compiled, "homeListInvitesToOthers", "OWNER", "LIST");
+		compileMessage(compiled, "listNextPageMessage", "PAGE", "COMMAND", "NEXT");
+		compileMessage(compiled, "econNotEnoughFunds", "AMOUNT");
+		compileMessage(compiled, "econDeductedForHome", "AMOUNT");
+		compileMessage(compiled, "econDeductedForSet", "AMOUNT");
+
+		messages = compiled;
+	}
+
+	private static void compileMessage(HashMap<String, MessageTemplate> compiled, String key, String... placeholders) {
+		String text = plugin.getConfig().getString("MultiHome.messages." + key, null);
+
+		if (text != null) compiled.put(key, MessageTemplate.compile(text, placeholders));
+	}
+
+	/**
+	 * @return MessageTemplate The compiled message, or null if it is not configured.
+	 */
+	private static MessageTemplate getMessage(String key) {
+		return messages.get(key);
+	}
+
 	public static void sendMessageTooManyParameters(CommandSender sender) {
-		String message = plugin.getConfig().getString("MultiHome.messages.tooManyParameters", null);
+		MessageTemplate message = getMessage("tooManyParameters");
 
-		if (message != null) Messaging.sendSuccess(sender, message);
+		if (message != null) Messaging.sendSuccess(sender, message.render());
 	}
 
 	public static void sendMessageDefaultHomeSet(CommandSender sender) {
-		String message = plugin.getConfig().getString("MultiHome.messages.defaultHomeSetMessage", null);
+		MessageTemplate message = getMessage("defaultHomeSetMessage");
 
-		if (message != null) Messaging.sendSuccess(sender, message);
+		if (message != null) Messaging.sendSuccess(sender, message.render());
 	}
 
 	public static void sendMessageCannotDeleteDefaultHome(CommandSender sender) {
-		String message = plugin.getConfig().getString("MultiHome.messages.cannotDeleteDefaultHomeMessage", null);
+		MessageTemplate message = getMessage("cannotDeleteDefaultHomeMessage");
 
-		if (message != null) Messaging.sendError(sender, message);
+		if (message != null) Messaging.sendError(sender, message.render());
 	}
 	
 	public static void sendMessageHomeSet(CommandSender sender, String home) {
-		String message = plugin.getConfig().getString("MultiHome.messages.homeSetMessage", null);
-		
-		if (message != null) {
-			Messaging.sendSuccess(sender, message
-					.replaceAll("\\{HOME\\}", home));
-		}
+		MessageTemplate message = getMessage("homeSetMessage");
+
+		if (message != null) Messaging.sendSuccess(sender, message.render(home));
 	}
 	
 	public static void sendMessageHomeDeleted(CommandSender sender, String home) {
-		String message = plugin.getConfig().getString("MultiHome.messages.homeDeletedMessage", null);
-		
-		if (message != null) {
-			Messaging.sendSuccess(sender, message
-					.replaceAll("\\{NAME\\}", home)
-					.replaceAll("\\{HOME\\}", home));
-		}
+		MessageTemplate message = getMessage("homeDeletedMessage");
+
+		if (message != null) Messaging.sendSuccess(sender, message.render(home, home));
 	}
 
 	public static void sendMessageWarmup(CommandSender sender, int timeLeft) {
-		String message = plugin.getConfig().getString("MultiHome.messages.warmupMessage", null);
-		
-		if (message != null) {
-			Messaging.sendSuccess(sender, message
-					.replaceAll("\\{SECONDS\\}", Integer.toString(timeLeft)));
-		}
+		MessageTemplate message = getMessage("warmupMessage");
+
+		if (message != null) Messaging.sendSuccess(sender, message.render(Integer.toString(timeLeft)));
 	}
 
 	public static void sendMessageWarmupComplete(CommandSender sender) {
-		String message = plugin.getConfig().getString("MultiHome.messages.warmupCompleteMessage", null);
+		MessageTemplate message = getMessage("warmupCompleteMessage");
 
-		if (message != null) Messaging.sendSuccess(sender, message);
+		if (message != null) Messaging.sendSuccess(sender, message.render());
 	}
 
 	public static void sendMessageWarmupDisrupted(CommandSender sender) {
-		String message = plugin.getConfig().getString("MultiHome.messages.warmupDisruptedMessage", null);
+		MessageTemplate message = getMessage("warmupDisruptedMessage");
 
-		if (message != null) Messaging.sendError(sender, message);
+		if (message != null) Messaging.sendError(sender, message.render());
 	}
 
 	public static void sendMessageCooldown(CommandSender sender, int timeLeft) {
-		String message = plugin.getConfig().getString("MultiHome.messages.cooldownMessage", null);
-		
-		if (message != null) {
-			Messaging.sendError(sender, message
-					.replaceAll("\\{SECONDS\\}", Integer.toString(timeLeft)));
-		}
+		MessageTemplate message = getMessage("cooldownMessage");
+
+		if (message != null) Messaging.sendError(sender, message.render(Integer.toString(timeLeft)));
 	}
 
 	public static void sendMessageMaxHomes(CommandSender sender, int currentHomes, int maxHomes) {
-		String message = plugin.getConfig().getString("MultiHome.messages.tooManyHomesMessage", null);
-		
-		if (message != null) {
-			Messaging.sendError(sender, message
-					.replaceAll("\\{CURRENT\\}", Integer.toString(currentHomes))
-					.replaceAll("\\{MAX\\}", Integer.toString(maxHomes)));
-		}
+		MessageTemplate message = getMessage("tooManyHomesMessage");
+
+		if (message != null) Messaging.sendError(sender, message.render(Integer.toString(currentHomes), Integer.toString(maxHomes)));
 	}
 
 	public static void sendMessageNoHome(CommandSender sender, String home) {
-		String message = plugin.getConfig().getString("MultiHome.messages.noHomeMessage", null);
-		
-		if (message != null) {
-			Messaging.sendError(sender, message
-					.replaceAll("\\{HOME\\}", home));
-		}
+		MessageTemplate message = getMessage("noHomeMessage");
+
+		if (message != null) Messaging.sendError(sender, message.render(home));
 	}
 
 	public static void sendMessageNoDefaultHome(CommandSender sender) {
-		String message = plugin.getConfig().getString("MultiHome.messages.noDefaultHomeMessage", null);
-		
-		if (message != null) Messaging.sendError(sender, message);
+		MessageTemplate message = getMessage("noDefaultHomeMessage");
+
+		if (message != null) Messaging.sendError(sender, message.render());
 	}
 
 	public static void sendMessageNoPlayer(CommandSender sender, String targetPlayer) {
-		String message = plugin.getConfig().getString("MultiHome.messages.noPlayerMessage", null);
-		
-		if (message != null) {
-			Messaging.sendError(sender, message
-					.replaceAll("\\{PLAYER\\}", targetPlayer));
-		}
+		MessageTemplate message = getMessage("noPlayerMessage");
+
+		if (message != null) Messaging.sendError(sender, message.render(targetPlayer));
 	}
 
 	public static void sendMessageHomeList(CommandSender sender, String homeList) {
-		String message = plugin.getConfig().getString("MultiHome.messages.homeListMessage", null);
-		
-		if (message != null) {
-			Messaging.sendSuccess(sender, message
-					.replaceAll("\\{LIST\\}", homeList));
-		}
+		MessageTemplate message = getMessage("homeListMessage");
+
+		if (message != null) Messaging.sendSuccess(sender, message.render(homeList));
 	}
 
 	public static void sendMessageOthersHomeList(CommandSender sender, String player, String homeList) {
-		String message = plugin.getConfig().getString("MultiHome.messages.homeListOthersMessage", null);
-		
-		if (message != null) {
-			Messaging.sendSuccess(sender, message
-					.replaceAll("\\{PLAYER\\}", player)
-					.replaceAll("\\{LIST\\}", homeList));
-		}
+		MessageTemplate message = getMessage("homeListOthersMessage");
+
+		if (message != null) Messaging.sendSuccess(sender, message.render(player, homeList));
 	}
 
 	public static void sendMessageInviteOwnerHome(CommandSender sender, String target, String home) {
-		String message = plugin.getConfig().getString("MultiHome.messages.homeInviteOwnerMessage", null);
-		
-		if (message != null) {
-			Messaging.sendSuccess(sender, message
-					.replaceAll("\\{TARGET\\}", target)
-					.replaceAll("\\{HOME\\}", home));
-		}
+		MessageTemplate message = getMessage("homeInviteOwnerMessage");
+
+		if (message != null) Messaging.sendSuccess(sender, message.render(target, home));
 	}
 
 	public static void sendMessageInviteTargetHome(CommandSender sender, String owner, String home) {
-		String message = plugin.getConfig().getString("MultiHome.messages.homeInviteTargetMessage", null);
-		
-		if (message != null) {
-			Messaging.sendSuccess(sender, message
-					.replaceAll("\\{OWNER\\}", owner)
-					.replaceAll("\\{HOME\\}", home));
-		}
+		MessageTemplate message = getMessage("homeInviteTargetMessage");
+
+		if (message != null) Messaging.sendSuccess(sender, message.render(owner, home));
 	}
 
 	public static void sendMessageInviteTimedOwnerHome(CommandSender sender, String target, String home, int time) {
-		String message = plugin.getConfig().getString("MultiHome.messages.homeInviteTimedOwnerMessage", null);
-		
-		if (message != null) {
-			Messaging.sendSuccess(sender, message
-					.replaceAll("\\{TARGET\\}", target)
-					.replaceAll("\\{HOME\\}", home)
-					.replaceAll("\\{TIME\\}", Integer.toString(time)));
-		}
+		MessageTemplate message = getMessage("homeInviteTimedOwnerMessage");
+
+		if (message != null) Messaging.sendSuccess(sender, message.render(target, home, Integer.toString(time)));
 	}
 
 	public static void sendMessageInviteTimedTargetHome(CommandSender sender, String owner, String home, int time) {
-		String message = plugin.getConfig().getString("MultiHome.messages.homeInviteTimedTargetMessage", null);
-		
-		if (message != null) {
-			Messaging.sendSuccess(sender, message
-					.replaceAll("\\{OWNER\\}", owner)
-					.replaceAll("\\{HOME\\}", home)
-					.replaceAll("\\{TIME\\}", Integer.toString(time)));
-		}
+		MessageTemplate message = getMessage("homeInviteTimedTargetMessage");
+
+		if (message != null) Messaging.sendSuccess(sender, message.render(owner, home, Integer.toString(time)));
 	}
 
 	public static void sendMessageUninviteOwnerHome(CommandSender sender, String target, String home) {
-		String message = plugin.getConfig().getString("MultiHome.messages.homeUninviteOwnerMessage", null);
-		
-		if (message != null) {
-			Messaging.sendSuccess(sender, message
-					.replaceAll("\\{TARGET\\}", target)
-					.replaceAll("\\{HOME\\}", home));
-		}
+		MessageTemplate message = getMessage("homeUninviteOwnerMessage");
+
+		if (message != null) Messaging.sendSuccess(sender, message.render(target, home));
 	}
 
 	public static void sendMessageUninviteTargetHome(CommandSender sender, String owner, String home) {
-		String message = plugin.getConfig().getString("MultiHome.messages.homeUninviteTargetMessage", null);
-		
-		if (message != null) {
-			Messaging.sendSuccess(sender, message
-					.replaceAll("\\{OWNER\\}", owner)
-					.replaceAll("\\{HOME\\}", home));
-		}
+		MessageTemplate message = getMessage("homeUninviteTargetMessage");
+
+		if (message != null) Messaging.sendSuccess(sender, message.render(owner, home));
 	}
 
 	public static void sendMessageInviteListToMe(CommandSender sender, String target, String list) {
-		String message = plugin.getConfig().getString("MultiHome.messages.homeListInvitesToMe", null);
-		
-		if (message != null) {
-			Messaging.sendSuccess(sender, message
-					.replaceAll("\\{TARGET\\}", target)
-					.replaceAll("\\{LIST\\}", list));
-		}
+		MessageTemplate message = getMessage("homeListInvitesToMe");
+
+		if (message != null) Messaging.sendSuccess(sender, message.render(target, list));
 	}
 
 	public static void sendMessageInviteListToOthers(CommandSender sender, String owner, String list) {
-		String message = plugin.getConfig().getString("MultiHome.messages.homeListInvitesToOthers", null);
-		
-		if (message != null) {
-			Messaging.sendSuccess(sender, message
-					.replaceAll("\\{OWNER\\}", owner)
-					.replaceAll("\\{LIST\\}", list));
-		}
+		MessageTemplate message = getMessage("homeListInvitesToOthers");
+
+		if (message != null) Messaging.sendSuccess(sender, message.render(owner, list));
+	}
+
+	public static void sendMessageNextPage(CommandSender sender, int page, String command) {
+		MessageTemplate message = getMessage("listNextPageMessage");
+
+		if (message != null) Messaging.sendSuccess(sender, message.render(Integer.toString(page), command, Integer.toString(page + 1)));
 	}
 
 	public static void sendMessageNotEnoughMoney(Player player, double amount) {
-		String message = plugin.getConfig().getString("MultiHome.messages.econNotEnoughFunds", null);
+		MessageTemplate message = getMessage("econNotEnoughFunds");
 
-		if (message != null) {
-			Messaging.sendError(player, message.replaceAll("\\{AMOUNT\\}", amount+""));
-		}
+		if (message != null) Messaging.sendError(player, message.render(String.valueOf(amount)));
 	}
 
 	public static void sendMessageDeductForHome(Player player, double amount) {
-		String message = plugin.getConfig().getString("MultiHome.messages.econDeductedForHome", null);
-		if (message != null) {
-			Messaging.sendSuccess(player,message.replaceAll("\\{AMOUNT\\}", amount+""));
-		}
+		MessageTemplate message = getMessage("econDeductedForHome");
+
+		if (message != null) Messaging.sendSuccess(player, message.render(String.valueOf(amount)));
 	}
 
 	public static void sendMessageDeductForSet(Player player, double amount) {
-		String message = plugin.getConfig().getString("MultiHome.messages.econDeductedForSet", null);
-		if (message != null) {
-			Messaging.sendSuccess(player, message.replaceAll("\\{AMOUNT\\}", amount+""));
-		}
+		MessageTemplate message = getMessage("econDeductedForSet");
+
+		if (message != null) Messaging.sendSuccess(player, message.render(String.valueOf(amount)));
 	}
 }
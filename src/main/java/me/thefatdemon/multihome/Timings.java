@@ -0,0 +1,116 @@
+package me.thefatdemon.multihome;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Latency histograms of commands and data manager calls, by name such as "command.home"
+ * or "home.sql.getHome". Timing is off unless MultiHome.timings is set; while it is off,
+ * the data managers are not wrapped at all and command timing is a single field read.
+ */
+public class Timings {
+	private static volatile boolean enabled = false;
+	private static final ConcurrentHashMap<String, LatencyHistogram> histograms = new ConcurrentHashMap<String, LatencyHistogram>();
+
+	public static boolean isEnabled() {
+		return enabled;
+	}
+
+	public static void setEnabled(boolean enabled) {
+		Timings.enabled = enabled;
+	}
+
+	/**
+	 * Returns the histogram with the given name, creating it if needed.
+	 * Callers on hot paths should look it up once and keep it.
+	 */
+	public static LatencyHistogram get(String name) {
+		LatencyHistogram histogram = histograms.get(name);
+
+		if (histogram == null) {
+			histogram = new LatencyHistogram();
+			LatencyHistogram existing = histograms.putIfAbsent(name, histogram);
+			if (existing != null) histogram = existing;
+		}
+		return histogram;
+	}
+
+	/**
+	 * @return long Start time to pass to record, or 0 when timing is off.
+	 */
+	public static long start() {
+		return enabled ? System.nanoTime() : 0;
+	}
+
+	/**
+	 * Records the time since start in the named histogram. Does nothing when start is 0.
+	 */
+	public static void record(String name, long start) {
+		if (start != 0) {
+			get(name).record(System.nanoTime() - start);
+		}
+	}
+
+	/**
+	 * Clears every histogram.
+	 */
+	public static void reset() {
+		for (LatencyHistogram histogram : histograms.values()) {
+			histogram.reset();
+		}
+	}
+
+	/**
+	 * @return ArrayList One line per histogram that has samples, sorted by name.
+	 */
+	public static ArrayList<String> getReport() {
+		ArrayList<String> lines = new ArrayList<String>();
+
+		for (Map.Entry<String, LatencyHistogram> entry : sorted().entrySet()) {
+			LatencyHistogram histogram = entry.getValue();
+
+			lines.add(entry.getKey() + ": count=" + histogram.getCount()
+					+ ", p50=" + formatMillis(histogram.getValueAtPercentile(50))
+					+ ", p99=" + formatMillis(histogram.getValueAtPercentile(99))
+					+ ", p999=" + formatMillis(histogram.getValueAtPercentile(99.9))
+					+ ", max=" + formatMillis(histogram.getMax()));
+		}
+		return lines;
+	}
+
+	/**
+	 * @return String Compact one-line summary of every histogram that has samples, for the log.
+	 */
+	public static String getSummary() {
+		StringBuilder builder = new StringBuilder();
+
+		for (Map.Entry<String, LatencyHistogram> entry : sorted().entrySet()) {
+			LatencyHistogram histogram = entry.getValue();
+
+			if (builder.length() > 0) builder.append("; ");
+			builder.append(entry.getKey()).append(" n=").append(histogram.getCount())
+					.append(' ').append(formatMillis(histogram.getValueAtPercentile(50)))
+					.append('/').append(formatMillis(histogram.getValueAtPercentile(99)))
+					.append('/').append(formatMillis(histogram.getValueAtPercentile(99.9)))
+					.append('/').append(formatMillis(histogram.getMax()));
+		}
+		return builder.length() == 0 ? "no samples" : "p50/p99/p999/max " + builder;
+	}
+
+	private static TreeMap<String, LatencyHistogram> sorted() {
+		TreeMap<String, LatencyHistogram> sorted = new TreeMap<String, LatencyHistogram>();
+
+		for (Map.Entry<String, LatencyHistogram> entry : histograms.entrySet()) {
+			if (entry.getValue().getCount() > 0) {
+				sorted.put(entry.getKey(), entry.getValue());
+			}
+		}
+		return sorted;
+	}
+
+	private static String formatMillis(long nanos) {
+		return String.format("%.3fms", nanos / 1000000.0);
+	}
+}
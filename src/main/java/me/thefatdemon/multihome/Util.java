@@ -6,8 +6,6 @@ import org.bukkit.Location;
 import org.bukkit.entity.Player;
 import org.bukkit.plugin.java.JavaPlugin;
 
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
@@ -105,83 +103,106 @@ public class Util {
 		return new Date(now.getTime() + seconds * 1000);
 	}
 	
-	public static String compileHomeList(ArrayList<HomeEntry> homes) {
-		String userResponse = "";
+	public static String compileHomeList(List<HomeEntry> homes) {
+		StringBuilder builder = new StringBuilder(homes.size() * 12);
+
 		for (HomeEntry thisLocation : homes) {
+			if (builder.length() > 0) builder.append(", ");
+
 			if (thisLocation.getHomeName().length() == 0) {
-				userResponse = userResponse + ", [Default]";
+				builder.append("[Default]");
 			} else {
-				userResponse = userResponse + ", " + thisLocation.getHomeName();
+				builder.append(thisLocation.getHomeName());
 			}
 		}
-		if (!userResponse.isEmpty() && userResponse.length() > 2) {
-			return userResponse.substring(2);
-		}
-		return "";
+		return builder.toString();
 	}
 
-	public static String compileInviteListForMe(String requestingPlayer, ArrayList<InviteEntry> invites) {
-		String userResponse = "";
+	public static String compileInviteListForMe(String requestingPlayer, List<InviteEntry> invites) {
+		StringBuilder builder = new StringBuilder(invites.size() * 24);
+		long now = System.currentTimeMillis();
+
 		for (InviteEntry thisInvite : invites) {
 			if (thisInvite.getInviteSource().compareToIgnoreCase(requestingPlayer) != 0) {
-				if (thisInvite.getInviteHome().length() == 0) {
-					userResponse = userResponse + ", " + thisInvite.getInviteSource() + ":[Default]";
-					if (thisInvite.getInviteExpires() != null) {
-						long expiry = (new Date()).getTime() - thisInvite.getInviteExpires().getTime();
-						
-						DateFormat df = new SimpleDateFormat("HH:mm:ss");
-						String expireCountdown = df.format(new Date(expiry));
-						
-						userResponse += "(" + expireCountdown + ")";
-					}
-				} else {
-					userResponse = userResponse + ", " + thisInvite.getInviteSource() + ":" + thisInvite.getInviteHome();
-					if (thisInvite.getInviteExpires() != null) {
-						long expiry = (new Date()).getTime() - thisInvite.getInviteExpires().getTime();
-						
-						DateFormat df = new SimpleDateFormat("HH:mm:ss");
-						String expireCountdown = df.format(new Date(expiry));
-						
-						userResponse += "(" + expireCountdown + ")";
-					}
-				}
+				if (builder.length() > 0) builder.append(", ");
+
+				builder.append(thisInvite.getInviteSource()).append(':');
+				appendHomeName(builder, thisInvite.getInviteHome());
+				appendExpiry(builder, thisInvite, now);
 			}
 		}
-		if (!userResponse.isEmpty() && userResponse.length() > 2) {
-			return userResponse.substring(2);
-		}
-		return "";
+		return builder.toString();
 	}
 
-	public static String compileInviteListForOthers(ArrayList<InviteEntry> invites) {
-		String userResponse = "";
+	public static String compileInviteListForOthers(List<InviteEntry> invites) {
+		StringBuilder builder = new StringBuilder(invites.size() * 24);
+		long now = System.currentTimeMillis();
+
 		for (InviteEntry thisInvite : invites) {
-			if (thisInvite.getInviteHome().length() == 0) {
-				userResponse += ", " + thisInvite.getInviteTarget() + "->[Default]";
-				if (thisInvite.getInviteExpires() != null) {
-					long expiry = (new Date()).getTime() - thisInvite.getInviteExpires().getTime();
-					
-					DateFormat df = new SimpleDateFormat("HH:mm:ss");
-					String expireCountdown = df.format(new Date(expiry));
-					
-					userResponse += "(" + expireCountdown + ")";
-				}
-			} else {
-				userResponse = userResponse + ", " + thisInvite.getInviteTarget() + "->" + thisInvite.getInviteHome();
-				if (thisInvite.getInviteExpires() != null) {
-					long expiry = (new Date()).getTime() - thisInvite.getInviteExpires().getTime();
-					
-					DateFormat df = new SimpleDateFormat("HH:mm:ss");
-					String expireCountdown = df.format(new Date(expiry));
-					
-					userResponse += "(" + expireCountdown + ")";
-				}
-			}
+			if (builder.length() > 0) builder.append(", ");
+
+			builder.append(thisInvite.getInviteTarget()).append("->");
+			appendHomeName(builder, thisInvite.getInviteHome());
+			appendExpiry(builder, thisInvite, now);
 		}
-		if (!userResponse.isEmpty() && userResponse.length() > 2) {
-			return userResponse.substring(2);
+		return builder.toString();
+	}
+
+	/**
+	 * Formats a duration as H:MM:SS, with a day count in front when it is a day or longer.
+	 * @param milliseconds Duration. Negative values are treated as zero.
+	 */
+	public static String formatDuration(long milliseconds) {
+		StringBuilder builder = new StringBuilder(12);
+		appendDuration(builder, milliseconds);
+		return builder.toString();
+	}
+
+	/**
+	 * Appends a duration in the same form as formatDuration.
+	 */
+	public static void appendDuration(StringBuilder builder, long milliseconds) {
+		long seconds = Math.max(0, milliseconds) / 1000;
+		long days = seconds / 86400;
+
+		if (days > 0) builder.append(days).append("d ");
+		builder.append((seconds / 3600) % 24).append(':');
+		appendTwoDigits(builder, (seconds / 60) % 60);
+		builder.append(':');
+		appendTwoDigits(builder, seconds % 60);
+	}
+
+	/**
+	 * Returns one page of a list.
+	 * @param offset Number of entries to skip.
+	 * @param limit Maximum number of entries to return, or -1 for all remaining entries.
+	 */
+	public static <T> ArrayList<T> page(List<T> list, int offset, int limit) {
+		int from = Math.min(Math.max(0, offset), list.size());
+		int to = limit < 0 ? list.size() : (int) Math.min((long) from + limit, list.size());
+
+		return new ArrayList<T>(list.subList(from, to));
+	}
+
+	private static void appendHomeName(StringBuilder builder, String home) {
+		if (home.length() == 0) {
+			builder.append("[Default]");
+		} else {
+			builder.append(home);
 		}
-		return "";
+	}
+
+	private static void appendExpiry(StringBuilder builder, InviteEntry invite, long now) {
+		if (invite.getInviteExpires() != null) {
+			builder.append('(');
+			appendDuration(builder, invite.getInviteExpires().getTime() - now);
+			builder.append(')');
+		}
+	}
+
+	private static void appendTwoDigits(StringBuilder builder, long value) {
+		if (value < 10) builder.append('0');
+		builder.append(value);
 	}
 
 	public static int decodeTime(String time) {
@@ -0,0 +1,330 @@
+package me.thefatdemon.multihome.data;
+
+import me.thefatdemon.multihome.IoWatchdog;
+import me.thefatdemon.multihome.Messaging;
+import me.thefatdemon.multihome.MultiHome;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Properties;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded pool of JDBC connections shared by all MySQL data managers.
+ * Connections handed out are proxies; calling close() returns them to the pool.
+ */
+public class ConnectionPool {
+	private static final int VALIDATION_TIMEOUT = 2; // Seconds to wait for Connection.isValid().
+
+	private final MultiHome plugin;
+	private final String url; // Database URL to connect to.
+	private final Properties properties; // Credentials and driver options.
+	private final int maxSize; // Maximum number of open connections.
+	private final long connectionTimeout; // Milliseconds to wait for a free connection.
+	private final long validationInterval; // Milliseconds a connection may sit idle before it is re-validated.
+
+	private final LinkedBlockingDeque<IdleConnection> idleConnections = new LinkedBlockingDeque<IdleConnection>();
+	private final Semaphore permits;
+	private volatile boolean closed = false;
+
+	private final AtomicInteger activeCount = new AtomicInteger();
+	private final AtomicLong borrowCount = new AtomicLong();
+	private final AtomicLong waitTime = new AtomicLong();
+	private final AtomicLong connectFailures = new AtomicLong();
+	private final AtomicLong timeouts = new AtomicLong();
+
+	/**
+	 * @param plugin The plug-in.
+	 * @param url JDBC URL of the database.
+	 * @param user User to connect as.
+	 * @param password Password for the user.
+	 * @param maxSize Maximum number of open connections.
+	 * @param connectionTimeout Milliseconds to wait for a free connection before failing.
+	 * @param validationInterval Milliseconds a connection may sit idle before it is validated on borrow.
+	 * @param statementCacheSize Number of prepared statements the driver caches per connection. 0 disables caching.
+	 */
+	public ConnectionPool(MultiHome plugin, String url, String user, String password, int maxSize, long connectionTimeout, long validationInterval, int statementCacheSize) {
+		this.plugin = plugin;
+		this.url = url;
+		this.maxSize = Math.max(1, maxSize);
+		this.connectionTimeout = Math.max(0, connectionTimeout);
+		this.validationInterval = Math.max(0, validationInterval);
+		this.permits = new Semaphore(this.maxSize, true);
+
+		this.properties = new Properties();
+		this.properties.setProperty("user", user);
+		this.properties.setProperty("password", password);
+		this.properties.setProperty("rewriteBatchedStatements", "true"); // Send batched inserts as multi-row statements.
+		if (statementCacheSize > 0) {
+			// MySQL Connector/J keeps prepared statements per connection when these are set.
+			this.properties.setProperty("cachePrepStmts", "true");
+			this.properties.setProperty("useServerPrepStmts", "true");
+			this.properties.setProperty("prepStmtCacheSize", Integer.toString(statementCacheSize));
+			this.properties.setProperty("prepStmtCacheSqlLimit", "2048");
+		}
+
+		// Test connection, keeping it for the first borrower.
+		try {
+			this.idleConnections.offerFirst(new IdleConnection(openConnection()));
+		} catch (SQLException e) {
+			Messaging.logSevere("Failed to contact MySQL server: " + e.getMessage(), this.plugin);
+		}
+	}
+
+	/**
+	 * Borrows a connection from the pool, opening a new one if none are idle.
+	 * Close the returned connection to give it back.
+	 * @return Connection Pooled connection.
+	 * @throws SQLException If the pool is closed, exhausted or the database cannot be reached.
+	 */
+	public Connection getConnection() throws SQLException {
+		if (this.closed) {
+			throw new SQLException("Connection pool has been closed.");
+		}
+
+		long ioStart = IoWatchdog.start(); // The whole borrow counts as I/O: waiting, connecting and every statement run on it.
+		long start = System.nanoTime();
+		try {
+			if (!this.permits.tryAcquire(this.connectionTimeout, TimeUnit.MILLISECONDS)) {
+				this.timeouts.incrementAndGet();
+				IoWatchdog.end("database connection wait", ioStart);
+				throw new SQLException("Timed out waiting for a database connection.");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SQLException("Interrupted while waiting for a database connection.");
+		} finally {
+			this.waitTime.addAndGet(System.nanoTime() - start);
+		}
+
+		try {
+			Connection connection = null;
+			IdleConnection idle;
+
+			while (connection == null && (idle = this.idleConnections.pollFirst()) != null) {
+				if (isUsable(idle)) {
+					connection = idle.connection;
+				} else {
+					closeQuietly(idle.connection);
+				}
+			}
+
+			if (connection == null) {
+				connection = openConnection();
+			}
+
+			this.activeCount.incrementAndGet();
+			this.borrowCount.incrementAndGet();
+
+			return (Connection) Proxy.newProxyInstance(ConnectionPool.class.getClassLoader(), new Class<?>[] { Connection.class }, new Lease(connection, ioStart));
+		} catch (SQLException e) {
+			this.permits.release();
+			throw e;
+		} catch (RuntimeException e) {
+			this.permits.release();
+			throw e;
+		}
+	}
+
+	/**
+	 * Closes all idle connections. Connections still borrowed are closed when they are returned.
+	 */
+	public void close() {
+		this.closed = true;
+
+		IdleConnection idle;
+		while ((idle = this.idleConnections.pollFirst()) != null) {
+			closeQuietly(idle.connection);
+		}
+	}
+
+	/**
+	 * @return int Number of connections currently borrowed.
+	 */
+	public int getActiveConnections() {
+		return this.activeCount.get();
+	}
+
+	/**
+	 * @return int Number of open connections waiting in the pool.
+	 */
+	public int getIdleConnections() {
+		return this.idleConnections.size();
+	}
+
+	/**
+	 * @return int Maximum number of open connections.
+	 */
+	public int getMaxConnections() {
+		return this.maxSize;
+	}
+
+	/**
+	 * @return long Number of connections handed out since the pool was created.
+	 */
+	public long getBorrowCount() {
+		return this.borrowCount.get();
+	}
+
+	/**
+	 * @return long Total time, in milliseconds, callers have spent waiting for a connection.
+	 */
+	public long getTotalWaitTime() {
+		return TimeUnit.NANOSECONDS.toMillis(this.waitTime.get());
+	}
+
+	/**
+	 * @return double Average time, in milliseconds, callers have waited for a connection.
+	 */
+	public double getAverageWaitTime() {
+		long borrows = this.borrowCount.get() + this.timeouts.get();
+
+		if (borrows == 0) return 0;
+
+		return (this.waitTime.get() / 1000000.0) / borrows;
+	}
+
+	/**
+	 * @return long Number of failed attempts to open a new connection.
+	 */
+	public long getConnectFailures() {
+		return this.connectFailures.get();
+	}
+
+	/**
+	 * @return long Number of borrowers that gave up waiting for a free connection.
+	 */
+	public long getTimeouts() {
+		return this.timeouts.get();
+	}
+
+	/**
+	 * @return String One-line summary of the pool metrics.
+	 */
+	public String getStatistics() {
+		return "active=" + getActiveConnections() + ", idle=" + getIdleConnections() + ", max=" + getMaxConnections()
+				+ ", borrowed=" + getBorrowCount() + ", avgWait=" + String.format("%.3f", getAverageWaitTime()) + "ms"
+				+ ", timeouts=" + getTimeouts() + ", connectFailures=" + getConnectFailures();
+	}
+
+	private Connection openConnection() throws SQLException {
+		try {
+			return DriverManager.getConnection(this.url, this.properties);
+		} catch (SQLException e) {
+			this.connectFailures.incrementAndGet();
+			throw e;
+		}
+	}
+
+	/**
+	 * Connections that sat idle longer than the validation interval are checked with a round trip.
+	 */
+	private boolean isUsable(IdleConnection idle) {
+		try {
+			if (idle.connection.isClosed()) return false;
+
+			if (System.currentTimeMillis() - idle.lastUsed >= this.validationInterval) {
+				return idle.connection.isValid(VALIDATION_TIMEOUT);
+			}
+
+			return true;
+		} catch (SQLException e) {
+			return false;
+		}
+	}
+
+	private void release(Connection connection) {
+		this.activeCount.decrementAndGet();
+
+		try {
+			if (this.closed || connection.isClosed()) {
+				closeQuietly(connection);
+			} else {
+				if (!connection.getAutoCommit()) {
+					connection.rollback();
+					connection.setAutoCommit(true);
+				}
+				connection.clearWarnings();
+
+				// Most recently used first, so busy periods reuse the same warm connections.
+				this.idleConnections.offerFirst(new IdleConnection(connection));
+			}
+		} catch (SQLException e) {
+			closeQuietly(connection);
+		} finally {
+			this.permits.release();
+		}
+	}
+
+	private static void closeQuietly(Connection connection) {
+		try {
+			connection.close();
+		} catch (SQLException ignored) {} // Eat errors
+	}
+
+	private static class IdleConnection {
+		private final Connection connection;
+		private final long lastUsed;
+
+		private IdleConnection(Connection connection) {
+			this.connection = connection;
+			this.lastUsed = System.currentTimeMillis();
+		}
+	}
+
+	/**
+	 * Single borrow of a connection. Once closed, the lease refuses further use so a stale
+	 * reference cannot touch a connection that has since been handed to someone else.
+	 */
+	private class Lease implements InvocationHandler {
+		private final Connection connection;
+		private final long ioStart;
+		private boolean returned = false;
+
+		private Lease(Connection connection, long ioStart) {
+			this.connection = connection;
+			this.ioStart = ioStart;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			String name = method.getName();
+
+			if (name.equals("close")) {
+				if (!this.returned) {
+					this.returned = true;
+					release(this.connection);
+					IoWatchdog.end("database connection", this.ioStart);
+				}
+				return null;
+			} else if (name.equals("isClosed")) {
+				return this.returned || this.connection.isClosed();
+			} else if (name.equals("equals")) {
+				return proxy == args[0];
+			} else if (name.equals("hashCode")) {
+				return System.identityHashCode(proxy);
+			} else if (name.equals("toString")) {
+				return "Pooled" + this.connection.toString();
+			}
+
+			if (this.returned) {
+				throw new SQLException("Connection has already been returned to the pool.");
+			}
+
+			try {
+				return method.invoke(this.connection, args);
+			} catch (InvocationTargetException e) {
+				throw e.getCause();
+			}
+		}
+	}
+}
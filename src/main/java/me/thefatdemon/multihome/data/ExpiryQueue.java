@@ -0,0 +1,82 @@
+package me.thefatdemon.multihome.data;
+
+import java.util.ArrayList;
+import java.util.PriorityQueue;
+
+/**
+ * Min-heap of items ordered by expiry time, so expired items can be collected without
+ * scanning everything that is still live.
+ * Entries are never removed early. When an item is deleted or its expiry changes, the old
+ * entry stays queued and is returned once its time passes; callers must check polled items
+ * against their own data before acting on them. Not thread safe.
+ */
+public class ExpiryQueue<T> {
+	public static final long SWEEP_INTERVAL = 30 * 20; // Ticks between sweeps of expired entries.
+
+	private final PriorityQueue<Node<T>> queue = new PriorityQueue<Node<T>>();
+	private long sequence = 0; // Breaks ties between equal expiry times.
+
+	/**
+	 * Queues an item.
+	 * @param item Item to queue.
+	 * @param expiry Time, in milliseconds since the epoch, the item expires at.
+	 */
+	public void add(T item, long expiry) {
+		this.queue.add(new Node<T>(item, expiry, this.sequence++));
+	}
+
+	/**
+	 * Removes and returns every item queued with an expiry at or before the given time.
+	 * @param now Current time, in milliseconds since the epoch.
+	 * @return ArrayList<T> Expired items, earliest first. May include stale entries.
+	 */
+	public ArrayList<T> pollExpired(long now) {
+		ArrayList<T> expired = new ArrayList<T>();
+
+		while (!this.queue.isEmpty() && this.queue.peek().expiry <= now) {
+			expired.add(this.queue.poll().item);
+		}
+
+		return expired;
+	}
+
+	/**
+	 * @return long Earliest queued expiry time, or Long.MAX_VALUE if the queue is empty.
+	 */
+	public long nextExpiry() {
+		Node<T> head = this.queue.peek();
+
+		return head == null ? Long.MAX_VALUE : head.expiry;
+	}
+
+	/**
+	 * @return int Number of queued entries, including stale ones.
+	 */
+	public int size() {
+		return this.queue.size();
+	}
+
+	public void clear() {
+		this.queue.clear();
+	}
+
+	private static class Node<T> implements Comparable<Node<T>> {
+		private final T item;
+		private final long expiry;
+		private final long sequence;
+
+		private Node(T item, long expiry, long sequence) {
+			this.item = item;
+			this.expiry = expiry;
+			this.sequence = sequence;
+		}
+
+		@Override
+		public int compareTo(Node<T> other) {
+			if (this.expiry != other.expiry) {
+				return this.expiry < other.expiry ? -1 : 1;
+			}
+			return this.sequence < other.sequence ? -1 : (this.sequence == other.sequence ? 0 : 1);
+		}
+	}
+}
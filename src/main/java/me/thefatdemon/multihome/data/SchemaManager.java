@@ -0,0 +1,250 @@
+package me.thefatdemon.multihome.data;
+
+import me.thefatdemon.multihome.Messaging;
+import me.thefatdemon.multihome.MultiHome;
+
+import java.nio.ByteBuffer;
+import java.sql.*;
+import java.util.UUID;
+
+/**
+ * Creates the MySQL tables and migrates older layouts to the current one.
+ * Every table carries normalized key columns (binary UUIDs and lowercased names) behind
+ * unique indexes, so lookups are index seeks instead of LOWER() scans.
+ */
+public class SchemaManager {
+	public static final int SCHEMA_VERSION = 1;
+
+	private static final String HOMES_TABLE = "CREATE TABLE `%s` ("
+			+ "`owner_id` BINARY(16) NOT NULL, "
+			+ "`home_key` VARCHAR(64) NOT NULL, "
+			+ "`owner` VARCHAR(36) NOT NULL, "
+			+ "`home` VARCHAR(64) NOT NULL, "
+			+ "`world` VARCHAR(64) NOT NULL, "
+			+ "`x` DOUBLE NOT NULL, `y` DOUBLE NOT NULL, `z` DOUBLE NOT NULL, "
+			+ "`pitch` FLOAT NOT NULL, `yaw` FLOAT NOT NULL, "
+			+ "PRIMARY KEY (`owner_id`, `home_key`)"
+			+ ") DEFAULT CHARSET=utf8;";
+	private static final String HOMES_COPY = "INSERT IGNORE INTO `%s` (`owner_id`, `home_key`, `owner`, `home`, `world`, `x`, `y`, `z`, `pitch`, `yaw`) "
+			+ "SELECT UNHEX(REPLACE(`owner`, '-', '')), LOWER(`home`), LOWER(`owner`), `home`, `world`, `x`, `y`, `z`, `pitch`, `yaw` FROM `%s` WHERE " + isUuid("owner") + ";";
+
+	private static final String INVITES_TABLE = "CREATE TABLE `%s` ("
+			+ "`source_id` BINARY(16) NOT NULL, "
+			+ "`home_key` VARCHAR(64) NOT NULL, "
+			+ "`target_key` VARCHAR(36) NOT NULL, "
+			+ "`source` VARCHAR(36) NOT NULL, "
+			+ "`home` VARCHAR(64) NOT NULL, "
+			+ "`target` VARCHAR(36) NOT NULL, "
+			+ "`expires` DATETIME NULL, "
+			+ "`reason` VARCHAR(255) NULL, "
+			+ "PRIMARY KEY (`source_id`, `home_key`, `target_key`), "
+			+ "KEY `target_key` (`target_key`), "
+			+ "KEY `expires` (`expires`)"
+			+ ") DEFAULT CHARSET=utf8;";
+	private static final String INVITES_COPY = "INSERT IGNORE INTO `%s` (`source_id`, `home_key`, `target_key`, `source`, `home`, `target`, `expires`, `reason`) "
+			+ "SELECT UNHEX(REPLACE(`source`, '-', '')), LOWER(`home`), LOWER(`target`), LOWER(`source`), `home`, LOWER(`target`), `expires`, `reason` FROM `%s` WHERE " + isUuid("source") + ";";
+
+	private static final String WARMUPS_TABLE = "CREATE TABLE `%s` ("
+			+ "`player_key` VARCHAR(36) NOT NULL, "
+			+ "`player` VARCHAR(36) NOT NULL, "
+			+ "`expiry` DATETIME NOT NULL, "
+			+ "`world` VARCHAR(64) NOT NULL, "
+			+ "`x` DOUBLE NOT NULL, `y` DOUBLE NOT NULL, `z` DOUBLE NOT NULL, "
+			+ "`pitch` FLOAT NOT NULL, `yaw` FLOAT NOT NULL, "
+			+ "`cost` DOUBLE NOT NULL, "
+			+ "PRIMARY KEY (`player_key`)"
+			+ ") DEFAULT CHARSET=utf8;";
+	private static final String WARMUPS_COPY = "INSERT IGNORE INTO `%s` (`player_key`, `player`, `expiry`, `world`, `x`, `y`, `z`, `pitch`, `yaw`, `cost`) "
+			+ "SELECT LOWER(`player`), `player`, `expiry`, `world`, `x`, `y`, `z`, `pitch`, `yaw`, `cost` FROM `%s`;";
+
+	private static final String COOLDOWNS_TABLE = "CREATE TABLE `%s` ("
+			+ "`player_id` BINARY(16) NOT NULL, "
+			+ "`player` VARCHAR(36) NOT NULL, "
+			+ "`expiry` DATETIME NOT NULL, "
+			+ "PRIMARY KEY (`player_id`), "
+			+ "KEY `expiry` (`expiry`)"
+			+ ") DEFAULT CHARSET=utf8;";
+	private static final String COOLDOWNS_COPY = "INSERT IGNORE INTO `%s` (`player_id`, `player`, `expiry`) "
+			+ "SELECT UNHEX(REPLACE(`player`, '-', '')), LOWER(`player`), `expiry` FROM `%s` WHERE " + isUuid("player") + ";";
+
+	private final MultiHome plugin;
+	private final ConnectionPool pool;
+
+	public SchemaManager(MultiHome plugin, ConnectionPool pool) {
+		this.plugin = plugin;
+		this.pool = pool;
+	}
+
+	/**
+	 * Brings the database up to the current schema version.
+	 * @return boolean True if the schema is current.
+	 */
+	public boolean update() {
+		Connection connection = null;
+
+		try {
+			connection = this.pool.getConnection();
+
+			int version = getVersion(connection);
+			if (version >= SCHEMA_VERSION) return true;
+
+			if (version < 1) {
+				migrateTable(connection, "homes", "owner_id", HOMES_TABLE, HOMES_COPY, "owner");
+				migrateTable(connection, "invites", "source_id", INVITES_TABLE, INVITES_COPY, "source");
+				migrateTable(connection, "warmups", "player_key", WARMUPS_TABLE, WARMUPS_COPY, null);
+				migrateTable(connection, "cooldowns", "player_id", COOLDOWNS_TABLE, COOLDOWNS_COPY, "player");
+			}
+
+			setVersion(connection, SCHEMA_VERSION);
+			Messaging.logInfo("Database schema updated from version " + version + " to " + SCHEMA_VERSION + ".", this.plugin);
+			return true;
+		} catch (SQLException e) {
+			Messaging.logSevere("Failed to update database schema: " + e.getMessage(), this.plugin);
+			return false;
+		} finally {
+			if (connection != null) {
+				try {
+					connection.close();
+				} catch (SQLException ignored) {} // Eat errors
+			}
+		}
+	}
+
+	/**
+	 * Creates the table if it is missing. A table without the key column is from before schema
+	 * management; its rows are copied into a new table and the old one is kept as `name_v0`.
+	 * Rows differing only in case collapse into one, as the old LOWER() lookups treated them.
+	 * @param uuidColumn Old column the new binary key is built from, or null. Rows where it is
+	 *                   not a UUID cannot be keyed, so they are only kept in the old table.
+	 */
+	private void migrateTable(Connection connection, String table, String keyColumn, String createSql, String copySql, String uuidColumn) throws SQLException {
+		if (!tableExists(connection, table)) {
+			execute(connection, String.format(createSql, table));
+			return;
+		}
+
+		if (columnExists(connection, table, keyColumn)) return;
+
+		String newTable = table + "_new";
+		String oldTable = table + "_v0";
+
+		if (tableExists(connection, oldTable)) {
+			throw new SQLException("Cannot migrate `" + table + "`: backup table `" + oldTable + "` already exists.");
+		}
+
+		execute(connection, "DROP TABLE IF EXISTS `" + newTable + "`;");
+		execute(connection, String.format(createSql, newTable));
+		execute(connection, String.format(copySql, newTable, table));
+		execute(connection, "RENAME TABLE `" + table + "` TO `" + oldTable + "`, `" + newTable + "` TO `" + table + "`;");
+
+		Messaging.logInfo("Migrated table `" + table + "`. The previous contents were kept in `" + oldTable + "`.", this.plugin);
+
+		if (uuidColumn != null) {
+			int skipped = queryInt(connection, "SELECT COUNT(*) FROM `" + oldTable + "` WHERE NOT (" + isUuid(uuidColumn) + ");");
+			if (skipped > 0) {
+				Messaging.logWarning(skipped + " rows of `" + table + "` were not migrated because `" + uuidColumn
+						+ "` is not a UUID. They are still in `" + oldTable + "`.", this.plugin);
+			}
+		}
+	}
+
+	/**
+	 * SQL condition that is true when the column holds a UUID, with or without dashes.
+	 */
+	private static String isUuid(String column) {
+		String hex = "REPLACE(`" + column + "`, '-', '')";
+		return "CHAR_LENGTH(" + hex + ") = 32 AND " + hex + " REGEXP '^[0-9a-fA-F]+$'";
+	}
+
+	private int getVersion(Connection connection) throws SQLException {
+		execute(connection, "CREATE TABLE IF NOT EXISTS `multihome_schema` (`version` INT NOT NULL) DEFAULT CHARSET=utf8;");
+
+		return queryInt(connection, "SELECT MAX(`version`) FROM `multihome_schema`;");
+	}
+
+	/**
+	 * @return int The first column of the query's first row, or 0 if there are no rows.
+	 */
+	private static int queryInt(Connection connection, String sql) throws SQLException {
+		Statement statement = null;
+		ResultSet resultSet = null;
+
+		try {
+			statement = connection.createStatement();
+			resultSet = statement.executeQuery(sql);
+			if (resultSet.next()) {
+				return resultSet.getInt(1);
+			}
+		} finally {
+			if (resultSet != null) {
+				try {
+					resultSet.close();
+				} catch (SQLException ignored) {} // Eat errors
+			}
+
+			if (statement != null) {
+				try {
+					statement.close();
+				} catch (SQLException ignored) {} // Eat errors
+			}
+		}
+
+		return 0;
+	}
+
+	private void setVersion(Connection connection, int version) throws SQLException {
+		execute(connection, "DELETE FROM `multihome_schema`;");
+		execute(connection, "INSERT INTO `multihome_schema` (`version`) VALUES (" + version + ");");
+	}
+
+	private static boolean tableExists(Connection connection, String table) throws SQLException {
+		ResultSet resultSet = connection.getMetaData().getTables(connection.getCatalog(), null, table, null);
+
+		try {
+			return resultSet.next();
+		} finally {
+			try {
+				resultSet.close();
+			} catch (SQLException ignored) {} // Eat errors
+		}
+	}
+
+	private static boolean columnExists(Connection connection, String table, String column) throws SQLException {
+		ResultSet resultSet = connection.getMetaData().getColumns(connection.getCatalog(), null, table, column);
+
+		try {
+			return resultSet.next();
+		} finally {
+			try {
+				resultSet.close();
+			} catch (SQLException ignored) {} // Eat errors
+		}
+	}
+
+	private static void execute(Connection connection, String sql) throws SQLException {
+		Statement statement = connection.createStatement();
+
+		try {
+			statement.execute(sql);
+		} finally {
+			try {
+				statement.close();
+			} catch (SQLException ignored) {} // Eat errors
+		}
+	}
+
+	/**
+	 * Converts a UUID to the 16 bytes stored in BINARY(16) key columns.
+	 */
+	public static byte[] toBytes(UUID uuid) {
+		return ByteBuffer.allocate(16).putLong(uuid.getMostSignificantBits()).putLong(uuid.getLeastSignificantBits()).array();
+	}
+
+	/**
+	 * Converts a BINARY(16) key column back to a UUID.
+	 */
+	public static UUID fromBytes(byte[] bytes) {
+		ByteBuffer buffer = ByteBuffer.wrap(bytes);
+		return new UUID(buffer.getLong(), buffer.getLong());
+	}
+}
@@ -1,11 +1,12 @@
 package me.thefatdemon.multihome.data.cooldown;
 
+import me.thefatdemon.multihome.IoWatchdog;
 import me.thefatdemon.multihome.Messaging;
 import me.thefatdemon.multihome.MultiHome;
 import me.thefatdemon.multihome.Util;
+import me.thefatdemon.multihome.data.ExpiryQueue;
 
 import java.io.*;
-import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map.Entry;
@@ -14,6 +15,7 @@ import java.util.UUID;
 public class CoolDownManagerFile extends CoolDownManager {
     private final File cooldownsFile;
 	private HashMap<String, CoolDownEntry> cooldownEntries = new HashMap<String, CoolDownEntry>();
+	private final ExpiryQueue<CoolDownEntry> expiryQueue = new ExpiryQueue<CoolDownEntry>();
 
 	/**
 	 * @param plugin The plug-in.
@@ -23,69 +25,76 @@ public class CoolDownManagerFile extends CoolDownManager {
 		this.cooldownsFile = new File(plugin.getDataFolder(), "cooldowns.txt");
 		
 		loadCooldowns();
+
+		plugin.getServer().getScheduler().runTaskTimer(plugin, new Runnable() {
+			@Override
+			public void run() {
+				sweepExpired();
+			}
+		}, ExpiryQueue.SWEEP_INTERVAL, ExpiryQueue.SWEEP_INTERVAL);
 	}
 
 	public void clearCooldowns() {
 		this.cooldownEntries.clear();
+		this.expiryQueue.clear();
 
 		saveCooldowns();
 	}
 
 	public CoolDownEntry getCooldown(UUID player) {
-		if (this.cooldownEntries.containsKey(player.toString())) {
-			return this.cooldownEntries.get(player.toString());
+		CoolDownEntry cooldown = this.cooldownEntries.get(player.toString());
+
+		// Expired cooldowns are treated as absent until the next sweep removes them.
+		if (cooldown != null && cooldown.getExpiry().getTime() > System.currentTimeMillis()) {
+			return cooldown;
 		}
 		
 		return null;
 	}
 
 	public void addCooldown(CoolDownEntry cooldown) {
-		
-		if (this.cooldownEntries.containsKey(cooldown.getPlayer().toLowerCase())) {
-			this.cooldownEntries.remove(cooldown.getPlayer().toLowerCase());
-		}
-
-		// Set new warmup
+		// Set new cooldown
 		this.cooldownEntries.put(cooldown.getPlayer().toLowerCase(), cooldown);
+		this.expiryQueue.add(cooldown, cooldown.getExpiry().getTime());
 
-		updateCooldownExpiry();
 		saveCooldowns();
 	}
 
 	public void removeCooldown(UUID player) {
-		if (this.cooldownEntries.containsKey(player.toString())) {
-			this.cooldownEntries.remove(player.toString());
-
-			updateCooldownExpiry();
+		if (this.cooldownEntries.remove(player.toString()) != null) {
 			saveCooldowns();
 		}
 	}
 
 	/**
-	 * Scans through the cooldown list, removing expired cooldowns.
+	 * Removes expired cooldowns. Only cooldowns due to expire are looked at, and the file
+	 * is only rewritten if something was removed.
 	 */
-	private void updateCooldownExpiry() {
-		Date now = new Date();
+	private void sweepExpired() {
+		long now = System.currentTimeMillis();
+		boolean removed = false;
 
-		// Remove expired cooldowns.
-		ArrayList<String> removeList = new ArrayList<String>();
-		for (Entry<String, CoolDownEntry> entry : this.cooldownEntries.entrySet()) {
-			if (entry.getValue().getExpiry().getTime() <= now.getTime()) {
-				removeList.add(entry.getKey());
+		for (CoolDownEntry cooldown : this.expiryQueue.pollExpired(now)) {
+			String key = cooldown.getPlayer().toLowerCase();
+
+			// Skip queue entries for cooldowns that were since replaced or removed.
+			if (this.cooldownEntries.get(key) == cooldown && cooldown.getExpiry().getTime() <= now) {
+				this.cooldownEntries.remove(key);
+				removed = true;
 			}
 		}
-		
-		for (String entry : removeList) {
-			this.cooldownEntries.remove(entry);
+
+		if (removed) {
+			saveCooldowns();
 		}
-		
-		saveCooldowns();
 	}
 
 	/**
 	 * Saves cooldowns to data folder.
 	 */
 	private void saveCooldowns() {
+		long ioStart = IoWatchdog.start();
+
 		try {
 			FileWriter fstream = new FileWriter(this.cooldownsFile);
 			BufferedWriter writer = new BufferedWriter(fstream);
@@ -100,6 +109,8 @@ public class CoolDownManagerFile extends CoolDownManager {
 			writer.close();
 		} catch (Exception e) {
 			Messaging.logSevere("Could not write the cooldowns file.", this.plugin);
+		} finally {
+			IoWatchdog.end("cooldowns.txt write", ioStart);
 		}
 	}
 
@@ -117,6 +128,7 @@ public class CoolDownManagerFile extends CoolDownManager {
 				String line = reader.readLine().trim();
 	
 				this.cooldownEntries.clear();
+				this.expiryQueue.clear();
 	
 				while (line != null) {
 					if (!line.startsWith("#") && line.length() > 0) {
@@ -128,7 +140,9 @@ public class CoolDownManagerFile extends CoolDownManager {
 								
 								if (expiry.getTime() > now.getTime()) {
 									if (!this.cooldownEntries.containsKey(values[0].toLowerCase())) {
-										this.cooldownEntries.put(values[0], new CoolDownEntry(values[0], expiry));
+										CoolDownEntry cooldown = new CoolDownEntry(values[0].toLowerCase(), expiry);
+										this.cooldownEntries.put(values[0].toLowerCase(), cooldown);
+										this.expiryQueue.add(cooldown, expiry.getTime());
 									}
 								}
 							}
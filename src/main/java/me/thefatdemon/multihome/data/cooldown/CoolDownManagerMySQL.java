@@ -2,37 +2,20 @@ package me.thefatdemon.multihome.data.cooldown;
 
 import me.thefatdemon.multihome.Messaging;
 import me.thefatdemon.multihome.MultiHome;
-import me.thefatdemon.multihome.Settings;
+import me.thefatdemon.multihome.data.ConnectionPool;
+import me.thefatdemon.multihome.data.SchemaManager;
 
 import java.sql.*;
 import java.util.Date;
 import java.util.UUID;
 
 public class CoolDownManagerMySQL extends CoolDownManager {
-	private final String url; // Database URL to connect to.
-	private final String user; // MySQL user to connect as.
-	private final String password; // Password for MySQL user.
+	private final ConnectionPool pool; // Shared database connections.
 
-	public CoolDownManagerMySQL(MultiHome plugin) {
+	public CoolDownManagerMySQL(MultiHome plugin, ConnectionPool pool) {
 		super(plugin);
 
-		// Save settings
-		this.url = Settings.getDataStoreSettingString("sql", "url");
-		this.user = Settings.getDataStoreSettingString("sql", "user");
-		this.password = Settings.getDataStoreSettingString("sql", "pass");
-
-		// Test connection
-		try {
-			Connection connection = DriverManager.getConnection(this.url, this.user, this.password);
-			if (!connection.isValid(100)) {
-				throw new SQLException();
-			} else {
-				connection.close();
-			}
-		} catch (SQLException e) {
-			Messaging.logSevere("Failed to contact MySQL server!", this.plugin);
-			return;
-		}
+		this.pool = pool;
 	}
 
 	@Override
@@ -41,10 +24,7 @@ public class CoolDownManagerMySQL extends CoolDownManager {
 		PreparedStatement statement = null;
 
 		try {
-			connection = DriverManager.getConnection(this.url, this.user, this.password);
-			if (!connection.isValid(100)) {
-				throw new SQLException();
-			}
+			connection = this.pool.getConnection();
 
 			// Clear warmups in database
 			statement = connection.prepareStatement("DELETE FROM `cooldowns`;");
@@ -73,17 +53,14 @@ public class CoolDownManagerMySQL extends CoolDownManager {
 		ResultSet resultSet = null;
 
 		try {
-			connection = DriverManager.getConnection(this.url, this.user, this.password);
-			if (!connection.isValid(100)) {
-				throw new SQLException();
-			}
+			connection = this.pool.getConnection();
 
 			updateCooldownExpiry(connection);
 
-			statement = connection.prepareStatement("SELECT * FROM `cooldowns` WHERE LOWER(`player`) = LOWER(?);");
-			statement.setString(1, player.toString());
+			statement = connection.prepareStatement("SELECT * FROM `cooldowns` WHERE `player_id` = ?;");
+			statement.setBytes(1, SchemaManager.toBytes(player));
 			resultSet = statement.executeQuery();
-			if (resultSet.first()) {
+			if (resultSet.next()) {
 				try {
 					return new CoolDownEntry(resultSet.getString("player"), resultSet.getTimestamp("expiry"));
 				} catch (Exception ignored) {}
@@ -122,22 +99,20 @@ public class CoolDownManagerMySQL extends CoolDownManager {
 		PreparedStatement statement = null;
 
 		try {
-			connection = DriverManager.getConnection(this.url, this.user, this.password);
-			if (!connection.isValid(100)) {
-				throw new SQLException();
-			}
+			connection = this.pool.getConnection();
 
 			// Remove cooldown from database
-			statement = connection.prepareStatement("DELETE FROM `cooldowns` WHERE LOWER(`player`) = LOWER(?);");
-			statement.setString(1, cooldown.getPlayer());
+			statement = connection.prepareStatement("DELETE FROM `cooldowns` WHERE `player_id` = ?;");
+			statement.setBytes(1, SchemaManager.toBytes(UUID.fromString(cooldown.getPlayer())));
 			statement.execute();
 			statement.close();
 			statement = null;
 
 			// Insert cooldown into database
-			statement = connection.prepareStatement("INSERT INTO `cooldowns` (`player`, `expiry`) VALUES (?, ?);");
+			statement = connection.prepareStatement("INSERT INTO `cooldowns` (`player`, `expiry`, `player_id`) VALUES (?, ?, ?);");
 			statement.setString(1, cooldown.getPlayer());
 			statement.setTimestamp(2, new Timestamp(cooldown.getExpiry().getTime()));
+			statement.setBytes(3, SchemaManager.toBytes(UUID.fromString(cooldown.getPlayer())));
 			statement.execute();
 			statement.close();
 			statement = null;
@@ -166,16 +141,13 @@ public class CoolDownManagerMySQL extends CoolDownManager {
 		PreparedStatement statement = null;
 
 		try {
-			connection = DriverManager.getConnection(this.url, this.user, this.password);
-			if (!connection.isValid(100)) {
-				throw new SQLException();
-			}
+			connection = this.pool.getConnection();
 
 			updateCooldownExpiry(connection);
 			
 			// Remove cooldown from database
-			statement = connection.prepareStatement("DELETE FROM `cooldowns` WHERE LOWER(`player`) = LOWER(?);");
-			statement.setString(1, player.toString());
+			statement = connection.prepareStatement("DELETE FROM `cooldowns` WHERE `player_id` = ?;");
+			statement.setBytes(1, SchemaManager.toBytes(player));
 			statement.execute();
 			statement.close();
 			statement = null;
@@ -0,0 +1,77 @@
+package me.thefatdemon.multihome.data.cooldown;
+
+import me.thefatdemon.multihome.LatencyHistogram;
+import me.thefatdemon.multihome.MultiHome;
+import me.thefatdemon.multihome.Timings;
+
+import java.util.UUID;
+
+/**
+ * Records the latency of every call to another CoolDownManager in Timings, under "cooldown.<backend>.<call>".
+ * Only installed while timings are enabled.
+ */
+public class TimedCoolDownManager extends CoolDownManager {
+	private final CoolDownManager cooldowns;
+
+	private final LatencyHistogram clearCooldowns;
+	private final LatencyHistogram getCooldown;
+	private final LatencyHistogram addCooldown;
+	private final LatencyHistogram removeCooldown;
+
+	/**
+	 * @param plugin The plug-in.
+	 * @param cooldowns Cooldown database to time.
+	 * @param backend Name of the storage method, used in the histogram names.
+	 */
+	public TimedCoolDownManager(MultiHome plugin, CoolDownManager cooldowns, String backend) {
+		super(plugin);
+
+		this.cooldowns = cooldowns;
+
+		String prefix = "cooldown." + backend + ".";
+		this.clearCooldowns = Timings.get(prefix + "clearCooldowns");
+		this.getCooldown = Timings.get(prefix + "getCooldown");
+		this.addCooldown = Timings.get(prefix + "addCooldown");
+		this.removeCooldown = Timings.get(prefix + "removeCooldown");
+	}
+
+	@Override
+	public void clearCooldowns() {
+		long start = System.nanoTime();
+		try {
+			this.cooldowns.clearCooldowns();
+		} finally {
+			this.clearCooldowns.record(System.nanoTime() - start);
+		}
+	}
+
+	@Override
+	public CoolDownEntry getCooldown(UUID player) {
+		long start = System.nanoTime();
+		try {
+			return this.cooldowns.getCooldown(player);
+		} finally {
+			this.getCooldown.record(System.nanoTime() - start);
+		}
+	}
+
+	@Override
+	public void addCooldown(CoolDownEntry cooldown) {
+		long start = System.nanoTime();
+		try {
+			this.cooldowns.addCooldown(cooldown);
+		} finally {
+			this.addCooldown.record(System.nanoTime() - start);
+		}
+	}
+
+	@Override
+	public void removeCooldown(UUID player) {
+		long start = System.nanoTime();
+		try {
+			this.cooldowns.removeCooldown(player);
+		} finally {
+			this.removeCooldown.record(System.nanoTime() - start);
+		}
+	}
+}
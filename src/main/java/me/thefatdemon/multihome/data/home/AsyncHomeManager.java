@@ -0,0 +1,170 @@
+package me.thefatdemon.multihome.data.home;
+
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import me.thefatdemon.multihome.Messaging;
+import me.thefatdemon.multihome.MultiHome;
+import org.bukkit.Location;
+
+import java.util.ArrayList;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Asynchronous view of a HomeManager. Database calls run on a dedicated thread pool and
+ * their results are returned as futures, so slow storage never stalls the server tick.
+ */
+public class AsyncHomeManager {
+	private final MultiHome plugin;
+	private final HomeManager homes;
+	private final ListeningExecutorService executor;
+	private final Executor mainThread;
+
+	/**
+	 * @param plugin The plug-in.
+	 * @param homes Home database to run calls against.
+	 * @param threads Number of I/O threads.
+	 */
+	public AsyncHomeManager(final MultiHome plugin, HomeManager homes, int threads) {
+		this.plugin = plugin;
+		this.homes = homes;
+		this.executor = MoreExecutors.listeningDecorator(Executors.newFixedThreadPool(Math.max(1, threads),
+				new ThreadFactoryBuilder().setNameFormat("MultiHome I/O #%d").setDaemon(true).build()));
+		this.mainThread = new Executor() {
+			@Override
+			public void execute(Runnable task) {
+				if (plugin.getServer().isPrimaryThread()) {
+					task.run();
+				} else if (plugin.isEnabled()) {
+					plugin.getServer().getScheduler().runTask(plugin, task);
+				}
+			}
+		};
+	}
+
+	/**
+	 * @return HomeManager The underlying home database.
+	 */
+	public HomeManager getHomeManager() {
+		return this.homes;
+	}
+
+	/**
+	 * Looks up a home. The future yields null if the home is not found.
+	 * @param uuid UUID of player
+	 * @param name Name of the owner's home location.
+	 */
+	public ListenableFuture<HomeEntry> getHome(final UUID uuid, final String name) {
+		return this.executor.submit(new Callable<HomeEntry>() {
+			@Override
+			public HomeEntry call() {
+				return homes.getHome(uuid, name);
+			}
+		});
+	}
+
+	/**
+	 * Adds the home location for the specified player. If home location already exists, updates the location.
+	 * @param uuid UUID of the owner of the home.
+	 * @param name Name of the owner's home.
+	 * @param location Location the home.
+	 */
+	public ListenableFuture<Void> addHome(final UUID uuid, final String name, Location location) {
+		final Location home = location.clone();
+
+		return this.executor.submit(new Callable<Void>() {
+			@Override
+			public Void call() {
+				homes.addHome(uuid, name, home);
+				return null;
+			}
+		});
+	}
+
+	/**
+	 * Remove an existing home.
+	 * @param uuid Owner of the home.
+	 * @param name Name of the owner's home location.
+	 */
+	public ListenableFuture<Void> removeHome(final UUID uuid, final String name) {
+		return this.executor.submit(new Callable<Void>() {
+			@Override
+			public Void call() {
+				homes.removeHome(uuid, name);
+				return null;
+			}
+		});
+	}
+
+	/**
+	 * Check the home database for a player.
+	 * @param uuid Player to check database for.
+	 */
+	public ListenableFuture<Boolean> getUserExists(final UUID uuid) {
+		return this.executor.submit(new Callable<Boolean>() {
+			@Override
+			public Boolean call() {
+				return homes.getUserExists(uuid);
+			}
+		});
+	}
+
+	/**
+	 * Get the number of homes a player has set.
+	 * @param uuid Player to check home list for.
+	 */
+	public ListenableFuture<Integer> getUserHomeCount(final UUID uuid) {
+		return this.executor.submit(new Callable<Integer>() {
+			@Override
+			public Integer call() {
+				return homes.getUserHomeCount(uuid);
+			}
+		});
+	}
+
+	/**
+	 * Retrieve a list of player home locations from the database. If player not found, yields a blank list.
+	 * @param uuid Player to retrieve home list for.
+	 */
+	public ListenableFuture<ArrayList<HomeEntry>> listUserHomes(final UUID uuid) {
+		return this.executor.submit(new Callable<ArrayList<HomeEntry>>() {
+			@Override
+			public ArrayList<HomeEntry> call() {
+				return homes.listUserHomes(uuid);
+			}
+		});
+	}
+
+	/**
+	 * Runs the callback on the server's main thread once the future completes. Callbacks are
+	 * dropped if the plug-in is disabled before the result arrives.
+	 * @param future Result of one of this manager's calls.
+	 * @param callback Code to run with the result.
+	 */
+	public <V> void onMainThread(ListenableFuture<V> future, FutureCallback<? super V> callback) {
+		Futures.addCallback(future, callback, this.mainThread);
+	}
+
+	/**
+	 * Stops accepting new calls and waits briefly for pending ones to finish.
+	 */
+	public void shutdown() {
+		this.executor.shutdown();
+
+		try {
+			if (!this.executor.awaitTermination(10, TimeUnit.SECONDS)) {
+				Messaging.logWarning("Timed out waiting for pending home database calls.", this.plugin);
+				this.executor.shutdownNow();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
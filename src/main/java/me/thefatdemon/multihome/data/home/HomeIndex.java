@@ -0,0 +1,169 @@
+package me.thefatdemon.multihome.data.home;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * Compact in-memory store of home locations. Coordinates live in primitive arrays indexed
+ * by the slot from HomeKeyIndex, so a home costs a few dozen bytes instead of a HomeEntry,
+ * its owner string and its boxed fields. HomeEntry objects are only built when returned.
+ * Not thread safe.
+ */
+public class HomeIndex extends HomeKeyIndex {
+	private String[] worlds;
+	private double[] x;
+	private double[] y;
+	private double[] z;
+	private float[] pitch;
+	private float[] yaw;
+
+	public HomeIndex() {
+		super();
+		allocate(capacity());
+	}
+
+	/**
+	 * @param capacity Number of homes to allocate room for up front.
+	 */
+	public HomeIndex(int capacity) {
+		super(capacity);
+		allocate(capacity());
+	}
+
+	/**
+	 * Adds or replaces a home.
+	 * @return int Slot of the home.
+	 */
+	public int put(UUID owner, String name, String world, double x, double y, double z, float pitch, float yaw) {
+		int slot = insert(owner.getMostSignificantBits(), owner.getLeastSignificantBits(), name);
+
+		this.worlds[slot] = world.intern();
+		this.x[slot] = x;
+		this.y[slot] = y;
+		this.z[slot] = z;
+		this.pitch[slot] = pitch;
+		this.yaw[slot] = yaw;
+
+		return slot;
+	}
+
+	/**
+	 * @return int Slot of the home, or -1 if not found.
+	 */
+	public int find(UUID owner, String name) {
+		return find(owner.getMostSignificantBits(), owner.getLeastSignificantBits(), name);
+	}
+
+	/**
+	 * @return boolean True if the home existed.
+	 */
+	public boolean remove(UUID owner, String name) {
+		int slot = remove(owner.getMostSignificantBits(), owner.getLeastSignificantBits(), name);
+		if (slot < 0) return false;
+
+		this.worlds[slot] = null;
+		return true;
+	}
+
+	/**
+	 * @return int Number of homes the owner has.
+	 */
+	public int count(UUID owner) {
+		return count(owner.getMostSignificantBits(), owner.getLeastSignificantBits());
+	}
+
+	/**
+	 * @return boolean True if the owner has at least one home.
+	 */
+	public boolean hasOwner(UUID owner) {
+		return firstSlot(owner.getMostSignificantBits(), owner.getLeastSignificantBits()) >= 0;
+	}
+
+	public String getWorld(int slot) {
+		return this.worlds[slot];
+	}
+
+	public double getX(int slot) {
+		return this.x[slot];
+	}
+
+	public double getY(int slot) {
+		return this.y[slot];
+	}
+
+	public double getZ(int slot) {
+		return this.z[slot];
+	}
+
+	public float getPitch(int slot) {
+		return this.pitch[slot];
+	}
+
+	public float getYaw(int slot) {
+		return this.yaw[slot];
+	}
+
+	/**
+	 * Builds a HomeEntry for the home in the slot.
+	 */
+	public HomeEntry toEntry(int slot) {
+		return new HomeEntry(new UUID(getMostSignificantBits(slot), getLeastSignificantBits(slot)), getName(slot),
+				this.worlds[slot], this.x[slot], this.y[slot], this.z[slot], this.pitch[slot], this.yaw[slot]);
+	}
+
+	/**
+	 * @return ArrayList<HomeEntry> The owner's homes, in the order they were added.
+	 */
+	public ArrayList<HomeEntry> list(UUID owner) {
+		ArrayList<HomeEntry> output = new ArrayList<HomeEntry>();
+
+		for (int slot = firstSlot(owner.getMostSignificantBits(), owner.getLeastSignificantBits()); slot >= 0; slot = nextSlot(slot)) {
+			output.add(toEntry(slot));
+		}
+
+		return output;
+	}
+
+	/**
+	 * @return ArrayList<HomeEntry> Every home in the index.
+	 */
+	public ArrayList<HomeEntry> listAll() {
+		ArrayList<HomeEntry> output = new ArrayList<HomeEntry>(size());
+
+		for (int slot = 0; slot < slotLimit(); slot++) {
+			if (isUsed(slot)) {
+				output.add(toEntry(slot));
+			}
+		}
+
+		return output;
+	}
+
+	@Override
+	public void clear() {
+		super.clear();
+		Arrays.fill(this.worlds, null);
+	}
+
+	@Override
+	protected void resize(int capacity) {
+		super.resize(capacity);
+
+		this.worlds = Arrays.copyOf(this.worlds, capacity);
+		this.x = Arrays.copyOf(this.x, capacity);
+		this.y = Arrays.copyOf(this.y, capacity);
+		this.z = Arrays.copyOf(this.z, capacity);
+		this.pitch = Arrays.copyOf(this.pitch, capacity);
+		this.yaw = Arrays.copyOf(this.yaw, capacity);
+	}
+
+	private void allocate(int capacity) {
+		this.worlds = new String[capacity];
+		this.x = new double[capacity];
+		this.y = new double[capacity];
+		this.z = new double[capacity];
+		this.pitch = new float[capacity];
+		this.yaw = new float[capacity];
+	}
+}
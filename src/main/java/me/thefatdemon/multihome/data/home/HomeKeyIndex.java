@@ -0,0 +1,369 @@
+package me.thefatdemon.multihome.data.home;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing index from (owner UUID, home name) to a numbered slot.
+ * Owners are kept as their two UUID longs and names are lowercased and interned once,
+ * so lookups compare primitives and never allocate. Each owner's slots are chained in
+ * insertion order for listing. Subclasses store the home data in arrays indexed by slot.
+ * Not thread safe.
+ */
+public class HomeKeyIndex {
+	private static final int NONE = -1;
+
+	private long[] mostBits;
+	private long[] leastBits;
+	private String[] names;
+	private int[] keyHashes;
+	private int[] nextSlot; // Next home of the same owner, or next free slot.
+
+	private int[] keyTable; // slot + 1 per bucket, 0 when empty.
+	private int[] ownerTable; // First slot + 1 of each owner, 0 when empty.
+
+	private int highWater = 0; // Slots below this have been handed out at least once.
+	private int freeHead = NONE;
+	private int size = 0;
+	private int owners = 0;
+
+	public HomeKeyIndex() {
+		this(16);
+	}
+
+	/**
+	 * @param capacity Number of homes to allocate room for up front.
+	 */
+	public HomeKeyIndex(int capacity) {
+		allocate(Math.max(16, capacity));
+	}
+
+	/**
+	 * Lowercases a home name the same way the index compares names.
+	 */
+	public static String normalize(String name) {
+		char[] chars = name.toCharArray();
+		for (int index = 0; index < chars.length; index++) {
+			chars[index] = Character.toLowerCase(chars[index]);
+		}
+		return new String(chars).intern();
+	}
+
+	/**
+	 * @return int Number of homes in the index.
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * @return int Number of owners with at least one home.
+	 */
+	public int ownerCount() {
+		return this.owners;
+	}
+
+	/**
+	 * @return int Upper bound (exclusive) of slot numbers handed out so far.
+	 */
+	public int slotLimit() {
+		return this.highWater;
+	}
+
+	/**
+	 * @return int Number of slots the backing arrays have room for.
+	 */
+	public int capacity() {
+		return this.mostBits.length;
+	}
+
+	/**
+	 * Finds the slot of a home. Names are matched without regard to case.
+	 * @return int Slot of the home, or -1 if not found.
+	 */
+	public int find(long most, long least, String name) {
+		int hash = keyHash(most, least, name);
+		int mask = this.keyTable.length - 1;
+
+		for (int bucket = hash & mask; ; bucket = (bucket + 1) & mask) {
+			int slot = this.keyTable[bucket] - 1;
+			if (slot == NONE) return NONE;
+
+			if (this.keyHashes[slot] == hash && this.mostBits[slot] == most && this.leastBits[slot] == least && namesEqual(this.names[slot], name)) {
+				return slot;
+			}
+		}
+	}
+
+	/**
+	 * Returns the slot of a home, adding it at the end of the owner's list if it is not indexed.
+	 */
+	public int insert(long most, long least, String name) {
+		int slot = find(most, least, name);
+		if (slot != NONE) return slot;
+
+		if ((this.size + 1) * 2 > this.keyTable.length || this.highWater == this.mostBits.length && this.freeHead == NONE) {
+			grow();
+		}
+
+		if (this.freeHead != NONE) {
+			slot = this.freeHead;
+			this.freeHead = this.nextSlot[slot];
+		} else {
+			slot = this.highWater++;
+		}
+
+		this.mostBits[slot] = most;
+		this.leastBits[slot] = least;
+		this.names[slot] = normalize(name);
+		this.keyHashes[slot] = keyHash(most, least, name);
+		this.nextSlot[slot] = NONE;
+		this.size++;
+
+		placeKey(slot);
+
+		int ownerBucket = findOwnerBucket(most, least);
+		int head = this.ownerTable[ownerBucket] - 1;
+		if (head == NONE) {
+			this.ownerTable[ownerBucket] = slot + 1;
+			this.owners++;
+		} else {
+			int tail = head;
+			while (this.nextSlot[tail] != NONE) {
+				tail = this.nextSlot[tail];
+			}
+			this.nextSlot[tail] = slot;
+		}
+
+		return slot;
+	}
+
+	/**
+	 * Removes a home from the index. Its slot may be handed out again by a later insert.
+	 * @return int Slot the home occupied, or -1 if not found.
+	 */
+	public int remove(long most, long least, String name) {
+		int slot = find(most, least, name);
+		if (slot == NONE) return NONE;
+
+		removeKey(slot);
+
+		int ownerBucket = findOwnerBucket(most, least);
+		int head = this.ownerTable[ownerBucket] - 1;
+		if (head == slot) {
+			if (this.nextSlot[slot] == NONE) {
+				removeOwner(ownerBucket);
+				this.owners--;
+			} else {
+				// Same owner, so the bucket stays valid for the new head.
+				this.ownerTable[ownerBucket] = this.nextSlot[slot] + 1;
+			}
+		} else {
+			int previous = head;
+			while (this.nextSlot[previous] != slot) {
+				previous = this.nextSlot[previous];
+			}
+			this.nextSlot[previous] = this.nextSlot[slot];
+		}
+
+		this.names[slot] = null;
+		this.nextSlot[slot] = this.freeHead;
+		this.freeHead = slot;
+		this.size--;
+
+		return slot;
+	}
+
+	/**
+	 * @return int First slot of the owner's homes, in insertion order, or -1 if the owner has none.
+	 */
+	public int firstSlot(long most, long least) {
+		return this.ownerTable[findOwnerBucket(most, least)] - 1;
+	}
+
+	/**
+	 * @return int Next slot of the same owner after the given one, or -1 at the end.
+	 */
+	public int nextSlot(int slot) {
+		return this.nextSlot[slot];
+	}
+
+	/**
+	 * @return int Number of homes the owner has.
+	 */
+	public int count(long most, long least) {
+		int count = 0;
+		for (int slot = firstSlot(most, least); slot != NONE; slot = this.nextSlot[slot]) {
+			count++;
+		}
+		return count;
+	}
+
+	/**
+	 * @return boolean True if the slot currently holds a home.
+	 */
+	public boolean isUsed(int slot) {
+		return slot >= 0 && slot < this.highWater && this.names[slot] != null;
+	}
+
+	public long getMostSignificantBits(int slot) {
+		return this.mostBits[slot];
+	}
+
+	public long getLeastSignificantBits(int slot) {
+		return this.leastBits[slot];
+	}
+
+	/**
+	 * @return String Lowercased, interned name of the home in the slot.
+	 */
+	public String getName(int slot) {
+		return this.names[slot];
+	}
+
+	/**
+	 * Removes every home.
+	 */
+	public void clear() {
+		Arrays.fill(this.names, 0, this.highWater, null);
+		Arrays.fill(this.keyTable, 0);
+		Arrays.fill(this.ownerTable, 0);
+		this.highWater = 0;
+		this.freeHead = NONE;
+		this.size = 0;
+		this.owners = 0;
+	}
+
+	/**
+	 * Called when the slot arrays are reallocated. Subclasses resize their own arrays here.
+	 * @param capacity New number of slots.
+	 */
+	protected void resize(int capacity) {
+		this.mostBits = Arrays.copyOf(this.mostBits, capacity);
+		this.leastBits = Arrays.copyOf(this.leastBits, capacity);
+		this.names = Arrays.copyOf(this.names, capacity);
+		this.keyHashes = Arrays.copyOf(this.keyHashes, capacity);
+		this.nextSlot = Arrays.copyOf(this.nextSlot, capacity);
+	}
+
+	private void allocate(int capacity) {
+		this.mostBits = new long[capacity];
+		this.leastBits = new long[capacity];
+		this.names = new String[capacity];
+		this.keyHashes = new int[capacity];
+		this.nextSlot = new int[capacity];
+		this.keyTable = new int[tableSize(capacity)];
+		this.ownerTable = new int[tableSize(capacity)];
+	}
+
+	private void grow() {
+		int capacity = this.mostBits.length * 2;
+
+		resize(capacity);
+
+		// Rebuild both tables at the new size.
+		this.keyTable = new int[tableSize(capacity)];
+		int[] oldOwners = this.ownerTable;
+		this.ownerTable = new int[tableSize(capacity)];
+
+		for (int slot = 0; slot < this.highWater; slot++) {
+			if (this.names[slot] != null) {
+				placeKey(slot);
+			}
+		}
+
+		for (int entry : oldOwners) {
+			if (entry != 0) {
+				int head = entry - 1;
+				this.ownerTable[findOwnerBucket(this.mostBits[head], this.leastBits[head])] = entry;
+			}
+		}
+	}
+
+	private static int tableSize(int capacity) {
+		return Integer.highestOneBit(capacity * 2 - 1) << 1;
+	}
+
+	private void placeKey(int slot) {
+		int mask = this.keyTable.length - 1;
+		int bucket = this.keyHashes[slot] & mask;
+
+		while (this.keyTable[bucket] != 0) {
+			bucket = (bucket + 1) & mask;
+		}
+		this.keyTable[bucket] = slot + 1;
+	}
+
+	/**
+	 * Removes a slot from the key table, shifting later entries of the probe run back
+	 * so lookups never stop at the hole.
+	 */
+	private void removeKey(int slot) {
+		int mask = this.keyTable.length - 1;
+		int bucket = this.keyHashes[slot] & mask;
+
+		while (this.keyTable[bucket] != slot + 1) {
+			bucket = (bucket + 1) & mask;
+		}
+
+		int hole = bucket;
+		for (bucket = (hole + 1) & mask; this.keyTable[bucket] != 0; bucket = (bucket + 1) & mask) {
+			int home = this.keyHashes[this.keyTable[bucket] - 1] & mask;
+			if (((bucket - home) & mask) >= ((bucket - hole) & mask)) {
+				this.keyTable[hole] = this.keyTable[bucket];
+				hole = bucket;
+			}
+		}
+		this.keyTable[hole] = 0;
+	}
+
+	/**
+	 * @return int Bucket holding the owner, or the empty bucket where it would go.
+	 */
+	private int findOwnerBucket(long most, long least) {
+		int mask = this.ownerTable.length - 1;
+
+		for (int bucket = ownerHash(most, least) & mask; ; bucket = (bucket + 1) & mask) {
+			int head = this.ownerTable[bucket] - 1;
+			if (head == NONE || this.mostBits[head] == most && this.leastBits[head] == least) {
+				return bucket;
+			}
+		}
+	}
+
+	private void removeOwner(int hole) {
+		int mask = this.ownerTable.length - 1;
+
+		for (int bucket = (hole + 1) & mask; this.ownerTable[bucket] != 0; bucket = (bucket + 1) & mask) {
+			int head = this.ownerTable[bucket] - 1;
+			int home = ownerHash(this.mostBits[head], this.leastBits[head]) & mask;
+			if (((bucket - home) & mask) >= ((bucket - hole) & mask)) {
+				this.ownerTable[hole] = this.ownerTable[bucket];
+				hole = bucket;
+			}
+		}
+		this.ownerTable[hole] = 0;
+	}
+
+	private static int ownerHash(long most, long least) {
+		long hash = (most ^ (least * 0x9e3779b97f4a7c15L)) * 0xbf58476d1ce4e5b9L;
+		return (int) (hash ^ (hash >>> 32));
+	}
+
+	private static int keyHash(long most, long least, String name) {
+		int hash = ownerHash(most, least);
+		for (int index = 0; index < name.length(); index++) {
+			hash = hash * 31 + Character.toLowerCase(name.charAt(index));
+		}
+		return hash ^ (hash >>> 16);
+	}
+
+	private static boolean namesEqual(String stored, String name) {
+		if (stored == name) return true;
+		if (stored.length() != name.length()) return false;
+
+		for (int index = 0; index < name.length(); index++) {
+			if (stored.charAt(index) != Character.toLowerCase(name.charAt(index))) return false;
+		}
+		return true;
+	}
+}
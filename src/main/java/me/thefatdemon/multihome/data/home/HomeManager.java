@@ -1,9 +1,11 @@
 package me.thefatdemon.multihome.data.home;
 
 import me.thefatdemon.multihome.MultiHome;
+import me.thefatdemon.multihome.Util;
 import org.bukkit.Location;
 import org.bukkit.entity.Player;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.UUID;
 
@@ -21,6 +23,11 @@ public abstract class HomeManager {
 		this.plugin = plugin;
 	}
 
+	/**
+	 * Called when the plug-in is disabled. Writes out any changes that have not been saved yet.
+	 */
+	public void shutdown() {}
+
 	/**
 	 * Deletes all homes from the database.
 	 */
@@ -60,6 +67,18 @@ public abstract class HomeManager {
 	 */
 	abstract public void addHome(UUID uuid, String name, Location location);
 
+	/**
+	 * Adds or updates a home like addHome, failing instead of only logging when it cannot be
+	 * written. For callers that keep their own copy, such as the home cache.
+	 * @param uuid UUID of the owner of the home.
+	 * @param name Name of the owner's home.
+	 * @param location Location the home.
+	 * @throws IOException If the database could not be written.
+	 */
+	public void storeHome(UUID uuid, String name, Location location) throws IOException {
+		addHome(uuid, name, location);
+	}
+
 	/**
 	 * Remove an existing home.
 	 * @param player Owner of the home.
@@ -75,6 +94,16 @@ public abstract class HomeManager {
 	 * @param name Name of the owner's home location.
 	 */
 	abstract public void removeHome(UUID player, String name);
+
+	/**
+	 * Removes a home like removeHome, failing instead of only logging when it cannot be written.
+	 * @param player Owner of the home.
+	 * @param name Name of the owner's home location.
+	 * @throws IOException If the database could not be written.
+	 */
+	public void deleteHome(UUID player, String name) throws IOException {
+		removeHome(player, name);
+	}
 	
 	/**
 	 * Check the home database for a player.
@@ -123,6 +152,28 @@ public abstract class HomeManager {
 	 * @return ArrayList<HomeEntry> List of home locations.
 	 */
 	abstract public ArrayList<HomeEntry> listUserHomes(UUID player);
+
+	/**
+	 * Retrieve a list of player home locations, failing instead of returning a blank list when
+	 * they cannot be read. For callers that keep the result, such as the home cache.
+	 * @param player Player to retrieve home list for.
+	 * @return ArrayList<HomeEntry> List of home locations.
+	 * @throws IOException If the database could not be read.
+	 */
+	public ArrayList<HomeEntry> loadUserHomes(UUID player) throws IOException {
+		return listUserHomes(player);
+	}
+
+	/**
+	 * Retrieve one page of a player's home locations.
+	 * @param player Player to retrieve home list for.
+	 * @param offset Number of homes to skip.
+	 * @param limit Maximum number of homes to return, or -1 for all remaining homes.
+	 * @return ArrayList<HomeEntry> List of home locations.
+	 */
+	public ArrayList<HomeEntry> listUserHomes(UUID player, int offset, int limit) {
+		return Util.page(listUserHomes(player), offset, limit);
+	}
 	
 	/**
 	 * Imports the list of home locations passed. Does not overwrite existing home locations.
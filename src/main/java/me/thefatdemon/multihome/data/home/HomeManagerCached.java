@@ -0,0 +1,378 @@
+package me.thefatdemon.multihome.data.home;
+
+import com.google.common.util.concurrent.Striped;
+import me.thefatdemon.multihome.Messaging;
+import me.thefatdemon.multihome.MultiHome;
+import me.thefatdemon.multihome.Util;
+import org.bukkit.Location;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.AsyncPlayerPreLoginEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerLoginEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Keeps the homes of online players in memory in front of another HomeManager.
+ * A player's homes are loaded with one query while they log in and dropped when they quit.
+ * Reads for cached players never reach the database; changes are written through. If a write
+ * fails, the player is dropped from the cache so reads go back to what the database holds.
+ */
+public class HomeManagerCached extends HomeManager implements Listener {
+	private final HomeManager database;
+
+	private final ConcurrentHashMap<UUID, LinkedHashMap<String, HomeEntry>> cache = new ConcurrentHashMap<UUID, LinkedHashMap<String, HomeEntry>>();
+	private final Striped<Lock> loadLocks = Striped.lock(64); // Orders loads against writes for the same player.
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+
+	/**
+	 * @param plugin The plug-in.
+	 * @param database Home database to cache.
+	 */
+	public HomeManagerCached(MultiHome plugin, HomeManager database) {
+		super(plugin);
+
+		this.database = database;
+	}
+
+	/**
+	 * @return HomeManager The underlying home database.
+	 */
+	public HomeManager getDatabase() {
+		return this.database;
+	}
+
+	/**
+	 * @return long Number of reads answered from memory.
+	 */
+	public long getHits() {
+		return this.hits.get();
+	}
+
+	/**
+	 * @return long Number of reads passed to the database.
+	 */
+	public long getMisses() {
+		return this.misses.get();
+	}
+
+	/**
+	 * @return String One-line summary of the cache metrics.
+	 */
+	public String getStatistics() {
+		long hits = getHits();
+		long total = hits + getMisses();
+
+		return "players=" + this.cache.size() + ", hits=" + hits + ", misses=" + getMisses()
+				+ ", hitRate=" + (total == 0 ? "n/a" : String.format("%.1f%%", hits * 100.0 / total));
+	}
+
+	/**
+	 * Loads a player's homes into the cache, unless they are already cached. If the database
+	 * cannot be read, nothing is cached and reads keep going to the database.
+	 * @param uuid Player to load.
+	 * @param online True to only cache the player if they are still online once loaded.
+	 */
+	public void load(UUID uuid, boolean online) {
+		if (this.cache.containsKey(uuid)) return;
+
+		Lock lock = this.loadLocks.get(uuid);
+		lock.lock();
+		try {
+			if (this.cache.containsKey(uuid)) return;
+
+			ArrayList<HomeEntry> loaded;
+			try {
+				loaded = this.database.loadUserHomes(uuid);
+			} catch (IOException e) {
+				Messaging.logWarning("Could not cache the homes of " + uuid + ": " + e.getMessage(), this.plugin);
+				return;
+			}
+
+			// Checked under the lock, so a quit that evicted the player while loading is not undone.
+			if (online && !isOnline(uuid)) return;
+
+			LinkedHashMap<String, HomeEntry> homes = new LinkedHashMap<String, HomeEntry>();
+			for (HomeEntry home : loaded) {
+				homes.put(home.getHomeName().toLowerCase(), home);
+			}
+
+			this.cache.put(uuid, homes);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Drops a player's homes from the cache.
+	 * @param uuid Player to drop.
+	 */
+	public void evict(UUID uuid) {
+		Lock lock = this.loadLocks.get(uuid);
+		lock.lock();
+		try {
+			this.cache.remove(uuid);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Loads the homes of everyone already online, such as after a reload, in the background.
+	 */
+	public void loadOnlinePlayers() {
+		final ArrayList<UUID> online = new ArrayList<UUID>();
+		for (Player player : this.plugin.getServer().getOnlinePlayers()) {
+			online.add(player.getUniqueId());
+		}
+
+		this.plugin.getServer().getScheduler().runTaskAsynchronously(this.plugin, new Runnable() {
+			@Override
+			public void run() {
+				for (UUID uuid : online) {
+					load(uuid, true);
+				}
+			}
+		});
+	}
+
+	@EventHandler(priority = EventPriority.MONITOR)
+	public void onAsyncPlayerPreLogin(AsyncPlayerPreLoginEvent event) {
+		if (event.getLoginResult() == AsyncPlayerPreLoginEvent.Result.ALLOWED) {
+			load(event.getUniqueId(), false);
+		}
+	}
+
+	@EventHandler(priority = EventPriority.MONITOR)
+	public void onPlayerLogin(PlayerLoginEvent event) {
+		if (event.getResult() != PlayerLoginEvent.Result.ALLOWED) {
+			evict(event.getPlayer().getUniqueId());
+		}
+	}
+
+	@EventHandler(priority = EventPriority.MONITOR)
+	public void onPlayerJoin(PlayerJoinEvent event) {
+		final UUID uuid = event.getPlayer().getUniqueId();
+
+		// Covers logins where the pre-login load was skipped or failed.
+		if (!this.cache.containsKey(uuid)) {
+			this.plugin.getServer().getScheduler().runTaskAsynchronously(this.plugin, new Runnable() {
+				@Override
+				public void run() {
+					load(uuid, true);
+				}
+			});
+		}
+	}
+
+	@EventHandler(priority = EventPriority.MONITOR)
+	public void onPlayerQuit(PlayerQuitEvent event) {
+		final UUID uuid = event.getPlayer().getUniqueId();
+
+		evict(uuid);
+
+		// The player still counts as online during this event, so a background load finishing
+		// right now could cache them again. Evict once more after they have been removed.
+		this.plugin.getServer().getScheduler().runTask(this.plugin, new Runnable() {
+			@Override
+			public void run() {
+				if (!isOnline(uuid)) {
+					evict(uuid);
+				}
+			}
+		});
+	}
+
+	private boolean isOnline(UUID uuid) {
+		Player player = this.plugin.getServer().getPlayer(uuid);
+		return player != null && player.isOnline();
+	}
+
+	@Override
+	public void shutdown() {
+		this.cache.clear();
+		this.database.shutdown();
+	}
+
+	@Override
+	public void clearHomes() {
+		for (UUID uuid : this.cache.keySet()) {
+			Lock lock = this.loadLocks.get(uuid);
+			lock.lock();
+			try {
+				LinkedHashMap<String, HomeEntry> homes = this.cache.get(uuid);
+				if (homes != null) {
+					synchronized (homes) {
+						homes.clear();
+					}
+				}
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		this.database.clearHomes();
+	}
+
+	@Override
+	public HomeEntry getHome(UUID uuid, String name) {
+		LinkedHashMap<String, HomeEntry> homes = this.cache.get(uuid);
+
+		if (homes != null) {
+			this.hits.incrementAndGet();
+			synchronized (homes) {
+				return homes.get(name.toLowerCase());
+			}
+		}
+
+		this.misses.incrementAndGet();
+		return this.database.getHome(uuid, name);
+	}
+
+	@Override
+	public void addHome(UUID uuid, String name, Location location) {
+		Lock lock = this.loadLocks.get(uuid);
+		lock.lock();
+		try {
+			this.database.storeHome(uuid, name, location);
+
+			LinkedHashMap<String, HomeEntry> homes = this.cache.get(uuid);
+			if (homes != null) {
+				synchronized (homes) {
+					HomeEntry home = homes.get(name.toLowerCase());
+					if (home != null) {
+						home.setHomeLocation(location);
+					} else {
+						homes.put(name.toLowerCase(), new HomeEntry(uuid, name, location));
+					}
+				}
+			}
+		} catch (IOException e) {
+			// The cached homes may no longer match the database, so read them from there again.
+			Messaging.logSevere("Failed to add home location: " + e.getMessage(), this.plugin);
+			this.cache.remove(uuid);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void removeHome(UUID uuid, String name) {
+		Lock lock = this.loadLocks.get(uuid);
+		lock.lock();
+		try {
+			this.database.deleteHome(uuid, name);
+
+			LinkedHashMap<String, HomeEntry> homes = this.cache.get(uuid);
+			if (homes != null) {
+				synchronized (homes) {
+					homes.remove(name.toLowerCase());
+				}
+			}
+		} catch (IOException e) {
+			// The cached homes may no longer match the database, so read them from there again.
+			Messaging.logSevere("Failed to remove home location: " + e.getMessage(), this.plugin);
+			this.cache.remove(uuid);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public boolean getUserExists(UUID uuid) {
+		LinkedHashMap<String, HomeEntry> homes = this.cache.get(uuid);
+
+		if (homes != null) {
+			this.hits.incrementAndGet();
+			synchronized (homes) {
+				return !homes.isEmpty();
+			}
+		}
+
+		this.misses.incrementAndGet();
+		return this.database.getUserExists(uuid);
+	}
+
+	@Override
+	public int getUserHomeCount(UUID uuid) {
+		LinkedHashMap<String, HomeEntry> homes = this.cache.get(uuid);
+
+		if (homes != null) {
+			this.hits.incrementAndGet();
+			synchronized (homes) {
+				return homes.size();
+			}
+		}
+
+		this.misses.incrementAndGet();
+		return this.database.getUserHomeCount(uuid);
+	}
+
+	@Override
+	public ArrayList<HomeEntry> listUserHomes(UUID uuid) {
+		LinkedHashMap<String, HomeEntry> homes = this.cache.get(uuid);
+
+		if (homes != null) {
+			this.hits.incrementAndGet();
+			synchronized (homes) {
+				return new ArrayList<HomeEntry>(homes.values());
+			}
+		}
+
+		this.misses.incrementAndGet();
+		return this.database.listUserHomes(uuid);
+	}
+
+	@Override
+	public ArrayList<HomeEntry> listUserHomes(UUID uuid, int offset, int limit) {
+		LinkedHashMap<String, HomeEntry> homes = this.cache.get(uuid);
+
+		if (homes != null) {
+			this.hits.incrementAndGet();
+			synchronized (homes) {
+				return Util.page(new ArrayList<HomeEntry>(homes.values()), offset, limit);
+			}
+		}
+
+		this.misses.incrementAndGet();
+		return this.database.listUserHomes(uuid, offset, limit);
+	}
+
+	@Override
+	public void importHomes(ArrayList<HomeEntry> homes, boolean overwrite) {
+		this.database.importHomes(homes, overwrite);
+
+		// Reload any cached player the import touched.
+		HashSet<UUID> owners = new HashSet<UUID>();
+		for (HomeEntry home : homes) {
+			try {
+				owners.add(UUID.fromString(home.getOwner()));
+			} catch (IllegalArgumentException ignored) {}
+		}
+
+		for (UUID uuid : owners) {
+			Lock lock = this.loadLocks.get(uuid);
+			lock.lock();
+			try {
+				if (this.cache.remove(uuid) != null) {
+					load(uuid, false);
+				}
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+}
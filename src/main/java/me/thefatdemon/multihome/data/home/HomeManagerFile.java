@@ -1,115 +1,98 @@
 package me.thefatdemon.multihome.data.home;
 
+import me.thefatdemon.multihome.IoWatchdog;
 import me.thefatdemon.multihome.Util;
 import me.thefatdemon.multihome.Messaging;
 import me.thefatdemon.multihome.MultiHome;
+import me.thefatdemon.multihome.Settings;
 import org.bukkit.Bukkit;
 import org.bukkit.Location;
+import org.bukkit.scheduler.BukkitTask;
 
 import java.io.*;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.Map.Entry;
+import java.util.LinkedHashMap;
 import java.util.UUID;
 
 /**
  * Manages a database of player home locations.
+ * Calls may come from the async home manager's threads, so access is synchronized.
  * @author MadManMarkAu
  */
 
 public class HomeManagerFile extends HomeManager {
     private final File homesFile;
-	private HashMap<String, ArrayList<HomeEntry>> homeEntries = new HashMap<String, ArrayList<HomeEntry>>();
+	private HashMap<UUID, LinkedHashMap<String, HomeEntry>> homeEntries = new HashMap<UUID, LinkedHashMap<String, HomeEntry>>();
+
+	private final boolean writeBehind; // Defer writes to the background flusher.
+	private final Object writeLock = new Object(); // Serializes flushes. Always taken before this, never while holding it.
+	private boolean saveRequired = false;
+	private BukkitTask flushTask;
 	
 	public HomeManagerFile(MultiHome plugin) {
 		super(plugin);
 		this.homesFile = new File(plugin.getDataFolder(), "homes.txt");
+		this.writeBehind = Settings.getDataStoreSettingBoolean("file", "writeBehind", true);
 		
 		loadHomes();
+
+		if (this.writeBehind) {
+			long interval = Math.max(1, Settings.getDataStoreSettingInt("file", "flushInterval", 5)) * 20L;
+
+			this.flushTask = plugin.getServer().getScheduler().runTaskTimerAsynchronously(plugin, new Runnable() {
+				@Override
+				public void run() {
+					flush();
+				}
+			}, interval, interval);
+		}
 	}
 
 	@Override
-	public void clearHomes() {
+	public synchronized void clearHomes() {
 		this.homeEntries.clear();
 
 		saveHomes();
 	}
 
 	@Override
-	public HomeEntry getHome(UUID uuid, String name) {
-		if (this.homeEntries.containsKey(uuid.toString())) {
-			ArrayList<HomeEntry> homes = this.homeEntries.get(uuid.toString());
-	
-			for (HomeEntry thisLocation : homes) {
-				if (thisLocation.getHomeName().compareToIgnoreCase(name) == 0) {
-					return thisLocation;
-				}
-			}
+	public synchronized HomeEntry getHome(UUID uuid, String name) {
+		LinkedHashMap<String, HomeEntry> homes = this.homeEntries.get(uuid);
+
+		if (homes != null) {
+			return homes.get(name.toLowerCase());
 		}
 
 		return null;
 	}
 
 	@Override
-	public void addHome(UUID uuid, String name, Location location) {
-		ArrayList<HomeEntry> homes;
-		
-		// Get the ArrayList of homes for this player
-		if (this.homeEntries.containsKey(uuid.toString())) {
-			homes = this.homeEntries.get(uuid.toString());
-		} else {
-			homes = new ArrayList<HomeEntry>();
-		}
+	public synchronized void addHome(UUID uuid, String name, Location location) {
+		HomeEntry home = getPlayerHomes(uuid).get(name.toLowerCase());
 
-		boolean homeSet = false;
-		
-		for (int index = 0; index < homes.size(); index++) {
-			HomeEntry thisHome = homes.get(index);
-			if (thisHome.getHomeName().compareToIgnoreCase(name) == 0) {
-				// An existing home was found. Overwrite it.
-				thisHome.setOwner(uuid.toString());
-				thisHome.setHomeName(name);
-				thisHome.setHomeLocation(location);
-				homes.set(index, thisHome);
-				homeSet = true;
-			}
-		}
-		
-		if (!homeSet) {
+		if (home != null) {
+			// An existing home was found. Overwrite it.
+			home.setHomeLocation(location);
+		} else {
 			// No existing location found. Create new entry.
-			HomeEntry home = new HomeEntry(uuid, name.toLowerCase(), location);
-			homes.add(home);
+			putHome(new HomeEntry(uuid, name.toLowerCase(), location));
 		}
-		
-		// Replace the ArrayList in the homes HashMap
-		this.homeEntries.remove(uuid.toString());
-		this.homeEntries.put(uuid.toString(), homes);
 
 		// Save
 		this.saveHomes();
 	}
 
 	@Override
-	public void removeHome(UUID player, String name) {
-		if (this.homeEntries.containsKey(player.toString())) {
-			ArrayList<HomeEntry> playerHomeList = this.homeEntries.get(player.toString());
-			ArrayList<HomeEntry> removeList = new ArrayList<HomeEntry>();
-
-			// Find all homes matching "name"
-			for (HomeEntry thisHome : playerHomeList) {
-				if (thisHome.getHomeName().compareToIgnoreCase(name) == 0) {
-					// Found match. Mark it for deletion.
-					removeList.add(thisHome);
-				}
-			}
-
-			// Remove all matching homes.
-			playerHomeList.removeAll(removeList);
+	public synchronized void removeHome(UUID player, String name) {
+		LinkedHashMap<String, HomeEntry> homes = this.homeEntries.get(player);
 
-			// Replace the ArrayList in the homes HashMap
-			this.homeEntries.remove(player.toString());
-			if (!playerHomeList.isEmpty()) {
-				this.homeEntries.put(player.toString(), playerHomeList);
+		if (homes != null && homes.remove(name.toLowerCase()) != null) {
+			if (homes.isEmpty()) {
+				this.homeEntries.remove(player);
 			}
 
 			// Save
@@ -118,96 +101,179 @@ public class HomeManagerFile extends HomeManager {
 	}
 
 	@Override
-	public boolean getUserExists(UUID player) {
-		return this.homeEntries.containsKey(player.toString());
+	public synchronized boolean getUserExists(UUID player) {
+		return this.homeEntries.containsKey(player);
 	}
 
 	@Override
-	public int getUserHomeCount(UUID player) {
-		if (this.homeEntries.containsKey(player.toString())) {
-			return this.homeEntries.get(player.toString()).size();
-		} else {
-			return 0;
-		}
+	public synchronized int getUserHomeCount(UUID player) {
+		LinkedHashMap<String, HomeEntry> homes = this.homeEntries.get(player);
+
+		return homes == null ? 0 : homes.size();
 	}
 
 	@Override
-	public ArrayList<HomeEntry> listUserHomes(UUID player) {
-		if (this.homeEntries.containsKey(player.toString())) {
-			return this.homeEntries.get(player.toString());
+	public synchronized ArrayList<HomeEntry> listUserHomes(UUID player) {
+		LinkedHashMap<String, HomeEntry> homes = this.homeEntries.get(player);
+
+		if (homes != null) {
+			return new ArrayList<HomeEntry>(homes.values());
 		} else {
-			return new ArrayList<>();
+			return new ArrayList<HomeEntry>();
 		}
 	}
 
 	@Override
-	public void importHomes(ArrayList<HomeEntry> homes, boolean overwrite) {
-		ArrayList<HomeEntry> playerHomes;
-
+	public synchronized void importHomes(ArrayList<HomeEntry> homes, boolean overwrite) {
 		for (HomeEntry thisEntry : homes) {
-			// Get the ArrayList of homes for this player
-			if (this.homeEntries.containsKey(thisEntry.getOwner().toLowerCase())) {
-				playerHomes = this.homeEntries.get(thisEntry.getOwner().toLowerCase());
-			} else {
-				playerHomes = new ArrayList<HomeEntry>();
-			}
+			UUID owner = UUID.fromString(thisEntry.getOwner());
+			HomeEntry thisHome = getPlayerHomes(owner).get(thisEntry.getHomeName().toLowerCase());
 
-			boolean homeFound = false;
-			
-			for (int index = 0; index < playerHomes.size(); index++) {
-				HomeEntry thisHome = playerHomes.get(index);
-				if (thisHome.getHomeName().compareToIgnoreCase(thisEntry.getHomeName()) == 0) {
-					// An existing home was found.
-					if (overwrite) {
-						thisHome.setOwner(thisEntry.getOwner());
-						thisHome.setHomeName(thisEntry.getHomeName());
-						thisHome.setHomeLocation(thisEntry.getHomeLocation(plugin.getServer()));
-						playerHomes.set(index, thisHome);
-					}
-					
-					homeFound = true;
+			if (thisHome != null) {
+				// An existing home was found.
+				if (overwrite) {
+					thisHome.setHomeLocation(thisEntry.getWorld(), thisEntry.getX(), thisEntry.getY(), thisEntry.getZ(), thisEntry.getPitch(), thisEntry.getYaw());
 				}
-			}
-			
-			if (!homeFound) {
+			} else {
 				// No existing location found. Create new entry.
-				HomeEntry newHome = new HomeEntry(UUID.fromString(thisEntry.getOwner()), thisEntry.getHomeName(), thisEntry.getHomeLocation(plugin.getServer()));
-				playerHomes.add(newHome);
+				putHome(new HomeEntry(owner, thisEntry.getHomeName(), thisEntry.getWorld(), thisEntry.getX(), thisEntry.getY(), thisEntry.getZ(), thisEntry.getPitch(), thisEntry.getYaw()));
 			}
-
-			// Replace the ArrayList in the homes HashMap
-			this.homeEntries.remove(thisEntry.getOwner().toLowerCase());
-			this.homeEntries.put(thisEntry.getOwner().toLowerCase(), playerHomes);
 		}
 
 		// Save
 		this.saveHomes();
 	}
 
-	
-	
 	/**
-	 * Save homes list to file. Clears the saveRequired flag.
+	 * Returns the player's homes, keyed by lowercased name. Creates an empty map if the player has none.
+	 */
+	private LinkedHashMap<String, HomeEntry> getPlayerHomes(UUID uuid) {
+		LinkedHashMap<String, HomeEntry> homes = this.homeEntries.get(uuid);
+
+		if (homes == null) {
+			homes = new LinkedHashMap<String, HomeEntry>();
+			this.homeEntries.put(uuid, homes);
+		}
+
+		return homes;
+	}
+
+	/**
+	 * Adds a home unless the owner already has one with the same name.
+	 * @return boolean True if the home was added.
+	 */
+	private boolean putHome(HomeEntry home) {
+		LinkedHashMap<String, HomeEntry> homes = getPlayerHomes(UUID.fromString(home.getOwner()));
+		String key = home.getHomeName().toLowerCase();
+
+		if (homes.containsKey(key)) return false;
+
+		homes.put(key, home);
+		return true;
+	}
+
+	/**
+	 * Save homes list to file. In write-behind mode this only sets the saveRequired flag,
+	 * and the background flusher writes the file later. Otherwise the file is written here,
+	 * under this object's lock, which already serializes every change.
 	 */
 	private void saveHomes() {
-		try {
-			FileWriter fstream = new FileWriter(this.homesFile);
-			BufferedWriter writer = new BufferedWriter(fstream);
-
-			writer.write("# Stores user home locations." + Util.newLine());
-			writer.write("# <username>;<x>;<y>;<z>;<pitch>;<yaw>;<world>[;<name>]" + Util.newLine());
-			writer.write(Util.newLine());
-
-			for (Entry<String, ArrayList<HomeEntry>> entry : this.homeEntries.entrySet()) {
-				for (HomeEntry thisHome : entry.getValue()) {
-					writer.write(thisHome.getOwner() + ";" + thisHome.getX() + ";" + thisHome.getY() + ";" + thisHome.getZ() + ";"
-							+ thisHome.getPitch() + ";" + thisHome.getYaw() + ";"
-							+ thisHome.getWorld() + ";" + thisHome.getHomeName() + Util.newLine());
+		if (this.writeBehind) {
+			this.saveRequired = true;
+		} else {
+			writeHomes(compileHomes());
+		}
+	}
+
+	/**
+	 * Writes pending changes to disk, if there are any. Clears the saveRequired flag.
+	 */
+	public void flush() {
+		synchronized (this.writeLock) {
+			String contents;
+
+			synchronized (this) {
+				if (!this.saveRequired) return;
+
+				contents = compileHomes();
+				this.saveRequired = false;
+			}
+
+			if (!writeHomes(contents)) {
+				synchronized (this) {
+					this.saveRequired = true;
 				}
 			}
-			writer.close();
+		}
+	}
+
+	@Override
+	public void shutdown() {
+		if (this.flushTask != null) {
+			this.flushTask.cancel();
+			this.flushTask = null;
+		}
+
+		flush();
+	}
+
+	/**
+	 * Renders the homes list in file format.
+	 */
+	private String compileHomes() {
+		StringBuilder builder = new StringBuilder();
+
+		builder.append("# Stores user home locations.").append(Util.newLine());
+		builder.append("# <username>;<x>;<y>;<z>;<pitch>;<yaw>;<world>[;<name>]").append(Util.newLine());
+		builder.append(Util.newLine());
+
+		for (LinkedHashMap<String, HomeEntry> homes : this.homeEntries.values()) {
+			for (HomeEntry thisHome : homes.values()) {
+				builder.append(thisHome.getOwner()).append(';')
+						.append(thisHome.getX()).append(';')
+						.append(thisHome.getY()).append(';')
+						.append(thisHome.getZ()).append(';')
+						.append(thisHome.getPitch()).append(';')
+						.append(thisHome.getYaw()).append(';')
+						.append(thisHome.getWorld()).append(';')
+						.append(thisHome.getHomeName()).append(Util.newLine());
+			}
+		}
+
+		return builder.toString();
+	}
+
+	/**
+	 * Writes the homes file atomically: contents go to a temporary file which then replaces
+	 * homes.txt, so a crash mid-write cannot leave a truncated file behind.
+	 * Called under this object's lock when writing directly, or by flush under writeLock
+	 * in write-behind mode; only one of the two ever writes.
+	 * @return True if the file was written.
+	 */
+	private boolean writeHomes(String contents) {
+		File tempFile = new File(this.homesFile.getPath() + ".tmp");
+		long ioStart = IoWatchdog.start();
+
+		try {
+			BufferedWriter writer = new BufferedWriter(new FileWriter(tempFile));
+			try {
+				writer.write(contents);
+			} finally {
+				writer.close();
+			}
+
+			try {
+				Files.move(tempFile.toPath(), this.homesFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(tempFile.toPath(), this.homesFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+
+			return true;
 		} catch (Exception e) {
 			Messaging.logSevere("Could not write the homes file.", this.plugin);
+			return false;
+		} finally {
+			IoWatchdog.end("homes.txt write", ioStart);
 		}
 	}
 
@@ -230,30 +296,9 @@ public class HomeManagerFile extends HomeManager {
 						
 						thisHome = parseHomeLine(line);
 						
+						// Duplicate entries are skipped.
 						if (thisHome != null) {
-							ArrayList<HomeEntry> homeList;
-	
-							// Find HashMap entry for player
-							if (!this.homeEntries.containsKey(thisHome.getOwner().toLowerCase())) {
-								homeList = new ArrayList<HomeEntry>();
-							} else {
-								// Player not exist. Create dummy entry.
-								homeList = this.homeEntries.get(thisHome.getOwner().toLowerCase());
-							}
-							
-							// Don't save if this is a duplicate entry.
-							boolean save = true;
-							for (HomeEntry home : homeList) {
-								if (home.getHomeName().compareToIgnoreCase(thisHome.getHomeName()) == 0) {
-									save = false;
-								}
-							}
-							
-							if (save) {
-								homeList.add(thisHome);
-							}
-	
-							this.homeEntries.put(thisHome.getOwner().toLowerCase(), homeList);
+							putHome(thisHome);
 						}
 					}
 	
@@ -283,7 +328,7 @@ public class HomeManagerFile extends HomeManager {
 		try {
 			if (values.length == 7) {
 				player = values[0];
-                playerUUID = Bukkit.getPlayer(player).getUniqueId();
+                playerUUID = parseOwner(player);
                 X = Double.parseDouble(values[1]);
 				Y = Double.parseDouble(values[2]);
 				Z = Double.parseDouble(values[3]);
@@ -294,7 +339,7 @@ public class HomeManagerFile extends HomeManager {
 				name = "";
 			} else if (values.length == 8) {
 				player = values[0];
-                playerUUID = Bukkit.getPlayer(player).getUniqueId();
+                playerUUID = parseOwner(player);
 				X = Double.parseDouble(values[1]);
 				Y = Double.parseDouble(values[2]);
 				Z = Double.parseDouble(values[3]);
@@ -309,10 +354,22 @@ public class HomeManagerFile extends HomeManager {
             Messaging.logWarning("Failed to load home location! Line: " + line, this.plugin);
         }
 
-		if (values.length == 7 || values.length == 8) {
+		if ((values.length == 7 || values.length == 8) && playerUUID != null) {
 			return new HomeEntry(playerUUID, name, world, X, Y, Z, pitch, yaw);
 		}
 		
 		return null;
 	}
+
+	/**
+	 * Owners are stored as UUIDs. Older files stored player names, which can only be
+	 * resolved while the player is online.
+	 */
+	private UUID parseOwner(String owner) {
+		try {
+			return UUID.fromString(owner);
+		} catch (IllegalArgumentException e) {
+			return Bukkit.getPlayer(owner).getUniqueId();
+		}
+	}
 }
@@ -0,0 +1,451 @@
+package me.thefatdemon.multihome.data.home;
+
+import com.google.common.io.CountingInputStream;
+import me.thefatdemon.multihome.IoWatchdog;
+import me.thefatdemon.multihome.Messaging;
+import me.thefatdemon.multihome.MultiHome;
+import me.thefatdemon.multihome.Settings;
+import org.bukkit.Location;
+
+import java.io.*;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.UUID;
+
+/**
+ * Manages a database of player home locations as a snapshot plus an append-only journal.
+ * Every change is a single record appended to homes.journal. Once the journal grows past
+ * the compaction threshold it is folded into homes.snapshot in the background.
+ * Homes are held in memory in a HomeIndex.
+ * Calls may come from the async home manager's threads, so access is synchronized.
+ */
+public class HomeManagerJournal extends HomeManager {
+	private static final int SNAPSHOT_MAGIC = 0x4d48534e; // "MHSN"
+	private static final int JOURNAL_MAGIC = 0x4d484a4c; // "MHJL"
+	private static final int FORMAT_VERSION = 1;
+
+	private static final byte OP_PUT = 1;
+	private static final byte OP_REMOVE = 2;
+	private static final byte OP_CLEAR = 3;
+
+	private final File snapshotFile;
+	private final File journalFile;
+	private final File oldJournalFile; // Journal being folded into the snapshot.
+	private final long compactThreshold; // Journal size, in bytes, that triggers compaction.
+
+	private final HomeIndex homeEntries = new HomeIndex();
+
+	private DataOutputStream journal;
+	private long journalSize;
+	private long compactAt; // Journal size that starts the next compaction.
+	private boolean compacting = false;
+	private boolean compactionEnabled = true; // Off when the snapshot could not be read, so it is never replaced.
+
+	public HomeManagerJournal(MultiHome plugin) {
+		super(plugin);
+		this.snapshotFile = new File(plugin.getDataFolder(), "homes.snapshot");
+		this.journalFile = new File(plugin.getDataFolder(), "homes.journal");
+		this.oldJournalFile = new File(plugin.getDataFolder(), "homes.journal.old");
+		this.compactThreshold = Math.max(1024, Settings.getDataStoreSettingInt("journal", "compactThreshold", 4194304));
+		this.compactAt = this.compactThreshold;
+
+		loadHomes();
+	}
+
+	@Override
+	public synchronized void shutdown() {
+		closeJournal();
+	}
+
+	@Override
+	public synchronized void clearHomes() {
+		this.homeEntries.clear();
+
+		try {
+			this.journal.writeByte(OP_CLEAR);
+			afterWrite();
+		} catch (Exception e) {
+			Messaging.logSevere("Could not write to the homes journal: " + e.getMessage(), this.plugin);
+		}
+	}
+
+	@Override
+	public synchronized HomeEntry getHome(UUID uuid, String name) {
+		int slot = this.homeEntries.find(uuid, name);
+
+		return slot < 0 ? null : this.homeEntries.toEntry(slot);
+	}
+
+	@Override
+	public synchronized void addHome(UUID uuid, String name, Location location) {
+		HomeEntry home = new HomeEntry(uuid, name.toLowerCase(), location);
+
+		putHome(uuid, home);
+
+		try {
+			writePut(this.journal, uuid, home);
+			afterWrite();
+		} catch (Exception e) {
+			Messaging.logSevere("Could not write to the homes journal: " + e.getMessage(), this.plugin);
+		}
+	}
+
+	@Override
+	public synchronized void removeHome(UUID player, String name) {
+		if (this.homeEntries.remove(player, name)) {
+			try {
+				writeRemove(this.journal, player, name.toLowerCase());
+				afterWrite();
+			} catch (Exception e) {
+				Messaging.logSevere("Could not write to the homes journal: " + e.getMessage(), this.plugin);
+			}
+		}
+	}
+
+	@Override
+	public synchronized boolean getUserExists(UUID player) {
+		return this.homeEntries.hasOwner(player);
+	}
+
+	@Override
+	public synchronized int getUserHomeCount(UUID player) {
+		return this.homeEntries.count(player);
+	}
+
+	@Override
+	public synchronized ArrayList<HomeEntry> listUserHomes(UUID player) {
+		return this.homeEntries.list(player);
+	}
+
+	@Override
+	public synchronized void importHomes(ArrayList<HomeEntry> homes, boolean overwrite) {
+		try {
+			for (HomeEntry thisEntry : homes) {
+				UUID owner = UUID.fromString(thisEntry.getOwner());
+				String name = thisEntry.getHomeName().toLowerCase();
+
+				if (!overwrite && this.homeEntries.find(owner, name) >= 0) continue;
+
+				HomeEntry home = new HomeEntry(owner, name, thisEntry.getWorld(), thisEntry.getX(), thisEntry.getY(), thisEntry.getZ(), thisEntry.getPitch(), thisEntry.getYaw());
+				putHome(owner, home);
+				writePut(this.journal, owner, home);
+			}
+		} catch (Exception e) {
+			Messaging.logSevere("Could not write to the homes journal: " + e.getMessage(), this.plugin);
+		}
+
+		try {
+			afterWrite();
+		} catch (IOException e) {
+			Messaging.logSevere("Could not write to the homes journal: " + e.getMessage(), this.plugin);
+		}
+	}
+
+	private void putHome(UUID owner, HomeEntry home) {
+		this.homeEntries.put(owner, home.getHomeName(), home.getWorld(), home.getX(), home.getY(), home.getZ(), home.getPitch(), home.getYaw());
+	}
+
+	/**
+	 * Pushes the appended records to the OS and starts compaction once the journal is large enough.
+	 */
+	private void afterWrite() throws IOException {
+		long ioStart = IoWatchdog.start();
+		try {
+			this.journal.flush();
+		} finally {
+			IoWatchdog.end("homes journal flush", ioStart);
+		}
+
+		if (this.compactionEnabled && !this.compacting && currentJournalSize() >= this.compactAt) {
+			startCompaction();
+		}
+	}
+
+	/**
+	 * Rotates the journal and writes a new snapshot of the current homes in the background.
+	 * If the last snapshot failed, the old journal is still there; the current homes include
+	 * it, so the snapshot is retried without rotating, and the next compaction rotates again.
+	 * Must be called with the lock held.
+	 */
+	private void startCompaction() {
+		if (!this.oldJournalFile.exists()) {
+			closeJournal();
+
+			if (!this.journalFile.renameTo(this.oldJournalFile)) {
+				Messaging.logWarning("Could not rotate the homes journal. Compaction skipped.", this.plugin);
+				openJournal();
+				this.compactAt = currentJournalSize() + this.compactThreshold;
+				return;
+			}
+
+			openJournal();
+			this.compactAt = this.compactThreshold;
+		}
+
+		final ArrayList<HomeEntry> snapshot = this.homeEntries.listAll();
+
+		this.compacting = true;
+
+		Runnable task = new Runnable() {
+			@Override
+			public void run() {
+				boolean written = false;
+				try {
+					written = writeSnapshot(snapshot) && oldJournalFile.delete();
+				} finally {
+					synchronized (HomeManagerJournal.this) {
+						compacting = false;
+						if (!written) {
+							// Try again once the journal has grown by another threshold.
+							compactAt = currentJournalSize() + compactThreshold;
+						}
+					}
+				}
+			}
+		};
+
+		if (this.plugin.isEnabled()) {
+			this.plugin.getServer().getScheduler().runTaskAsynchronously(this.plugin, task);
+		} else {
+			task.run();
+		}
+	}
+
+	/**
+	 * Writes the snapshot file atomically through a temporary file.
+	 * @return True if the snapshot was written.
+	 */
+	private boolean writeSnapshot(ArrayList<HomeEntry> homes) {
+		File tempFile = new File(this.snapshotFile.getPath() + ".tmp");
+		long ioStart = IoWatchdog.start();
+
+		try {
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+			try {
+				out.writeInt(SNAPSHOT_MAGIC);
+				out.writeInt(FORMAT_VERSION);
+				out.writeInt(homes.size());
+
+				for (HomeEntry home : homes) {
+					writePut(out, UUID.fromString(home.getOwner()), home);
+				}
+			} finally {
+				out.close();
+			}
+
+			try {
+				Files.move(tempFile.toPath(), this.snapshotFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(tempFile.toPath(), this.snapshotFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+
+			return true;
+		} catch (Exception e) {
+			Messaging.logSevere("Could not write the homes snapshot: " + e.getMessage(), this.plugin);
+			return false;
+		} finally {
+			IoWatchdog.end("homes snapshot write", ioStart);
+		}
+	}
+
+	private long currentJournalSize() {
+		return this.journal == null ? this.journalSize : this.journalSize + this.journal.size();
+	}
+
+	private void openJournal() {
+		try {
+			boolean fresh = !this.journalFile.exists() || this.journalFile.length() == 0;
+
+			this.journal = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(this.journalFile, true)));
+			if (fresh) {
+				this.journal.writeInt(JOURNAL_MAGIC);
+				this.journal.writeInt(FORMAT_VERSION);
+				this.journal.flush();
+			}
+			this.journalSize = this.journalFile.length() - this.journal.size();
+		} catch (IOException e) {
+			Messaging.logSevere("Could not open the homes journal: " + e.getMessage(), this.plugin);
+		}
+	}
+
+	private void closeJournal() {
+		if (this.journal != null) {
+			try {
+				this.journal.close();
+			} catch (IOException ignored) {} // Eat errors
+			this.journal = null;
+		}
+	}
+
+	/**
+	 * Load the snapshot, then replay the journals on top of it.
+	 */
+	private void loadHomes() {
+		this.homeEntries.clear();
+
+		if (this.snapshotFile.exists()) {
+			try {
+				DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(this.snapshotFile)));
+				try {
+					if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != FORMAT_VERSION) {
+						throw new IOException("Unrecognised snapshot format.");
+					}
+
+					int count = in.readInt();
+					for (int index = 0; index < count; index++) {
+						if (in.readByte() != OP_PUT) {
+							throw new IOException("Corrupt snapshot record.");
+						}
+						readPut(in);
+					}
+				} finally {
+					in.close();
+				}
+			} catch (Exception e) {
+				this.compactionEnabled = false;
+				Messaging.logSevere("Could not read the homes snapshot: " + e.getMessage(), this.plugin);
+				Messaging.logSevere("Homes in the snapshot are not loaded, and compaction is disabled until it is repaired or removed.", this.plugin);
+			}
+		}
+
+		boolean unfinishedCompaction = this.oldJournalFile.exists();
+		boolean intact = true;
+		if (unfinishedCompaction) {
+			intact = replayJournal(this.oldJournalFile);
+		}
+		intact &= replayJournal(this.journalFile);
+
+		openJournal();
+
+		if ((unfinishedCompaction || !intact) && this.compactionEnabled) {
+			// Replaying over a snapshot is idempotent, so the current journal can stay as it is.
+			// After a damaged journal was set aside, this keeps the records read from it before the damage.
+			if (writeSnapshot(this.homeEntries.listAll())) {
+				this.oldJournalFile.delete();
+			}
+		}
+	}
+
+	/**
+	 * Applies every complete record in the journal. A torn record at the end, left by a crash
+	 * mid-append, is cut off so new records are not written after garbage. A journal that is
+	 * damaged in any other way is renamed to <name>.corrupt and left alone.
+	 * @return boolean False if the journal was set aside.
+	 * @throws IllegalStateException If a damaged journal could not be set aside.
+	 */
+	private boolean replayJournal(File file) {
+		if (!file.exists() || file.length() == 0) return true;
+
+		long validLength = 0;
+		int records = 0;
+
+		try {
+			CountingInputStream counter = new CountingInputStream(new BufferedInputStream(new FileInputStream(file)));
+			DataInputStream in = new DataInputStream(counter);
+
+			try {
+				if (in.readInt() != JOURNAL_MAGIC || in.readInt() != FORMAT_VERSION) {
+					throw new IOException("Unrecognised journal format.");
+				}
+				validLength = counter.getCount();
+
+				while (true) {
+					int op = in.read();
+					if (op == -1) break;
+
+					if (op == OP_PUT) {
+						readPut(in);
+					} else if (op == OP_REMOVE) {
+						UUID owner = new UUID(in.readLong(), in.readLong());
+						this.homeEntries.remove(owner, in.readUTF());
+					} else if (op == OP_CLEAR) {
+						this.homeEntries.clear();
+					} else {
+						throw new IOException("Unknown journal record type " + op + ".");
+					}
+
+					validLength = counter.getCount();
+					records++;
+				}
+			} finally {
+				in.close();
+			}
+		} catch (EOFException e) {
+			Messaging.logWarning("Homes journal " + file.getName() + " ends with an incomplete record. It will be discarded.", this.plugin);
+		} catch (Exception e) {
+			Messaging.logSevere("Could not read the homes journal " + file.getName() + ": " + e.getMessage(), this.plugin);
+			setAside(file);
+			return false;
+		}
+
+		if (validLength < file.length()) {
+			try {
+				RandomAccessFile raf = new RandomAccessFile(file, "rw");
+				try {
+					raf.setLength(validLength);
+				} finally {
+					raf.close();
+				}
+			} catch (IOException e) {
+				Messaging.logSevere("Could not truncate the homes journal: " + e.getMessage(), this.plugin);
+			}
+		}
+
+		Messaging.logFine("Replayed " + records + " records from " + file.getName() + ".", this.plugin);
+		return true;
+	}
+
+	/**
+	 * Moves a damaged journal out of the way, so a new one is not appended to it and a later
+	 * snapshot cannot replace the records it still holds.
+	 */
+	private void setAside(File file) {
+		File corrupt = new File(file.getPath() + ".corrupt");
+		for (int index = 1; corrupt.exists(); index++) {
+			corrupt = new File(file.getPath() + ".corrupt." + index);
+		}
+
+		try {
+			Files.move(file.toPath(), corrupt.toPath());
+		} catch (IOException e) {
+			throw new IllegalStateException("Could not move the damaged homes journal " + file.getName() + " aside: " + e.getMessage(), e);
+		}
+
+		Messaging.logSevere("The homes journal " + file.getName() + " was moved to " + corrupt.getName() + ". Homes recorded after the damage are not loaded.", this.plugin);
+	}
+
+	private void readPut(DataInputStream in) throws IOException {
+		UUID owner = new UUID(in.readLong(), in.readLong());
+		String name = in.readUTF();
+		String world = in.readUTF();
+		double x = in.readDouble();
+		double y = in.readDouble();
+		double z = in.readDouble();
+		float pitch = in.readFloat();
+		float yaw = in.readFloat();
+
+		this.homeEntries.put(owner, name, world, x, y, z, pitch, yaw);
+	}
+
+	private static void writePut(DataOutputStream out, UUID owner, HomeEntry home) throws IOException {
+		out.writeByte(OP_PUT);
+		out.writeLong(owner.getMostSignificantBits());
+		out.writeLong(owner.getLeastSignificantBits());
+		out.writeUTF(home.getHomeName());
+		out.writeUTF(home.getWorld());
+		out.writeDouble(home.getX());
+		out.writeDouble(home.getY());
+		out.writeDouble(home.getZ());
+		out.writeFloat(home.getPitch());
+		out.writeFloat(home.getYaw());
+	}
+
+	private static void writeRemove(DataOutputStream out, UUID owner, String name) throws IOException {
+		out.writeByte(OP_REMOVE);
+		out.writeLong(owner.getMostSignificantBits());
+		out.writeLong(owner.getLeastSignificantBits());
+		out.writeUTF(name);
+	}
+}
@@ -0,0 +1,473 @@
+package me.thefatdemon.multihome.data.home;
+
+import com.google.common.io.CountingInputStream;
+import com.google.common.primitives.Ints;
+import me.thefatdemon.multihome.IoWatchdog;
+import me.thefatdemon.multihome.Messaging;
+import me.thefatdemon.multihome.MultiHome;
+import me.thefatdemon.multihome.Settings;
+import org.bukkit.Location;
+
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.UUID;
+
+/**
+ * Manages a database of player home locations in homes.dat, a file of fixed-size records
+ * mapped into memory. A record holds the owner's UUID, the hash and offset of the home's
+ * name in homes.names, the id of its world in homes.worlds and the coordinates, so loading
+ * is a scan of the records and every change is written in place. Names and worlds are
+ * appended to their side files once and shared by every record that uses them.
+ * Writes go to the OS page cache, so they survive the server crashing but are only forced
+ * to disk on shutdown.
+ * Calls may come from the async home manager's threads, so access is synchronized.
+ */
+public class HomeManagerMapped extends HomeManager {
+	private static final int MAGIC = 0x4d484d50; // "MHMP"
+	private static final int FORMAT_VERSION = 1;
+	private static final int HEADER_SIZE = 64;
+	private static final int RECORD_SIZE = 64;
+	private static final int MAX_RECORDS = (Integer.MAX_VALUE - HEADER_SIZE) / RECORD_SIZE; // A mapping is limited to 2GB.
+
+	// Byte offsets within a record.
+	private static final int MOST_BITS = 0;
+	private static final int LEAST_BITS = 8;
+	private static final int NAME_HASH = 16;
+	private static final int NAME_OFFSET = 20;
+	private static final int WORLD_ID = 24;
+	private static final int PITCH = 28;
+	private static final int X = 32;
+	private static final int Y = 40;
+	private static final int Z = 48;
+	private static final int YAW = 56;
+	private static final int FLAGS = 60; // Written last, so a record is only used once it is complete.
+
+	private static final int USED = 1;
+
+	private final File dataFile;
+	private final File namesFile;
+	private final File worldsFile;
+	private final int initialCapacity;
+
+	private final RecordIndex homeEntries = new RecordIndex();
+	private final ArrayList<String> worlds = new ArrayList<String>();
+	private final HashMap<String, Integer> worldIds = new HashMap<String, Integer>();
+	private final HashMap<String, Integer> nameOffsets = new HashMap<String, Integer>();
+
+	private RandomAccessFile data;
+	private MappedByteBuffer records;
+	private int capacity = 0; // Records homes.dat has room for.
+	private int nextRecord = 0; // Records at and above this have never been used.
+	private int[] freeRecords = new int[16]; // Unused records below nextRecord, lowest on top.
+	private int freeCount = 0;
+
+	private DataOutputStream namesOut;
+	private int namesBase; // Length of homes.names when it was opened.
+	private DataOutputStream worldsOut;
+
+	public HomeManagerMapped(MultiHome plugin) {
+		super(plugin);
+		this.dataFile = new File(plugin.getDataFolder(), "homes.dat");
+		this.namesFile = new File(plugin.getDataFolder(), "homes.names");
+		this.worldsFile = new File(plugin.getDataFolder(), "homes.worlds");
+		this.initialCapacity = Math.min(MAX_RECORDS, Math.max(16, Settings.getDataStoreSettingInt("mapped", "initialCapacity", 1024)));
+
+		loadHomes();
+	}
+
+	@Override
+	public synchronized void shutdown() {
+		if (this.records != null) {
+			this.records.force();
+			this.records = null;
+		}
+
+		closeQuietly(this.namesOut);
+		closeQuietly(this.worldsOut);
+		closeQuietly(this.data);
+	}
+
+	@Override
+	public synchronized void clearHomes() {
+		if (this.records != null) {
+			for (int record = 0; record < this.nextRecord; record++) {
+				this.records.putInt(position(record) + FLAGS, 0);
+			}
+		}
+
+		this.homeEntries.clear();
+		this.nextRecord = 0;
+		this.freeCount = 0;
+	}
+
+	@Override
+	public synchronized HomeEntry getHome(UUID uuid, String name) {
+		int slot = this.homeEntries.find(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits(), name);
+
+		return slot < 0 ? null : toEntry(slot);
+	}
+
+	@Override
+	public synchronized void addHome(UUID uuid, String name, Location location) {
+		putHome(uuid, name, location.getWorld().getName(), location.getX(), location.getY(), location.getZ(), location.getPitch(), location.getYaw());
+	}
+
+	@Override
+	public synchronized void removeHome(UUID player, String name) {
+		long most = player.getMostSignificantBits();
+		long least = player.getLeastSignificantBits();
+
+		int slot = this.homeEntries.find(most, least, name);
+		if (slot < 0) return;
+
+		int record = this.homeEntries.getRecord(slot);
+		this.homeEntries.remove(most, least, name);
+		this.records.putInt(position(record) + FLAGS, 0);
+		freeRecord(record);
+	}
+
+	@Override
+	public synchronized boolean getUserExists(UUID player) {
+		return this.homeEntries.firstSlot(player.getMostSignificantBits(), player.getLeastSignificantBits()) >= 0;
+	}
+
+	@Override
+	public synchronized int getUserHomeCount(UUID player) {
+		return this.homeEntries.count(player.getMostSignificantBits(), player.getLeastSignificantBits());
+	}
+
+	@Override
+	public synchronized ArrayList<HomeEntry> listUserHomes(UUID player) {
+		ArrayList<HomeEntry> output = new ArrayList<HomeEntry>();
+
+		for (int slot = this.homeEntries.firstSlot(player.getMostSignificantBits(), player.getLeastSignificantBits()); slot >= 0; slot = this.homeEntries.nextSlot(slot)) {
+			output.add(toEntry(slot));
+		}
+
+		return output;
+	}
+
+	@Override
+	public synchronized void importHomes(ArrayList<HomeEntry> homes, boolean overwrite) {
+		for (HomeEntry thisEntry : homes) {
+			UUID owner = UUID.fromString(thisEntry.getOwner());
+
+			if (!overwrite && this.homeEntries.find(owner.getMostSignificantBits(), owner.getLeastSignificantBits(), thisEntry.getHomeName()) >= 0) continue;
+
+			putHome(owner, thisEntry.getHomeName(), thisEntry.getWorld(), thisEntry.getX(), thisEntry.getY(), thisEntry.getZ(), thisEntry.getPitch(), thisEntry.getYaw());
+		}
+	}
+
+	/**
+	 * Adds or replaces a home. An existing home is updated in its own record.
+	 */
+	private void putHome(UUID owner, String name, String world, double x, double y, double z, float pitch, float yaw) {
+		if (this.records == null) {
+			Messaging.logSevere("The homes database is not open. Home \"" + name + "\" was not saved.", this.plugin);
+			return;
+		}
+
+		long most = owner.getMostSignificantBits();
+		long least = owner.getLeastSignificantBits();
+
+		try {
+			int worldId = worldId(world);
+			int slot = this.homeEntries.find(most, least, name);
+			int position;
+
+			if (slot >= 0) {
+				position = position(this.homeEntries.getRecord(slot));
+			} else {
+				String key = HomeKeyIndex.normalize(name);
+				int nameOffset = nameOffset(key);
+				int record = allocateRecord();
+
+				position = position(record);
+				this.records.putLong(position + MOST_BITS, most);
+				this.records.putLong(position + LEAST_BITS, least);
+				this.records.putInt(position + NAME_HASH, key.hashCode());
+				this.records.putInt(position + NAME_OFFSET, nameOffset);
+
+				slot = this.homeEntries.insert(most, least, key);
+				this.homeEntries.setRecord(slot, record);
+			}
+
+			this.records.putInt(position + WORLD_ID, worldId);
+			this.records.putDouble(position + X, x);
+			this.records.putDouble(position + Y, y);
+			this.records.putDouble(position + Z, z);
+			this.records.putFloat(position + PITCH, pitch);
+			this.records.putFloat(position + YAW, yaw);
+			this.records.putInt(position + FLAGS, USED);
+		} catch (IOException e) {
+			Messaging.logSevere("Could not write to the homes database: " + e.getMessage(), this.plugin);
+		}
+	}
+
+	private HomeEntry toEntry(int slot) {
+		int position = position(this.homeEntries.getRecord(slot));
+
+		return new HomeEntry(new UUID(this.records.getLong(position + MOST_BITS), this.records.getLong(position + LEAST_BITS)),
+				this.homeEntries.getName(slot), this.worlds.get(this.records.getInt(position + WORLD_ID)),
+				this.records.getDouble(position + X), this.records.getDouble(position + Y), this.records.getDouble(position + Z),
+				this.records.getFloat(position + PITCH), this.records.getFloat(position + YAW));
+	}
+
+	private static int position(int record) {
+		return HEADER_SIZE + record * RECORD_SIZE;
+	}
+
+	private static long position(long record) {
+		return HEADER_SIZE + record * RECORD_SIZE;
+	}
+
+	/**
+	 * @return int Id of the world, appending it to homes.worlds if it is new.
+	 */
+	private int worldId(String world) throws IOException {
+		Integer id = this.worldIds.get(world);
+		if (id != null) return id;
+
+		long ioStart = IoWatchdog.start();
+		try {
+			this.worldsOut.writeUTF(world);
+			this.worldsOut.flush();
+		} finally {
+			IoWatchdog.end("homes.worlds append", ioStart);
+		}
+
+		id = this.worlds.size();
+		this.worlds.add(world);
+		this.worldIds.put(world, id);
+		return id;
+	}
+
+	/**
+	 * @return int Offset of the name in homes.names, appending it if it is new.
+	 */
+	private int nameOffset(String name) throws IOException {
+		Integer offset = this.nameOffsets.get(name);
+		if (offset != null) return offset;
+
+		offset = this.namesBase + this.namesOut.size();
+
+		long ioStart = IoWatchdog.start();
+		try {
+			this.namesOut.writeUTF(name);
+			this.namesOut.flush();
+		} finally {
+			IoWatchdog.end("homes.names append", ioStart);
+		}
+
+		this.nameOffsets.put(name, offset);
+		return offset;
+	}
+
+	/**
+	 * @return int A free record, growing homes.dat if every record is in use.
+	 */
+	private int allocateRecord() throws IOException {
+		if (this.freeCount > 0) {
+			return this.freeRecords[--this.freeCount];
+		}
+
+		if (this.nextRecord == this.capacity) {
+			grow();
+		}
+		return this.nextRecord++;
+	}
+
+	private void freeRecord(int record) {
+		if (this.freeCount == this.freeRecords.length) {
+			this.freeRecords = Arrays.copyOf(this.freeRecords, this.freeCount * 2);
+		}
+		this.freeRecords[this.freeCount++] = record;
+	}
+
+	/**
+	 * Doubles the size of homes.dat and maps it again.
+	 */
+	private void grow() throws IOException {
+		if (this.capacity == MAX_RECORDS) {
+			throw new IOException("homes.dat has reached its maximum size.");
+		}
+		long length = position(Math.min(MAX_RECORDS, this.capacity * 2L));
+
+		long ioStart = IoWatchdog.start();
+		try {
+			this.records.force();
+			this.data.setLength(length);
+			map();
+		} finally {
+			IoWatchdog.end("homes.dat grow", ioStart);
+		}
+	}
+
+	private void map() throws IOException {
+		this.capacity = (int) ((this.data.length() - HEADER_SIZE) / RECORD_SIZE);
+		this.records = this.data.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, position(this.capacity));
+	}
+
+	/**
+	 * Load worlds and names, map homes.dat and index every record in it.
+	 */
+	private void loadHomes() {
+		try {
+			readStrings(this.worldsFile, this.worlds, null);
+			for (int id = 0; id < this.worlds.size(); id++) {
+				this.worldIds.put(this.worlds.get(id), id);
+			}
+
+			ArrayList<String> names = new ArrayList<String>();
+			ArrayList<Integer> offsets = new ArrayList<Integer>();
+			readStrings(this.namesFile, names, offsets);
+			for (int index = 0; index < names.size(); index++) {
+				this.nameOffsets.put(names.get(index), offsets.get(index));
+			}
+
+			openRecords();
+			scanRecords(names.toArray(new String[names.size()]), Ints.toArray(offsets));
+
+			this.namesBase = (int) this.namesFile.length();
+			this.namesOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(this.namesFile, true)));
+			this.worldsOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(this.worldsFile, true)));
+		} catch (Exception e) {
+			Messaging.logSevere("Could not open the homes database: " + e.getMessage(), this.plugin);
+			shutdown();
+		}
+	}
+
+	private void openRecords() throws IOException {
+		boolean fresh = !this.dataFile.exists() || this.dataFile.length() < HEADER_SIZE;
+
+		this.data = new RandomAccessFile(this.dataFile, "rw");
+		if (fresh) {
+			this.data.setLength(position(this.initialCapacity));
+		}
+		map();
+
+		if (fresh) {
+			this.records.putInt(0, MAGIC);
+			this.records.putInt(4, FORMAT_VERSION);
+			this.records.putInt(8, RECORD_SIZE);
+		} else if (this.records.getInt(0) != MAGIC || this.records.getInt(4) != FORMAT_VERSION || this.records.getInt(8) != RECORD_SIZE) {
+			throw new IOException("Unrecognised homes.dat format.");
+		}
+	}
+
+	/**
+	 * Indexes every used record and collects the free ones. Records naming a missing name
+	 * or world, or repeating a home already seen, are freed.
+	 * @param names Every name in homes.names.
+	 * @param offsets Offset of each name, in ascending order.
+	 */
+	private void scanRecords(String[] names, int[] offsets) {
+		this.homeEntries.clear();
+		int discarded = 0;
+
+		for (int record = 0; record < this.capacity; record++) {
+			int position = position(record);
+			if (this.records.getInt(position + FLAGS) != USED) continue;
+
+			long most = this.records.getLong(position + MOST_BITS);
+			long least = this.records.getLong(position + LEAST_BITS);
+			int nameIndex = Arrays.binarySearch(offsets, this.records.getInt(position + NAME_OFFSET));
+			int worldId = this.records.getInt(position + WORLD_ID);
+
+			if (nameIndex < 0 || names[nameIndex].hashCode() != this.records.getInt(position + NAME_HASH)
+					|| worldId < 0 || worldId >= this.worlds.size() || this.homeEntries.find(most, least, names[nameIndex]) >= 0) {
+				this.records.putInt(position + FLAGS, 0);
+				discarded++;
+				continue;
+			}
+
+			this.homeEntries.setRecord(this.homeEntries.insert(most, least, names[nameIndex]), record);
+			this.nextRecord = record + 1;
+		}
+
+		for (int record = this.nextRecord - 1; record >= 0; record--) {
+			if (this.records.getInt(position(record) + FLAGS) != USED) {
+				freeRecord(record);
+			}
+		}
+
+		if (discarded > 0) {
+			Messaging.logWarning("Discarded " + discarded + " damaged or duplicate records from homes.dat.", this.plugin);
+		}
+		Messaging.logFine("Loaded " + this.homeEntries.size() + " homes from homes.dat.", this.plugin);
+	}
+
+	/**
+	 * Reads every complete string from a side file. A torn string at the end, left by a crash
+	 * mid-append, is cut off so new strings are not appended after garbage.
+	 * @param offsets Receives the offset of each string, or null if not needed.
+	 */
+	private void readStrings(File file, ArrayList<String> strings, ArrayList<Integer> offsets) throws IOException {
+		if (!file.exists()) return;
+
+		long validLength = 0;
+		CountingInputStream counter = new CountingInputStream(new BufferedInputStream(new FileInputStream(file)));
+		DataInputStream in = new DataInputStream(counter);
+
+		try {
+			while (validLength < file.length()) {
+				String value = in.readUTF();
+
+				strings.add(value);
+				if (offsets != null) offsets.add((int) validLength);
+				validLength = counter.getCount();
+			}
+		} catch (EOFException e) {
+			Messaging.logWarning(file.getName() + " ends with an incomplete entry. It will be discarded.", this.plugin);
+		} finally {
+			in.close();
+		}
+
+		if (validLength < file.length()) {
+			RandomAccessFile raf = new RandomAccessFile(file, "rw");
+			try {
+				raf.setLength(validLength);
+			} finally {
+				raf.close();
+			}
+		}
+	}
+
+	private static void closeQuietly(Closeable closeable) {
+		if (closeable != null) {
+			try {
+				closeable.close();
+			} catch (IOException ignored) {} // Eat errors
+		}
+	}
+
+	/**
+	 * HomeKeyIndex that remembers which record of homes.dat holds each home.
+	 */
+	private static class RecordIndex extends HomeKeyIndex {
+		private int[] records;
+
+		private RecordIndex() {
+			super();
+			this.records = new int[capacity()];
+		}
+
+		private int getRecord(int slot) {
+			return this.records[slot];
+		}
+
+		private void setRecord(int slot, int record) {
+			this.records[slot] = record;
+		}
+
+		@Override
+		protected void resize(int capacity) {
+			super.resize(capacity);
+			this.records = Arrays.copyOf(this.records, capacity);
+		}
+	}
+}
@@ -3,37 +3,31 @@ package me.thefatdemon.multihome.data.home;
 import me.thefatdemon.multihome.Messaging;
 import me.thefatdemon.multihome.MultiHome;
 import me.thefatdemon.multihome.Settings;
+import me.thefatdemon.multihome.data.ConnectionPool;
+import me.thefatdemon.multihome.data.SchemaManager;
 import org.bukkit.Location;
 
+import java.io.IOException;
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.UUID;
 
 
 public class HomeManagerMySQL extends HomeManager {
-	private final String url; // Database URL to connect to.
-	private final String user; // MySQL user to connect as.
-	private final String password; // Password for MySQL user.
+	// No trailing semicolons, so the driver can rewrite batches into multi-row inserts.
+	private static final String HOME_COLUMNS = "`homes` (`owner_id`, `home_key`, `owner`, `home`, `world`, `x`, `y`, `z`, `pitch`, `yaw`) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+	private static final String UPSERT_HOME = "INSERT INTO " + HOME_COLUMNS + " ON DUPLICATE KEY UPDATE `home` = VALUES(`home`), `world` = VALUES(`world`), "
+			+ "`x` = VALUES(`x`), `y` = VALUES(`y`), `z` = VALUES(`z`), `pitch` = VALUES(`pitch`), `yaw` = VALUES(`yaw`)";
+	private static final String INSERT_HOME_IGNORE = "INSERT IGNORE INTO " + HOME_COLUMNS;
 
-	public HomeManagerMySQL(MultiHome plugin) {
-		super(plugin);
+	private final ConnectionPool pool; // Shared database connections.
+	private final int batchSize; // Rows sent per round trip when importing.
 
-		// Save settings
-		this.url = Settings.getDataStoreSettingString("sql", "url");
-		this.user = Settings.getDataStoreSettingString("sql", "user");
-		this.password = Settings.getDataStoreSettingString("sql", "pass");
+	public HomeManagerMySQL(MultiHome plugin, ConnectionPool pool) {
+		super(plugin);
 
-		// Test connection
-		try {
-			Connection connection = DriverManager.getConnection(this.url, this.user, this.password);
-			if (!connection.isValid(100)) {
-				throw new SQLException();
-			} else {
-				connection.close();
-			}
-		} catch (SQLException e) {
-			Messaging.logSevere("Failed to contact MySQL server: " + e.getMessage(), this.plugin);
-		}
+		this.pool = pool;
+		this.batchSize = Math.max(1, Settings.getDataStoreSettingInt("sql", "batchSize", 1000));
 	}
 
 	@Override
@@ -42,10 +36,7 @@ public class HomeManagerMySQL extends HomeManager {
 		PreparedStatement statement = null;
 
 		try {
-			connection = DriverManager.getConnection(this.url, this.user, this.password);
-			if (!connection.isValid(100)) {
-				throw new SQLException();
-			}
+			connection = this.pool.getConnection();
 
 			statement = connection.prepareStatement("DELETE FROM `homes`;");
 			statement.execute();
@@ -73,16 +64,13 @@ public class HomeManagerMySQL extends HomeManager {
 		ResultSet resultSet = null;
 
 		try {
-			connection = DriverManager.getConnection(this.url, this.user, this.password);
-			if (!connection.isValid(100)) {
-				throw new SQLException();
-			}
+			connection = this.pool.getConnection();
 
-			statement = connection.prepareStatement("SELECT * FROM `homes` WHERE LOWER(`owner`) = LOWER(?) AND LOWER(`home`) = LOWER(?);");
-			statement.setString(1, uuid.toString());
-			statement.setString(2, name);
+			statement = connection.prepareStatement("SELECT * FROM `homes` WHERE `owner_id` = ? AND `home_key` = ?;");
+			statement.setBytes(1, SchemaManager.toBytes(uuid));
+			statement.setString(2, name.toLowerCase());
 			resultSet = statement.executeQuery();
-			if (resultSet.first()) {
+			if (resultSet.next()) {
 				try {
 					return new HomeEntry(uuid, name,
 										resultSet.getString("world"), 
@@ -122,55 +110,33 @@ public class HomeManagerMySQL extends HomeManager {
 
 	@Override
 	public void addHome(UUID player, String name, Location location) {
-		Connection connection = null;
-		PreparedStatement statement = null;
-		ResultSet resultSet = null;
-		boolean exists = false;
+		try {
+			upsertHome(player, name, location);
+		} catch (SQLException e) {
+			Messaging.logSevere("Failed to add home location: " + e.getMessage(), this.plugin);
+		}
+	}
 
+	@Override
+	public void storeHome(UUID player, String name, Location location) throws IOException {
 		try {
-			connection = DriverManager.getConnection(this.url, this.user, this.password);
-			if (!connection.isValid(100)) {
-				throw new SQLException();
-			}
+			upsertHome(player, name, location);
+		} catch (SQLException e) {
+			throw new IOException(e.getMessage(), e);
+		}
+	}
 
-			statement = connection.prepareStatement("SELECT COUNT(*) FROM `homes` WHERE LOWER(`owner`) = LOWER(?) AND LOWER(`home`) = LOWER(?);");
-			statement.setString(1, player.toString());
-			statement.setString(2, name);
-			resultSet = statement.executeQuery();
-			if (resultSet.first()) {
-				exists = resultSet.getInt(1) > 0;
-			}
+	private void upsertHome(UUID player, String name, Location location) throws SQLException {
+		Connection connection = null;
+		PreparedStatement statement = null;
 
-			if (exists) {
-				statement = connection.prepareStatement("UPDATE `homes` SET `owner` = ?, `home` = ?, `world` = ?, `x` = ?, `y` = ?, `z` = ?, `pitch` = ?, `yaw` = ? WHERE LOWER(`owner`) = LOWER(?) AND LOWER(`home`) = LOWER(?)");
-
-				statement.setString(1, player.toString());
-				statement.setString(2, name);
-				statement.setString(3, location.getWorld().getName());
-				statement.setDouble(4, location.getX());
-				statement.setDouble(5, location.getY());
-				statement.setDouble(6, location.getZ());
-				statement.setFloat(7, location.getPitch());
-				statement.setFloat(8, location.getYaw());
-				statement.setString(9, player.toString());
-				statement.setString(10, name);
-				statement.execute();
-			} else {
-				statement = connection.prepareStatement("INSERT INTO `homes`(`owner`, `home`, `world`, `x`, `y`, `z`, `pitch`, `yaw`) VALUES (?, ?, ?, ?, ?, ?, ?, ?);");
-
-				statement.setString(1, player.toString());
-				statement.setString(2, name);
-				statement.setString(3, location.getWorld().getName());
-				statement.setDouble(4, location.getX());
-				statement.setDouble(5, location.getY());
-				statement.setDouble(6, location.getZ());
-				statement.setFloat(7, location.getPitch());
-				statement.setFloat(8, location.getYaw());
-				statement.execute();
-			}
+		try {
+			connection = this.pool.getConnection();
 
-		} catch (SQLException e) {
-			Messaging.logSevere("Failed to add home location: " + e.getMessage(), this.plugin);
+			statement = connection.prepareStatement(UPSERT_HOME);
+			setHomeParameters(statement, SchemaManager.toBytes(player), name, player.toString(), location.getWorld().getName(),
+					location.getX(), location.getY(), location.getZ(), location.getPitch(), location.getYaw());
+			statement.execute();
 		} finally {
 			if (statement != null) {
 				try {
@@ -188,21 +154,33 @@ public class HomeManagerMySQL extends HomeManager {
 
 	@Override
 	public void removeHome(UUID player, String name) {
+		try {
+			deleteHomeRow(player, name);
+		} catch (SQLException e) {
+			Messaging.logSevere("Failed to remove home location: " + e.getMessage(), this.plugin);
+		}
+	}
+
+	@Override
+	public void deleteHome(UUID player, String name) throws IOException {
+		try {
+			deleteHomeRow(player, name);
+		} catch (SQLException e) {
+			throw new IOException(e.getMessage(), e);
+		}
+	}
+
+	private void deleteHomeRow(UUID player, String name) throws SQLException {
 		Connection connection = null;
 		PreparedStatement statement = null;
 
 		try {
-			connection = DriverManager.getConnection(this.url, this.user, this.password);
-			if (!connection.isValid(100)) {
-				throw new SQLException();
-			}
+			connection = this.pool.getConnection();
 
-			statement = connection.prepareStatement("DELETE FROM `homes` WHERE LOWER(`owner`) = LOWER(?) AND LOWER(`home`) = LOWER(?);");
-			statement.setString(1, player.toString());
-			statement.setString(2, name);
+			statement = connection.prepareStatement("DELETE FROM `homes` WHERE `owner_id` = ? AND `home_key` = ?;");
+			statement.setBytes(1, SchemaManager.toBytes(player));
+			statement.setString(2, name.toLowerCase());
 			statement.execute();
-		} catch (SQLException e) {
-			Messaging.logSevere("Failed to remove home location: " + e.getMessage(), this.plugin);
 		} finally {
 			if (statement != null) {
 				try {
@@ -225,15 +203,12 @@ public class HomeManagerMySQL extends HomeManager {
 		ResultSet resultSet = null;
 
 		try {
-			connection = DriverManager.getConnection(this.url, this.user, this.password);
-			if (!connection.isValid(100)) {
-				throw new SQLException();
-			}
+			connection = this.pool.getConnection();
 
-			statement = connection.prepareStatement("SELECT COUNT(*) FROM `homes` WHERE LOWER(`owner`) = LOWER(?);");
-			statement.setString(1, player.toString());
+			statement = connection.prepareStatement("SELECT COUNT(*) FROM `homes` WHERE `owner_id` = ?;");
+			statement.setBytes(1, SchemaManager.toBytes(player));
 			resultSet = statement.executeQuery();
-			if (resultSet.first()) {
+			if (resultSet.next()) {
 				return resultSet.getInt(1) > 0;
 			}
 		} catch (SQLException e) {
@@ -268,15 +243,12 @@ public class HomeManagerMySQL extends HomeManager {
 		ResultSet resultSet = null;
 
 		try {
-			connection = DriverManager.getConnection(this.url, this.user, this.password);
-			if (!connection.isValid(100)) {
-				throw new SQLException();
-			}
+			connection = this.pool.getConnection();
 
-			statement = connection.prepareStatement("SELECT COUNT(*) FROM `homes` WHERE LOWER(`owner`) = LOWER(?);");
-			statement.setString(1, player.toString());
+			statement = connection.prepareStatement("SELECT COUNT(*) FROM `homes` WHERE `owner_id` = ?;");
+			statement.setBytes(1, SchemaManager.toBytes(player));
 			resultSet = statement.executeQuery();
-			if (resultSet.first()) {
+			if (resultSet.next()) {
 				return resultSet.getInt(1);
 			}
 		} catch (SQLException e) {
@@ -306,35 +278,57 @@ public class HomeManagerMySQL extends HomeManager {
 
 	@Override
 	public ArrayList<HomeEntry> listUserHomes(UUID player) {
+		return listUserHomes(player, 0, -1);
+	}
+
+	@Override
+	public ArrayList<HomeEntry> listUserHomes(UUID player, int offset, int limit) {
+		try {
+			return queryUserHomes(player, offset, limit);
+		} catch (SQLException e) {
+			Messaging.logSevere("Failed to get all home locations for player: " + e.getMessage(), this.plugin);
+			return new ArrayList<HomeEntry>();
+		}
+	}
+
+	@Override
+	public ArrayList<HomeEntry> loadUserHomes(UUID player) throws IOException {
+		try {
+			return queryUserHomes(player, 0, -1);
+		} catch (SQLException e) {
+			throw new IOException(e.getMessage(), e);
+		}
+	}
+
+	private ArrayList<HomeEntry> queryUserHomes(UUID player, int offset, int limit) throws SQLException {
 		Connection connection = null;
 		PreparedStatement statement = null;
 		ResultSet resultSet = null;
 		ArrayList<HomeEntry> output = new ArrayList<HomeEntry> ();
 
 		try {
-			connection = DriverManager.getConnection(this.url, this.user, this.password);
-			if (!connection.isValid(100)) {
-				throw new SQLException();
-			}
+			connection = this.pool.getConnection();
 
-			statement = connection.prepareStatement("SELECT * FROM `homes` WHERE LOWER(`owner`) = LOWER(?);");
-			statement.setString(1, player.toString());
+			if (limit < 0) {
+				statement = connection.prepareStatement("SELECT * FROM `homes` WHERE `owner_id` = ? ORDER BY `home_key`;");
+			} else {
+				statement = connection.prepareStatement("SELECT * FROM `homes` WHERE `owner_id` = ? ORDER BY `home_key` LIMIT ? OFFSET ?;");
+				statement.setInt(2, limit);
+				statement.setInt(3, Math.max(0, offset));
+			}
+			statement.setBytes(1, SchemaManager.toBytes(player));
 			resultSet = statement.executeQuery();
-			if (resultSet.first()) {
-				do {
-					output.add(new HomeEntry(UUID.fromString(resultSet.getString("owner")),
-							resultSet.getString("home"), 
-							resultSet.getString("world"), 
-							resultSet.getDouble("x"), 
-							resultSet.getDouble("y"), 
-							resultSet.getDouble("z"), 
-							resultSet.getFloat("yaw"), 
-							resultSet.getFloat("pitch")));
-				} while (resultSet.next());
+			while (resultSet.next()) {
+				output.add(new HomeEntry(player,
+						resultSet.getString("home"), 
+						resultSet.getString("world"), 
+						resultSet.getDouble("x"), 
+						resultSet.getDouble("y"), 
+						resultSet.getDouble("z"), 
+						resultSet.getFloat("pitch"), 
+						resultSet.getFloat("yaw")));
 			}
 			
-		} catch (SQLException e) {
-			Messaging.logSevere("Failed to get all home locations for player: " + e.getMessage(), this.plugin);
 		} finally {
 			if (resultSet != null) {
 				try {
@@ -361,83 +355,41 @@ public class HomeManagerMySQL extends HomeManager {
 	@Override
 	public void importHomes(ArrayList<HomeEntry> homes, boolean overwrite) {
 		Connection connection = null;
-		PreparedStatement statementExists = null;
-		PreparedStatement statementInsert = null;
-		PreparedStatement statementUpdate = null;
-		ResultSet resultSet = null;
-		boolean recordExists;
+		PreparedStatement statement = null;
+		int pending = 0;
 
 		try {
-			connection = DriverManager.getConnection(this.url, this.user, this.password);
-			if (!connection.isValid(100)) {
-				throw new SQLException();
-			}
+			connection = this.pool.getConnection();
+			connection.setAutoCommit(false);
+
+			statement = connection.prepareStatement(overwrite ? UPSERT_HOME : INSERT_HOME_IGNORE);
 
-			statementExists = connection.prepareStatement("SELECT COUNT(*) FROM `homes` WHERE LOWER(`owner`) = LOWER(?) AND LOWER(`home`) = LOWER(?);");
-			statementInsert = connection.prepareStatement("INSERT INTO `homes`(`owner`, `home`, `world`, `x`, `y`, `z`, `pitch`, `yaw`) VALUES (?, ?, ?, ?, ?, ?, ?, ?);");
-			statementUpdate = connection.prepareStatement("UPDATE `homes` SET `owner` = ?, `home` = ?, `world` = ?, `x` = ?, `y` = ?, `z` = ?, `pitch` = ?, `yaw` = ? WHERE LOWER(`owner`) = LOWER(?) AND LOWER(`home`) = LOWER(?);");
-		
 			for (HomeEntry thisEntry : homes) {
-				// Determine if entry exists.
-				recordExists = false;
-				statementExists.setString(1,  thisEntry.getOwner());
-				statementExists.setString(2,  thisEntry.getHomeName());
-				resultSet = statementExists.executeQuery();
-				if (resultSet.first()) {
-					recordExists = resultSet.getInt(1) > 0;
-				}
-				resultSet.close();
-				resultSet = null;
-				
-				// Save the entry, if required.
-				if (recordExists) {
-					if (overwrite) {
-						statementUpdate.setString(1, thisEntry.getOwner());
-						statementUpdate.setString(2, thisEntry.getHomeName());
-						statementUpdate.setString(3, thisEntry.getWorld());
-						statementUpdate.setDouble(4, thisEntry.getX());
-						statementUpdate.setDouble(5, thisEntry.getY());
-						statementUpdate.setDouble(6, thisEntry.getZ());
-						statementUpdate.setFloat(7, thisEntry.getPitch());
-						statementUpdate.setFloat(8, thisEntry.getYaw());
-						statementUpdate.setString(9, thisEntry.getOwner());
-						statementUpdate.setString(10, thisEntry.getHomeName());
-						statementUpdate.execute();
-					}
-				} else {
-					statementInsert.setString(1, thisEntry.getOwner());
-					statementInsert.setString(2, thisEntry.getHomeName());
-					statementInsert.setString(3, thisEntry.getWorld());
-					statementInsert.setDouble(4, thisEntry.getX());
-					statementInsert.setDouble(5, thisEntry.getY());
-					statementInsert.setDouble(6, thisEntry.getZ());
-					statementInsert.setFloat(7, thisEntry.getPitch());
-					statementInsert.setFloat(8, thisEntry.getYaw());
-					statementInsert.execute();
+				setHomeParameters(statement, SchemaManager.toBytes(UUID.fromString(thisEntry.getOwner())), thisEntry.getHomeName(), thisEntry.getOwner().toLowerCase(),
+						thisEntry.getWorld(), thisEntry.getX(), thisEntry.getY(), thisEntry.getZ(), thisEntry.getPitch(), thisEntry.getYaw());
+				statement.addBatch();
+
+				if (++pending >= this.batchSize) {
+					statement.executeBatch();
+					pending = 0;
 				}
 			}
 
+			if (pending > 0) {
+				statement.executeBatch();
+			}
+
+			connection.commit();
 		} catch (SQLException e) {
 			Messaging.logSevere("Failed to import home locations: " + e.getMessage(), this.plugin);
 		} finally {
-			if (resultSet != null) {
-				try {
-					resultSet.close();
-				} catch (SQLException ignored) {} // Eat errors
-			}
-
-			if (statementExists != null) {
-				try {
-					statementExists.close();
-				} catch (SQLException ignored) {} // Eat errors
-			}
-
-			if (statementInsert != null) {
+			if (statement != null) {
 				try {
-					statementInsert.close();
+					statement.close();
 				} catch (SQLException ignored) {} // Eat errors
 			}
 
+			// Returning the connection rolls back anything left uncommitted.
 			if (connection != null) {
 				try {
 					connection.close();
@@ -445,4 +397,18 @@ public class HomeManagerMySQL extends HomeManager {
 			}
 		}
 	}
+
+	private static void setHomeParameters(PreparedStatement statement, byte[] ownerId, String name, String owner, String world,
+			double x, double y, double z, float pitch, float yaw) throws SQLException {
+		statement.setBytes(1, ownerId);
+		statement.setString(2, name.toLowerCase());
+		statement.setString(3, owner);
+		statement.setString(4, name);
+		statement.setString(5, world);
+		statement.setDouble(6, x);
+		statement.setDouble(7, y);
+		statement.setDouble(8, z);
+		statement.setFloat(9, pitch);
+		statement.setFloat(10, yaw);
+	}
 }
@@ -0,0 +1,180 @@
+package me.thefatdemon.multihome.data.home;
+
+import me.thefatdemon.multihome.LatencyHistogram;
+import me.thefatdemon.multihome.MultiHome;
+import me.thefatdemon.multihome.Timings;
+import org.bukkit.Location;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.UUID;
+
+/**
+ * Records the latency of every call to another HomeManager in Timings, under "home.<backend>.<call>".
+ * Only installed while timings are enabled.
+ */
+public class TimedHomeManager extends HomeManager {
+	private final HomeManager homes;
+
+	private final LatencyHistogram clearHomes;
+	private final LatencyHistogram getHome;
+	private final LatencyHistogram addHome;
+	private final LatencyHistogram removeHome;
+	private final LatencyHistogram getUserExists;
+	private final LatencyHistogram getUserHomeCount;
+	private final LatencyHistogram listUserHomes;
+	private final LatencyHistogram importHomes;
+
+	/**
+	 * @param plugin The plug-in.
+	 * @param homes Home database to time.
+	 * @param backend Name of the storage method, used in the histogram names.
+	 */
+	public TimedHomeManager(MultiHome plugin, HomeManager homes, String backend) {
+		super(plugin);
+
+		this.homes = homes;
+
+		String prefix = "home." + backend + ".";
+		this.clearHomes = Timings.get(prefix + "clearHomes");
+		this.getHome = Timings.get(prefix + "getHome");
+		this.addHome = Timings.get(prefix + "addHome");
+		this.removeHome = Timings.get(prefix + "removeHome");
+		this.getUserExists = Timings.get(prefix + "getUserExists");
+		this.getUserHomeCount = Timings.get(prefix + "getUserHomeCount");
+		this.listUserHomes = Timings.get(prefix + "listUserHomes");
+		this.importHomes = Timings.get(prefix + "importHomes");
+	}
+
+	/**
+	 * @return HomeManager The home database being timed.
+	 */
+	public HomeManager getDatabase() {
+		return this.homes;
+	}
+
+	@Override
+	public void shutdown() {
+		this.homes.shutdown();
+	}
+
+	@Override
+	public void clearHomes() {
+		long start = System.nanoTime();
+		try {
+			this.homes.clearHomes();
+		} finally {
+			this.clearHomes.record(System.nanoTime() - start);
+		}
+	}
+
+	@Override
+	public HomeEntry getHome(UUID uuid, String name) {
+		long start = System.nanoTime();
+		try {
+			return this.homes.getHome(uuid, name);
+		} finally {
+			this.getHome.record(System.nanoTime() - start);
+		}
+	}
+
+	@Override
+	public void addHome(UUID uuid, String name, Location location) {
+		long start = System.nanoTime();
+		try {
+			this.homes.addHome(uuid, name, location);
+		} finally {
+			this.addHome.record(System.nanoTime() - start);
+		}
+	}
+
+	@Override
+	public void storeHome(UUID uuid, String name, Location location) throws IOException {
+		long start = System.nanoTime();
+		try {
+			this.homes.storeHome(uuid, name, location);
+		} finally {
+			this.addHome.record(System.nanoTime() - start);
+		}
+	}
+
+	@Override
+	public void removeHome(UUID player, String name) {
+		long start = System.nanoTime();
+		try {
+			this.homes.removeHome(player, name);
+		} finally {
+			this.removeHome.record(System.nanoTime() - start);
+		}
+	}
+
+	@Override
+	public void deleteHome(UUID player, String name) throws IOException {
+		long start = System.nanoTime();
+		try {
+			this.homes.deleteHome(player, name);
+		} finally {
+			this.removeHome.record(System.nanoTime() - start);
+		}
+	}
+
+	@Override
+	public boolean getUserExists(UUID player) {
+		long start = System.nanoTime();
+		try {
+			return this.homes.getUserExists(player);
+		} finally {
+			this.getUserExists.record(System.nanoTime() - start);
+		}
+	}
+
+	@Override
+	public int getUserHomeCount(UUID player) {
+		long start = System.nanoTime();
+		try {
+			return this.homes.getUserHomeCount(player);
+		} finally {
+			this.getUserHomeCount.record(System.nanoTime() - start);
+		}
+	}
+
+	@Override
+	public ArrayList<HomeEntry> listUserHomes(UUID player) {
+		long start = System.nanoTime();
+		try {
+			return this.homes.listUserHomes(player);
+		} finally {
+			this.listUserHomes.record(System.nanoTime() - start);
+		}
+	}
+
+	@Override
+	public ArrayList<HomeEntry> listUserHomes(UUID player, int offset, int limit) {
+		long start = System.nanoTime();
+		try {
+			return this.homes.listUserHomes(player, offset, limit);
+		} finally {
+			this.listUserHomes.record(System.nanoTime() - start);
+		}
+	}
+
+	@Override
+	public ArrayList<HomeEntry> loadUserHomes(UUID player) throws IOException {
+		long start = System.nanoTime();
+		try {
+			return this.homes.loadUserHomes(player);
+		} finally {
+			this.listUserHomes.record(System.nanoTime() - start);
+		}
+	}
+
+	@Override
+	public void importHomes(ArrayList<HomeEntry> homes, boolean overwrite) {
+		long start = System.nanoTime();
+		try {
+			this.homes.importHomes(homes, overwrite);
+		} finally {
+			this.importHomes.record(System.nanoTime() - start);
+		}
+	}
+}
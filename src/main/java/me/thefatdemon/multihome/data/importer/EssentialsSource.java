@@ -0,0 +1,126 @@
+package me.thefatdemon.multihome.data.importer;
+
+import me.thefatdemon.multihome.data.home.HomeEntry;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.YamlConfiguration;
+
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Reads homes from Essentials userdata files, one file at a time.
+ */
+public class EssentialsSource extends HomeSource {
+	private final File[] userFiles;
+	private final ArrayDeque<HomeEntry> pending = new ArrayDeque<HomeEntry>(); // Homes read from the current file.
+	private int nextFile = 0;
+
+	/**
+	 * @param userdataDir Essentials userdata directory. A missing directory reads as empty.
+	 * @param players Online players by lower case name, from HomeSource.onlinePlayers.
+	 */
+	public EssentialsSource(File userdataDir, Map<String, UUID> players) {
+		super("Essentials", players);
+
+		File[] files = userdataDir.listFiles();
+		this.userFiles = files == null ? new File[0] : files;
+	}
+
+	/**
+	 * @return int Number of user files in the directory.
+	 */
+	public int getFileCount() {
+		return this.userFiles.length;
+	}
+
+	@Override
+	protected HomeEntry computeNext() {
+		while (this.pending.isEmpty()) {
+			if (this.nextFile >= this.userFiles.length) return endOfData();
+
+			File userFile = this.userFiles[this.nextFile++];
+			UUID owner = resolveOwner(fileOwnerName(userFile));
+
+			if (owner == null) {
+				skip();
+				continue;
+			}
+
+			skip(readUserFile(userFile, owner, this.pending));
+		}
+
+		return this.pending.poll();
+	}
+
+	@Override
+	public void close() {
+		this.pending.clear();
+		this.nextFile = this.userFiles.length;
+	}
+
+	/**
+	 * Resolves the owner of a userdata file from its name, which is a UUID or, in older Essentials versions, a player name.
+	 * @param players Online players by lower case name, from HomeSource.onlinePlayers.
+	 * @return UUID The owner, or null if it cannot be resolved.
+	 */
+	static UUID resolveFileOwner(File userFile, Map<String, UUID> players) {
+		return resolveOwner(fileOwnerName(userFile), players);
+	}
+
+	private static String fileOwnerName(File userFile) {
+		return userFile.getName().replaceAll("\\.yml", "");
+	}
+
+	/**
+	 * Parses one userdata file. Safe to call from several threads at once.
+	 * @param owner Owner of the file.
+	 * @param output Where to add the homes read.
+	 * @return int Number of entries that could not be read.
+	 */
+	static int readUserFile(File userFile, UUID owner, Collection<HomeEntry> output) {
+		int failed = 0;
+
+		try {
+			YamlConfiguration userConfig = new YamlConfiguration();
+			userConfig.load(userFile);
+
+			// Load old Essentials home format.
+			List<?> homeLocation = userConfig.getList("home");
+			if (homeLocation != null && !homeLocation.isEmpty()) {
+				try {
+					output.add(new HomeEntry(owner, "",
+							(String) homeLocation.get(5),
+							((Number) homeLocation.get(0)).doubleValue(),
+							((Number) homeLocation.get(1)).doubleValue(),
+							((Number) homeLocation.get(2)).doubleValue(),
+							((Number) homeLocation.get(4)).floatValue(),
+							((Number) homeLocation.get(3)).floatValue()));
+				} catch (Exception e) {
+					failed++;
+				}
+			}
+
+			// Load new Essentials home format.
+			ConfigurationSection homeWorlds = userConfig.getConfigurationSection("home.worlds");
+			if (homeWorlds != null) {
+				for (String homeWorld : homeWorlds.getKeys(false)) {
+					ConfigurationSection homeData = homeWorlds.getConfigurationSection(homeWorld);
+
+					if (homeData != null && homeData.getString("world") != null) {
+						output.add(new HomeEntry(owner, "", homeData.getString("world"),
+								homeData.getDouble("x", 0), homeData.getDouble("y", 0), homeData.getDouble("z", 0),
+								(float) homeData.getDouble("pitch", 0), (float) homeData.getDouble("yaw", 0)));
+					}
+				}
+			}
+		} catch (Exception e) {
+			failed++;
+		}
+
+		return failed;
+	}
+}
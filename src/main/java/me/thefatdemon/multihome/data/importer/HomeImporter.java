@@ -0,0 +1,172 @@
+package me.thefatdemon.multihome.data.importer;
+
+import me.thefatdemon.multihome.Messaging;
+import me.thefatdemon.multihome.MultiHome;
+import me.thefatdemon.multihome.data.home.HomeEntry;
+import me.thefatdemon.multihome.data.home.HomeKeyIndex;
+import me.thefatdemon.multihome.data.home.HomeManager;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.UUID;
+
+/**
+ * Streams homes from one or more sources into a HomeManager.
+ * Each home read is checked against a compact index of the (owner, name) keys seen so far,
+ * so the first copy of a home wins in constant time, and is then written out in batches
+ * through HomeManager.importHomes. Only the keys and one batch are held in memory.
+ * Progress is logged while the import runs. Not thread safe.
+ */
+public class HomeImporter {
+	public static final int DEFAULT_BATCH_SIZE = 1000;
+	private static final long PROGRESS_INTERVAL = 10000; // Milliseconds between progress log lines.
+
+	private final MultiHome plugin;
+	private final HomeManager homes;
+	private final boolean overwrite;
+	private final int batchSize;
+
+	private final HomeKeyIndex seen = new HomeKeyIndex();
+	private final ArrayList<HomeEntry> batch;
+
+	private long read = 0;
+	private long duplicates = 0;
+	private long imported = 0;
+
+	/**
+	 * @param plugin The plug-in, for logging.
+	 * @param homes Where to write imported homes.
+	 * @param overwrite True to overwrite homes that already exist in the manager.
+	 * @param batchSize Number of homes handed to importHomes at a time.
+	 */
+	public HomeImporter(MultiHome plugin, HomeManager homes, boolean overwrite, int batchSize) {
+		this.plugin = plugin;
+		this.homes = homes;
+		this.overwrite = overwrite;
+		this.batchSize = Math.max(1, batchSize);
+		this.batch = new ArrayList<HomeEntry>(this.batchSize);
+	}
+
+	/**
+	 * Reads every home from the source and writes the new ones out. Closes the source.
+	 * Homes already read from an earlier source on this importer are skipped as duplicates.
+	 * @return long Number of homes written from this source.
+	 */
+	public long importFrom(HomeSource source) {
+		long start = System.currentTimeMillis();
+		long nextProgress = start + PROGRESS_INTERVAL;
+		long importedBefore = this.imported;
+
+		Messaging.logInfo("Importing homes from " + source.getName() + "...", this.plugin);
+
+		try {
+			while (source.hasNext()) {
+				accept(source.next());
+
+				if (System.currentTimeMillis() >= nextProgress) {
+					Messaging.logInfo("Importing from " + source.getName() + ": " + progress(), this.plugin);
+					nextProgress = System.currentTimeMillis() + PROGRESS_INTERVAL;
+				}
+			}
+			flush();
+		} catch (UncheckedImportException e) {
+			flush();
+			Messaging.logSevere("Import from " + source.getName() + " stopped early. " + e.getMessage(), this.plugin);
+		} finally {
+			try {
+				source.close();
+			} catch (IOException ignored) {} // Eat errors
+		}
+
+		Messaging.logInfo("Finished importing from " + source.getName() + " in " + (System.currentTimeMillis() - start) + " ms: "
+				+ progress() + ", unreadable=" + source.getSkipped(), this.plugin);
+
+		return this.imported - importedBefore;
+	}
+
+	/**
+	 * Reads every home from the source into a list, dropping duplicates. Closes the source.
+	 * Holds the whole source in memory; use importFrom to write homes as they are read.
+	 */
+	public static ArrayList<HomeEntry> collect(HomeSource source) {
+		HomeKeyIndex seen = new HomeKeyIndex();
+		ArrayList<HomeEntry> output = new ArrayList<HomeEntry>();
+
+		try {
+			while (source.hasNext()) {
+				HomeEntry home = source.next();
+
+				if (markSeen(seen, home)) {
+					output.add(home);
+				}
+			}
+		} finally {
+			try {
+				source.close();
+			} catch (IOException ignored) {} // Eat errors
+		}
+
+		return output;
+	}
+
+	/**
+	 * @return long Total homes read by this importer.
+	 */
+	public long getRead() {
+		return this.read;
+	}
+
+	/**
+	 * @return long Total homes skipped because an earlier copy was already read.
+	 */
+	public long getDuplicates() {
+		return this.duplicates;
+	}
+
+	/**
+	 * @return long Total homes handed to the home manager.
+	 */
+	public long getImported() {
+		return this.imported;
+	}
+
+	private void accept(HomeEntry home) {
+		this.read++;
+
+		if (!markSeen(this.seen, home)) {
+			this.duplicates++;
+			return;
+		}
+
+		this.batch.add(home);
+		if (this.batch.size() >= this.batchSize) {
+			flush();
+		}
+	}
+
+	private void flush() {
+		if (this.batch.isEmpty()) return;
+
+		this.homes.importHomes(this.batch, this.overwrite);
+		this.imported += this.batch.size();
+		this.batch.clear();
+	}
+
+	private String progress() {
+		return "read=" + this.read + ", imported=" + this.imported + ", duplicates=" + this.duplicates;
+	}
+
+	/**
+	 * @return boolean True if the home's key had not been seen before.
+	 */
+	private static boolean markSeen(HomeKeyIndex seen, HomeEntry home) {
+		UUID owner = UUID.fromString(home.getOwner());
+		long most = owner.getMostSignificantBits();
+		long least = owner.getLeastSignificantBits();
+
+		if (seen.find(most, least, home.getHomeName()) >= 0) return false;
+
+		seen.insert(most, least, home.getHomeName());
+		return true;
+	}
+}
@@ -0,0 +1,83 @@
+package me.thefatdemon.multihome.data.importer;
+
+import com.google.common.collect.AbstractIterator;
+import me.thefatdemon.multihome.data.home.HomeEntry;
+import org.bukkit.Server;
+import org.bukkit.entity.Player;
+
+import java.io.Closeable;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Reads homes from another plug-in's data one at a time, so an import never holds more
+ * than the entry being read. Entries that cannot be parsed are counted and skipped.
+ * Sources must be closed once read. Owners stored by player name are looked up in a map of
+ * online players taken beforehand, so a source can be read from any thread.
+ */
+public abstract class HomeSource extends AbstractIterator<HomeEntry> implements Closeable {
+	private final String name;
+	private final Map<String, UUID> players;
+	private int skipped = 0;
+
+	/**
+	 * @param name Name of the data being read, for log messages.
+	 * @param players Online players by lower case name, from onlinePlayers.
+	 */
+	protected HomeSource(String name, Map<String, UUID> players) {
+		this.name = name;
+		this.players = players;
+	}
+
+	public String getName() {
+		return this.name;
+	}
+
+	/**
+	 * @return int Number of entries that could not be read.
+	 */
+	public int getSkipped() {
+		return this.skipped;
+	}
+
+	protected void skip() {
+		this.skipped++;
+	}
+
+	protected void skip(int count) {
+		this.skipped += count;
+	}
+
+	protected UUID resolveOwner(String owner) {
+		return resolveOwner(owner, this.players);
+	}
+
+	/**
+	 * Turns a UUID string or a player name into a UUID. Names only resolve for online players.
+	 * @param players Online players by lower case name, from onlinePlayers.
+	 * @return UUID The owner, or null if it cannot be resolved.
+	 */
+	static UUID resolveOwner(String owner, Map<String, UUID> players) {
+		try {
+			return UUID.fromString(owner);
+		} catch (IllegalArgumentException ignored) {
+			// Not a UUID. Fall back to the player name.
+		}
+
+		return players.get(owner.toLowerCase());
+	}
+
+	/**
+	 * Maps the names of the players online now to their UUIDs. Must be called on the primary thread.
+	 * @return Map Online players by lower case name.
+	 */
+	public static Map<String, UUID> onlinePlayers(Server server) {
+		HashMap<String, UUID> players = new HashMap<String, UUID>();
+
+		for (Player player : server.getOnlinePlayers()) {
+			players.put(player.getName().toLowerCase(), player.getUniqueId());
+		}
+		return players;
+	}
+}
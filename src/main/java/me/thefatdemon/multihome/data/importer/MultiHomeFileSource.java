@@ -0,0 +1,63 @@
+package me.thefatdemon.multihome.data.importer;
+
+import me.thefatdemon.multihome.data.home.HomeEntry;
+
+import java.io.*;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Reads a MultiHome homes.txt file.
+ */
+public class MultiHomeFileSource extends HomeSource {
+	private final BufferedReader reader;
+
+	/**
+	 * @param homesFile homes.txt to read. A missing file reads as empty.
+	 * @param players Online players by lower case name, from HomeSource.onlinePlayers.
+	 */
+	public MultiHomeFileSource(File homesFile, Map<String, UUID> players) throws IOException {
+		super("MultiHome file", players);
+		this.reader = homesFile.exists() ? new BufferedReader(new FileReader(homesFile)) : null;
+	}
+
+	@Override
+	protected HomeEntry computeNext() {
+		if (this.reader == null) return endOfData();
+
+		try {
+			String line;
+
+			while ((line = this.reader.readLine()) != null) {
+				line = line.trim();
+				if (line.startsWith("#") || line.length() == 0) continue;
+
+				String[] values = line.split(";");
+
+				try {
+					if (values.length == 7 || values.length == 8) {
+						UUID owner = resolveOwner(values[0]);
+
+						if (owner != null) {
+							return new HomeEntry(owner, values.length == 8 ? values[7].toLowerCase() : "", values[6],
+									Double.parseDouble(values[1]), Double.parseDouble(values[2]), Double.parseDouble(values[3]),
+									Float.parseFloat(values[4]), Float.parseFloat(values[5]));
+						}
+					}
+				} catch (Exception ignored) {
+					// This entry failed. Ignore and continue.
+				}
+				skip();
+			}
+		} catch (IOException e) {
+			throw new UncheckedImportException("Could not read the homes file", e);
+		}
+
+		return endOfData();
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (this.reader != null) this.reader.close();
+	}
+}
@@ -0,0 +1,77 @@
+package me.thefatdemon.multihome.data.importer;
+
+import me.thefatdemon.multihome.data.home.HomeEntry;
+
+import java.sql.*;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Reads the homes table of a MultiHome MySQL database, streaming rows instead of buffering the result.
+ */
+public class MultiHomeMySQLSource extends HomeSource {
+	private final Connection connection;
+	private final Statement statement;
+	private final ResultSet resultSet;
+
+	/**
+	 * @param players Online players by lower case name, from HomeSource.onlinePlayers.
+	 */
+	public MultiHomeMySQLSource(String url, String user, String pass, Map<String, UUID> players) throws SQLException {
+		super("MultiHome MySQL", players);
+
+		this.connection = DriverManager.getConnection(url, user, pass);
+
+		try {
+			// Forward only with Integer.MIN_VALUE makes Connector/J stream one row at a time.
+			this.statement = this.connection.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+			this.statement.setFetchSize(Integer.MIN_VALUE);
+			this.resultSet = this.statement.executeQuery("SELECT * FROM `homes`;");
+		} catch (SQLException e) {
+			try {
+				this.connection.close();
+			} catch (SQLException ignored) {} // Eat errors
+			throw e;
+		}
+	}
+
+	@Override
+	protected HomeEntry computeNext() {
+		try {
+			while (this.resultSet.next()) {
+				UUID owner = resolveOwner(this.resultSet.getString("owner"));
+
+				if (owner != null) {
+					return new HomeEntry(owner,
+							this.resultSet.getString("home").toLowerCase(),
+							this.resultSet.getString("world"),
+							this.resultSet.getDouble("x"),
+							this.resultSet.getDouble("y"),
+							this.resultSet.getDouble("z"),
+							this.resultSet.getFloat("pitch"),
+							this.resultSet.getFloat("yaw"));
+				}
+				skip();
+			}
+		} catch (SQLException e) {
+			throw new UncheckedImportException("Could not read the homes table", e);
+		}
+
+		return endOfData();
+	}
+
+	@Override
+	public void close() {
+		try {
+			this.resultSet.close();
+		} catch (SQLException ignored) {} // Eat errors
+
+		try {
+			this.statement.close();
+		} catch (SQLException ignored) {} // Eat errors
+
+		try {
+			this.connection.close();
+		} catch (SQLException ignored) {} // Eat errors
+	}
+}
@@ -0,0 +1,88 @@
+package me.thefatdemon.multihome.data.importer;
+
+import me.thefatdemon.multihome.data.home.HomeEntry;
+
+import java.io.*;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Reads homes from MultipleHomes home_<name>.txt files, one line at a time.
+ */
+public class MultipleHomesSource extends HomeSource {
+	private final File[] homeFiles;
+	private int nextFile = 0;
+	private BufferedReader reader = null;
+	private String homeName = "";
+
+	/**
+	 * @param homesDir MultipleHomes Homes directory. A missing directory reads as empty.
+	 * @param players Online players by lower case name, from HomeSource.onlinePlayers.
+	 */
+	public MultipleHomesSource(File homesDir, Map<String, UUID> players) {
+		super("MultipleHomes", players);
+
+		File[] files = homesDir.listFiles();
+		this.homeFiles = files == null ? new File[0] : files;
+	}
+
+	@Override
+	protected HomeEntry computeNext() {
+		try {
+			while (true) {
+				if (this.reader == null) {
+					if (this.nextFile >= this.homeFiles.length) return endOfData();
+
+					File homeFile = this.homeFiles[this.nextFile++];
+					String name = homeFile.getName().replaceAll("home\\_", "").replaceAll("\\.txt", "");
+					this.homeName = name.compareTo("0") == 0 ? "" : name.toLowerCase();
+					this.reader = new BufferedReader(new FileReader(homeFile));
+				}
+
+				String line = this.reader.readLine();
+				if (line == null) {
+					this.reader.close();
+					this.reader = null;
+					continue;
+				}
+
+				HomeEntry home = parseLine(line.trim());
+				if (home != null) return home;
+			}
+		} catch (IOException e) {
+			throw new UncheckedImportException("Could not read the MultipleHomes files", e);
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (this.reader != null) {
+			this.reader.close();
+			this.reader = null;
+		}
+		this.nextFile = this.homeFiles.length;
+	}
+
+	private HomeEntry parseLine(String line) {
+		if (!line.startsWith("~")) return null;
+
+		String[] split = line.split(":");
+		if (split.length != 2) return null;
+
+		try {
+			String[] values = split[1].split("_");
+			UUID owner = resolveOwner(split[0].substring(1));
+
+			if (owner != null) {
+				return new HomeEntry(owner, this.homeName, values[5],
+						Double.parseDouble(values[0]), Double.parseDouble(values[1]), Double.parseDouble(values[2]),
+						Float.parseFloat(values[4]), Float.parseFloat(values[3]));
+			}
+		} catch (Exception ignored) {
+			// This entry failed. Ignore and continue.
+		}
+
+		skip();
+		return null;
+	}
+}
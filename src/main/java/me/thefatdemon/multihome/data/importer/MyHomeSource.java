@@ -0,0 +1,89 @@
+package me.thefatdemon.multihome.data.importer;
+
+import me.thefatdemon.multihome.data.home.HomeEntry;
+
+import java.io.File;
+import java.sql.*;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Reads homes from a MyHome SQLite database.
+ */
+public class MyHomeSource extends HomeSource {
+	private Connection connection = null;
+	private Statement statement = null;
+	private ResultSet resultSet = null;
+
+	/**
+	 * @param databaseFile MyHome homes.db. A missing file, or a missing SQLite driver, reads as empty.
+	 * @param players Online players by lower case name, from HomeSource.onlinePlayers.
+	 */
+	public MyHomeSource(File databaseFile, Map<String, UUID> players) throws SQLException {
+		super("MyHome", players);
+
+		if (!databaseFile.exists()) return;
+
+		try {
+			Class.forName("org.sqlite.JDBC");
+		} catch (ClassNotFoundException e) {
+			return;
+		}
+
+		this.connection = DriverManager.getConnection("jdbc:sqlite:" + databaseFile.getAbsolutePath());
+
+		try {
+			this.statement = this.connection.createStatement();
+			this.resultSet = this.statement.executeQuery("SELECT * FROM homeTable");
+		} catch (SQLException e) {
+			close();
+			throw e;
+		}
+	}
+
+	@Override
+	protected HomeEntry computeNext() {
+		if (this.resultSet == null) return endOfData();
+
+		try {
+			while (this.resultSet.next()) {
+				UUID owner = resolveOwner(this.resultSet.getString("name"));
+
+				if (owner != null) {
+					return new HomeEntry(owner, "", this.resultSet.getString("world"),
+							this.resultSet.getDouble("x"), this.resultSet.getInt("y"), this.resultSet.getDouble("z"),
+							this.resultSet.getInt("pitch"), this.resultSet.getInt("yaw"));
+				}
+				skip();
+			}
+		} catch (SQLException e) {
+			throw new UncheckedImportException("Could not read the MyHome database", e);
+		}
+
+		return endOfData();
+	}
+
+	@Override
+	public void close() {
+		if (this.resultSet != null) {
+			try {
+				this.resultSet.close();
+			} catch (SQLException ignored) {} // Eat errors
+			this.resultSet = null;
+		}
+
+		if (this.statement != null) {
+			try {
+				this.statement.close();
+			} catch (SQLException ignored) {} // Eat errors
+			this.statement = null;
+		}
+
+		if (this.connection != null) {
+			try {
+				this.connection.close();
+			} catch (SQLException ignored) {} // Eat errors
+			this.connection = null;
+		}
+	}
+}
@@ -0,0 +1,207 @@
+package me.thefatdemon.multihome.data.importer;
+
+import me.thefatdemon.multihome.Messaging;
+import me.thefatdemon.multihome.MultiHome;
+import me.thefatdemon.multihome.data.home.HomeEntry;
+import me.thefatdemon.multihome.data.home.HomeManager;
+
+import java.io.File;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Imports Essentials userdata files across a fork-join pool.
+ * File owners are resolved before any work is forked, against a map of online players the
+ * caller took on the primary thread, and only one file is kept per owner. Workers parse ranges of
+ * files, drop homes already seen through a shared concurrent set, and hand what is left to a
+ * shared batch that is written through HomeManager.importHomes. Each owner's homes come from
+ * a single file, so the result does not depend on which worker finishes first.
+ */
+public class ParallelEssentialsImporter {
+	private static final int FILES_PER_TASK = 64; // Files one worker parses before splitting stops.
+	private static final long PROGRESS_INTERVAL = 10000; // Milliseconds between progress log lines.
+
+	private final MultiHome plugin;
+	private final HomeManager homes;
+	private final boolean overwrite;
+	private final Map<String, UUID> players;
+	private final int batchSize;
+	private final int threads;
+
+	private final Set<String> seen = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+	private final ArrayList<HomeEntry> batch; // Guarded by itself.
+
+	private final AtomicLong filesRead = new AtomicLong();
+	private final AtomicLong homesRead = new AtomicLong();
+	private final AtomicLong duplicates = new AtomicLong();
+	private final AtomicLong imported = new AtomicLong();
+	private final AtomicLong unreadable = new AtomicLong();
+	private final AtomicLong nextProgress = new AtomicLong();
+
+	/**
+	 * @param plugin The plug-in, for logging.
+	 * @param homes Where to write imported homes. Called from worker threads, one batch at a time.
+	 * @param overwrite True to overwrite homes that already exist in the manager.
+	 * @param players Online players by lower case name, from HomeSource.onlinePlayers.
+	 * @param batchSize Number of homes handed to importHomes at a time.
+	 * @param threads Number of worker threads.
+	 */
+	public ParallelEssentialsImporter(MultiHome plugin, HomeManager homes, boolean overwrite, Map<String, UUID> players, int batchSize, int threads) {
+		this.plugin = plugin;
+		this.homes = homes;
+		this.overwrite = overwrite;
+		this.players = players;
+		this.batchSize = Math.max(1, batchSize);
+		this.threads = Math.max(1, threads);
+		this.batch = new ArrayList<HomeEntry>(this.batchSize);
+	}
+
+	/**
+	 * Imports every userdata file in the directory and logs a throughput summary.
+	 * @param userdataDir Essentials userdata directory.
+	 * @return long Number of homes written.
+	 */
+	public long importFrom(File userdataDir) {
+		long start = System.currentTimeMillis();
+		File[] listed = userdataDir.listFiles();
+
+		if (listed == null || listed.length == 0) {
+			Messaging.logInfo("No Essentials userdata found to import.", this.plugin);
+			return 0;
+		}
+
+		// Sorted so the file kept for an owner with several files is always the same one.
+		Arrays.sort(listed);
+
+		ArrayList<File> files = new ArrayList<File>(listed.length);
+		ArrayList<UUID> owners = new ArrayList<UUID>(listed.length);
+		HashSet<UUID> resolved = new HashSet<UUID>();
+
+		for (File userFile : listed) {
+			UUID owner = EssentialsSource.resolveFileOwner(userFile, this.players);
+
+			if (owner == null) {
+				this.unreadable.incrementAndGet();
+				continue;
+			}
+			if (!resolved.add(owner)) {
+				this.duplicates.incrementAndGet();
+				continue;
+			}
+			files.add(userFile);
+			owners.add(owner);
+		}
+
+		Messaging.logInfo("Importing " + files.size() + " Essentials userdata files on " + this.threads + " threads...", this.plugin);
+		this.nextProgress.set(System.currentTimeMillis() + PROGRESS_INTERVAL);
+
+		ForkJoinPool pool = new ForkJoinPool(this.threads);
+		try {
+			pool.invoke(new ParseTask(files.toArray(new File[files.size()]), owners.toArray(new UUID[owners.size()]), 0, files.size()));
+		} catch (RuntimeException e) {
+			Messaging.logSevere("Essentials import stopped early: " + e.getMessage(), this.plugin);
+		} finally {
+			pool.shutdown();
+		}
+
+		synchronized (this.batch) {
+			flush();
+		}
+
+		double seconds = Math.max(1, System.currentTimeMillis() - start) / 1000.0;
+		Messaging.logInfo(String.format("Finished importing from Essentials in %.1f s: %s (%.0f files/s, %.0f homes/s)",
+				seconds, progress(), this.filesRead.get() / seconds, this.imported.get() / seconds), this.plugin);
+
+		return this.imported.get();
+	}
+
+	public long getImported() {
+		return this.imported.get();
+	}
+
+	public long getDuplicates() {
+		return this.duplicates.get();
+	}
+
+	private void accept(ArrayList<HomeEntry> parsed) {
+		ArrayList<HomeEntry> fresh = new ArrayList<HomeEntry>(parsed.size());
+
+		for (HomeEntry home : parsed) {
+			if (this.seen.add(home.getOwner() + ':' + home.getHomeName().toLowerCase())) {
+				fresh.add(home);
+			} else {
+				this.duplicates.incrementAndGet();
+			}
+		}
+
+		synchronized (this.batch) {
+			for (HomeEntry home : fresh) {
+				this.batch.add(home);
+				if (this.batch.size() >= this.batchSize) {
+					flush();
+				}
+			}
+		}
+
+		long now = System.currentTimeMillis();
+		long next = this.nextProgress.get();
+		if (now >= next && this.nextProgress.compareAndSet(next, now + PROGRESS_INTERVAL)) {
+			Messaging.logInfo("Importing from Essentials: " + progress(), this.plugin);
+		}
+	}
+
+	/**
+	 * Writes out the pending batch. Callers must hold the batch lock.
+	 */
+	private void flush() {
+		if (this.batch.isEmpty()) return;
+
+		this.homes.importHomes(this.batch, this.overwrite);
+		this.imported.addAndGet(this.batch.size());
+		this.batch.clear();
+	}
+
+	private String progress() {
+		return "files=" + this.filesRead.get() + ", read=" + this.homesRead.get() + ", imported=" + this.imported.get()
+				+ ", duplicates=" + this.duplicates.get() + ", unreadable=" + this.unreadable.get();
+	}
+
+	/**
+	 * Parses a range of files, splitting it in half until it is small enough.
+	 */
+	private class ParseTask extends RecursiveAction {
+		private final File[] files;
+		private final UUID[] owners;
+		private final int from;
+		private final int to;
+
+		ParseTask(File[] files, UUID[] owners, int from, int to) {
+			this.files = files;
+			this.owners = owners;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (this.to - this.from > FILES_PER_TASK) {
+				int middle = (this.from + this.to) >>> 1;
+				invokeAll(new ParseTask(this.files, this.owners, this.from, middle),
+						new ParseTask(this.files, this.owners, middle, this.to));
+				return;
+			}
+
+			ArrayList<HomeEntry> parsed = new ArrayList<HomeEntry>();
+			for (int index = this.from; index < this.to; index++) {
+				unreadable.addAndGet(EssentialsSource.readUserFile(this.files[index], this.owners[index], parsed));
+			}
+
+			filesRead.addAndGet(this.to - this.from);
+			homesRead.addAndGet(parsed.size());
+			accept(parsed);
+		}
+	}
+}
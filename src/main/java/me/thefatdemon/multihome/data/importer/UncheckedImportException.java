@@ -0,0 +1,10 @@
+package me.thefatdemon.multihome.data.importer;
+
+/**
+ * Thrown from a HomeSource when the data it reads fails part way through.
+ */
+public class UncheckedImportException extends RuntimeException {
+	public UncheckedImportException(String message, Throwable cause) {
+		super(message + ": " + cause.getMessage(), cause);
+	}
+}
@@ -1,6 +1,7 @@
 package me.thefatdemon.multihome.data.invite;
 
 import me.thefatdemon.multihome.MultiHome;
+import me.thefatdemon.multihome.Util;
 import org.bukkit.entity.Player;
 
 import java.util.ArrayList;
@@ -163,6 +164,17 @@ public abstract class InviteManager {
 	 * @return ArrayList<HomeInvite> containing list of invites.
 	 */
 	abstract public ArrayList<InviteEntry> listPlayerInvitesToMe(UUID target);
+
+	/**
+	 * Returns one page of the home locations the specified player may visit.
+	 * @param target Player to list invites for.
+	 * @param offset Number of invites to skip.
+	 * @param limit Maximum number of invites to return, or -1 for all remaining invites.
+	 * @return ArrayList<HomeInvite> containing list of invites.
+	 */
+	public ArrayList<InviteEntry> listPlayerInvitesToMe(UUID target, int offset, int limit) {
+		return Util.page(listPlayerInvitesToMe(target), offset, limit);
+	}
 	
 	/**
 	 * Returns a list of invites the owner has given to others.
@@ -179,6 +191,17 @@ public abstract class InviteManager {
 	 * @return ArrayList<HomeInvite> containing list of invites.
 	 */
 	abstract public ArrayList<InviteEntry> listPlayerInvitesToOthers(UUID owner);
+
+	/**
+	 * Returns one page of the invites the owner has given to others.
+	 * @param owner Player to list invites for.
+	 * @param offset Number of invites to skip.
+	 * @param limit Maximum number of invites to return, or -1 for all remaining invites.
+	 * @return ArrayList<HomeInvite> containing list of invites.
+	 */
+	public ArrayList<InviteEntry> listPlayerInvitesToOthers(UUID owner, int offset, int limit) {
+		return Util.page(listPlayerInvitesToOthers(owner), offset, limit);
+	}
 	
 	/**
 	 * Imports the list of invites passed.
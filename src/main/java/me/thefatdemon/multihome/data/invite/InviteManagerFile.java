@@ -1,8 +1,10 @@
 package me.thefatdemon.multihome.data.invite;
 
+import me.thefatdemon.multihome.IoWatchdog;
 import me.thefatdemon.multihome.Util;
 import me.thefatdemon.multihome.Messaging;
 import me.thefatdemon.multihome.MultiHome;
+import me.thefatdemon.multihome.data.ExpiryQueue;
 
 import java.io.*;
 import java.util.ArrayList;
@@ -17,30 +19,41 @@ import java.util.UUID;
 public class InviteManagerFile extends InviteManager {
     private File invitesFile;
 	private HashMap<String, ArrayList<InviteEntry>> inviteEntries = new HashMap<String, ArrayList<InviteEntry>>();
+	private HashMap<String, ArrayList<InviteEntry>> targetIndex = new HashMap<String, ArrayList<InviteEntry>>(); // Invites by target, "*" for everyone.
+	private final ExpiryQueue<InviteEntry> expiryQueue = new ExpiryQueue<InviteEntry>();
 	
 	public InviteManagerFile(MultiHome plugin) {
 		super(plugin);
 		this.invitesFile = new File(plugin.getDataFolder(), "invites.txt");
 		
 		loadInvites();
+
+		plugin.getServer().getScheduler().runTaskTimer(plugin, new Runnable() {
+			@Override
+			public void run() {
+				sweepExpired();
+			}
+		}, ExpiryQueue.SWEEP_INTERVAL, ExpiryQueue.SWEEP_INTERVAL);
 	}
 
 	@Override
 	public void clearInvites() {
 		this.inviteEntries.clear();
+		this.targetIndex.clear();
+		this.expiryQueue.clear();
 
 		saveInvites();
 	}
 
 	@Override
 	public InviteEntry getInvite(UUID owner, String home, UUID target) {
-		updateInviteExpiry();
+		long now = System.currentTimeMillis();
 
 		if (this.inviteEntries.containsKey(owner.toString())) {
 			ArrayList<InviteEntry> invites = this.inviteEntries.get(owner.toString());
 			
 			for (InviteEntry thisInvite : invites) {
-				if (thisInvite.getInviteHome().compareToIgnoreCase(home) == 0 && (thisInvite.getInviteTarget().compareToIgnoreCase("*") == 0 || thisInvite.getInviteTarget().compareToIgnoreCase(target.toString()) == 0)) {
+				if (!isExpired(thisInvite, now) && thisInvite.getInviteHome().compareToIgnoreCase(home) == 0 && (thisInvite.getInviteTarget().compareToIgnoreCase("*") == 0 || thisInvite.getInviteTarget().compareToIgnoreCase(target.toString()) == 0)) {
 					return thisInvite;
 				}
 			}
@@ -51,174 +64,182 @@ public class InviteManagerFile extends InviteManager {
 	
 	@Override
 	public void addInvite(UUID owner, String home, UUID target, Date expiry, String reason) {
-		boolean inviteSet = false;
+		InviteEntry thisInvite = findInvite(owner.toString(), home, target.toString());
 
-		ArrayList<InviteEntry> invites;
-		if (this.inviteEntries.containsKey(owner.toString())) {
-			invites = this.inviteEntries.get(owner.toString());
+		if (thisInvite != null) {
+			thisInvite.setInviteHome(home);
+			thisInvite.setInviteExpires(expiry);
+			thisInvite.setInviteReason(reason);
+			queueExpiry(thisInvite);
 		} else {
-			invites = new ArrayList<InviteEntry>();
+			putInvite(new InviteEntry(owner.toString(), home, target.toString(), expiry, reason));
 		}
 		
-		for (int index = 0; index < invites.size(); index++) {
-			InviteEntry thisInvite = invites.get(index);
-			if (thisInvite.getInviteTarget().compareToIgnoreCase(target.toString()) == 0 && thisInvite.getInviteHome().compareToIgnoreCase(home) == 0) {
-				thisInvite.setInviteSource(owner.toString());
-				thisInvite.setInviteHome(home);
-				thisInvite.setInviteTarget(target.toString());
-				thisInvite.setInviteExpires(expiry);
-				thisInvite.setInviteReason(reason);
-				invites.set(index, thisInvite);
-				inviteSet = true;
-			}
-		}
-		
-		if (!inviteSet) {
-			InviteEntry invite = new InviteEntry(owner.toString(), home, target.toString(), expiry, reason);
-			invites.add(invite);
-		}
-		
-		this.inviteEntries.put(owner.toString(), invites);
-		
-		updateInviteExpiry();
 		saveInvites();
 	}
 
 	@Override
 	public void removeInvite(UUID owner, String home, UUID target) {
 		if (this.inviteEntries.containsKey(owner.toString())) {
-			ArrayList<InviteEntry> playerInviteList = this.inviteEntries.get(owner.toString());
-			ArrayList<InviteEntry> removeList = new ArrayList<InviteEntry>();
-			
-			for (InviteEntry thisInvite : playerInviteList) {
-				if (thisInvite.getInviteHome().compareToIgnoreCase(home) == 0 && thisInvite.getInviteTarget().compareToIgnoreCase(target.toString()) == 0) {
-					removeList.add(thisInvite);
-				}
+			InviteEntry thisInvite;
+
+			while ((thisInvite = findInvite(owner.toString(), home, target.toString())) != null) {
+				deleteInvite(thisInvite);
 			}
-			
-			playerInviteList.removeAll(removeList);
-			
-			this.inviteEntries.put(owner.toString(), playerInviteList);
 
-			updateInviteExpiry();
 			saveInvites();
 		}
 	}
 
 	@Override
 	public ArrayList<InviteEntry> listPlayerInvitesToMe(UUID target) {
-		updateInviteExpiry();
-
 		ArrayList<InviteEntry> activeInvites = new ArrayList<InviteEntry>();
-		
-		for (Entry<String, ArrayList<InviteEntry>> thisEntry : this.inviteEntries.entrySet()) {
-			for (InviteEntry thisInvite : thisEntry.getValue()) {
-				if (thisInvite.getInviteTarget().compareToIgnoreCase("*") == 0 || thisInvite.getInviteTarget().compareToIgnoreCase(target.toString()) == 0) {
-					activeInvites.add(thisInvite);
-				}
-			}
-		}
+		long now = System.currentTimeMillis();
+
+		// Only this player's bucket and the wildcard bucket are read. Expired invites are skipped here
+		// and removed by the next sweep.
+		collectActive(this.targetIndex.get(target.toString()), now, activeInvites);
+		collectActive(this.targetIndex.get("*"), now, activeInvites);
 		
 		return activeInvites;
 	}
 
 	@Override
 	public ArrayList<InviteEntry> listPlayerInvitesToOthers(UUID owner) {
-		updateInviteExpiry();
+		ArrayList<InviteEntry> activeInvites = new ArrayList<InviteEntry>();
 
-		if (this.inviteEntries.containsKey(owner.toString())) {
-			return this.inviteEntries.get(owner.toString());
-		}
+		collectActive(this.inviteEntries.get(owner.toString()), System.currentTimeMillis(), activeInvites);
 
-		return new ArrayList<InviteEntry>();
+		return activeInvites;
 	}
 
 
 	@Override
 	public void importInvites(ArrayList<InviteEntry> invites, boolean overwrite) {
-		ArrayList<InviteEntry> playerInvites;
-
-		updateInviteExpiry();
-		
 		for (InviteEntry thisEntry : invites) {
-			// Get the ArrayList of invites for this player
-			if (this.inviteEntries.containsKey(thisEntry.getInviteSource().toLowerCase())) {
-				playerInvites = this.inviteEntries.get(thisEntry.getInviteSource().toLowerCase());
-			} else {
-				playerInvites = new ArrayList<InviteEntry>();
-			}
-
-			boolean inviteFound = false;
-			
-			for (int index = 0; index < playerInvites.size(); index++) {
-				InviteEntry thisInvite = playerInvites.get(index);
-				if (thisInvite.getInviteHome().compareToIgnoreCase(thisEntry.getInviteHome()) == 0 && thisInvite.getInviteTarget().compareToIgnoreCase(thisEntry.getInviteTarget()) == 0) {
-					// An existing home was found.
-					if (overwrite) {
-						thisInvite.setInviteSource(thisEntry.getInviteSource());
-						thisInvite.setInviteHome(thisEntry.getInviteHome());
-						thisInvite.setInviteTarget(thisEntry.getInviteTarget());
-						thisInvite.setInviteExpires(thisEntry.getInviteExpires());
-						thisInvite.setInviteReason(thisEntry.getInviteReason());
-						playerInvites.set(index, thisInvite);
-					}
-					
-					inviteFound = true;
+			InviteEntry thisInvite = findInvite(thisEntry.getInviteSource(), thisEntry.getInviteHome(), thisEntry.getInviteTarget());
+
+			if (thisInvite != null) {
+				// An existing invite was found.
+				if (overwrite) {
+					thisInvite.setInviteHome(thisEntry.getInviteHome());
+					thisInvite.setInviteExpires(thisEntry.getInviteExpires());
+					thisInvite.setInviteReason(thisEntry.getInviteReason());
+					queueExpiry(thisInvite);
 				}
+			} else {
+				// No existing invite found. Create new entry.
+				putInvite(new InviteEntry(thisEntry.getInviteSource(), thisEntry.getInviteHome(), thisEntry.getInviteTarget(), thisEntry.getInviteExpires(), thisEntry.getInviteReason()));
 			}
-			
-			if (!inviteFound) {
-				// No existing location found. Create new entry.
-				InviteEntry newInvite = new InviteEntry(thisEntry.getInviteSource(), thisEntry.getInviteHome(), thisEntry.getInviteTarget(), thisEntry.getInviteExpires(), thisEntry.getInviteReason());
-				playerInvites.add(newInvite);
-			}
-
-			// Replace the ArrayList in the homes HashMap
-			this.inviteEntries.remove(thisEntry.getInviteSource().toLowerCase());
-			this.inviteEntries.put(thisEntry.getInviteSource().toLowerCase(), playerInvites);
 		}
 
 		// Save
-		updateInviteExpiry();
 		saveInvites();
 	}
 
 	/**
-	 * Scans through the invites list, removing expired invites.
+	 * Finds an invite by owner, home and exact target (no wildcard matching).
 	 */
-	private void updateInviteExpiry() {
-		Date now = new Date();
+	private InviteEntry findInvite(String owner, String home, String target) {
+		ArrayList<InviteEntry> invites = this.inviteEntries.get(owner.toLowerCase());
 
-		// Remove expired invites.
-		for (Entry<String, ArrayList<InviteEntry>> entry : this.inviteEntries.entrySet()) {
-			ArrayList<InviteEntry> invites = entry.getValue();
-			ArrayList<InviteEntry> removeList = new ArrayList<InviteEntry>();
-			
+		if (invites != null) {
 			for (InviteEntry thisInvite : invites) {
-				if (thisInvite.getInviteExpires() != null) {
-					if (thisInvite.getInviteExpires().getTime() < now.getTime()) {
-						removeList.add(thisInvite);
-					}
+				if (thisInvite.getInviteHome().compareToIgnoreCase(home) == 0 && thisInvite.getInviteTarget().compareToIgnoreCase(target) == 0) {
+					return thisInvite;
 				}
 			}
-			
-			invites.removeAll(removeList);
+		}
 
-			this.inviteEntries.put(entry.getKey(), invites);
+		return null;
+	}
+
+	/**
+	 * Adds an invite to the owner list and the target index.
+	 */
+	private void putInvite(InviteEntry invite) {
+		String owner = invite.getInviteSource().toLowerCase();
+		String target = invite.getInviteTarget().toLowerCase();
+
+		ArrayList<InviteEntry> invites = this.inviteEntries.get(owner);
+		if (invites == null) {
+			invites = new ArrayList<InviteEntry>();
+			this.inviteEntries.put(owner, invites);
 		}
-		
-		// Remove empty users.
-		ArrayList<String> removeList = new ArrayList<String>();
-		for (Entry<String, ArrayList<InviteEntry>> entry : this.inviteEntries.entrySet()) {
-			ArrayList<InviteEntry> invites = entry.getValue();
-			
-			if (invites.size() == 0) {
-				removeList.add(entry.getKey());
+		invites.add(invite);
+
+		ArrayList<InviteEntry> targeted = this.targetIndex.get(target);
+		if (targeted == null) {
+			targeted = new ArrayList<InviteEntry>();
+			this.targetIndex.put(target, targeted);
+		}
+		targeted.add(invite);
+
+		queueExpiry(invite);
+	}
+
+	/**
+	 * Removes an invite from the owner list and the target index.
+	 */
+	private void deleteInvite(InviteEntry invite) {
+		String owner = invite.getInviteSource().toLowerCase();
+		String target = invite.getInviteTarget().toLowerCase();
+
+		ArrayList<InviteEntry> invites = this.inviteEntries.get(owner);
+		if (invites != null) {
+			invites.remove(invite);
+			if (invites.isEmpty()) {
+				this.inviteEntries.remove(owner);
 			}
 		}
-		
-		for (String entry : removeList) {
-			this.inviteEntries.remove(entry);
+
+		ArrayList<InviteEntry> targeted = this.targetIndex.get(target);
+		if (targeted != null) {
+			targeted.remove(invite);
+			if (targeted.isEmpty()) {
+				this.targetIndex.remove(target);
+			}
+		}
+	}
+
+	private static void collectActive(ArrayList<InviteEntry> invites, long now, ArrayList<InviteEntry> output) {
+		if (invites == null) return;
+
+		for (InviteEntry thisInvite : invites) {
+			if (!isExpired(thisInvite, now)) {
+				output.add(thisInvite);
+			}
+		}
+	}
+
+	private static boolean isExpired(InviteEntry invite, long now) {
+		return invite.getInviteExpires() != null && invite.getInviteExpires().getTime() <= now;
+	}
+
+	private void queueExpiry(InviteEntry invite) {
+		if (invite.getInviteExpires() != null) {
+			this.expiryQueue.add(invite, invite.getInviteExpires().getTime());
+		}
+	}
+
+	/**
+	 * Removes expired invites. Only invites due to expire are looked at, and the file
+	 * is only rewritten if something was removed.
+	 */
+	private void sweepExpired() {
+		long now = System.currentTimeMillis();
+		boolean removed = false;
+
+		for (InviteEntry thisInvite : this.expiryQueue.pollExpired(now)) {
+			// Skip queue entries for invites that were since removed or given a later expiry.
+			if (isExpired(thisInvite, now) && findInvite(thisInvite.getInviteSource(), thisInvite.getInviteHome(), thisInvite.getInviteTarget()) == thisInvite) {
+				deleteInvite(thisInvite);
+				removed = true;
+			}
+		}
+
+		if (removed) {
+			saveInvites();
 		}
 	}
 	
@@ -226,6 +247,8 @@ public class InviteManagerFile extends InviteManager {
 	 * Save invites list to file. Clears the saveRequired flag.
 	 */
 	private void saveInvites() {
+		long ioStart = IoWatchdog.start();
+
 		try {
 			FileWriter fstream = new FileWriter(this.invitesFile);
 			BufferedWriter writer = new BufferedWriter(fstream);
@@ -256,6 +279,8 @@ public class InviteManagerFile extends InviteManager {
 			writer.close();
 		} catch (Exception e) {
 			Messaging.logSevere("Could not write the invites file.", this.plugin);
+		} finally {
+			IoWatchdog.end("invites.txt write", ioStart);
 		}
 	}
 
@@ -286,6 +311,8 @@ public class InviteManagerFile extends InviteManager {
 				String line = reader.readLine().trim();
 	
 				this.inviteEntries.clear();
+				this.targetIndex.clear();
+				this.expiryQueue.clear();
 				
 				while (line != null) {
 					if (!line.startsWith("#") && line.length() > 0) {
@@ -293,30 +320,9 @@ public class InviteManagerFile extends InviteManager {
 						
 						thisInvite = parseInviteLine(line);
 						
-						if (thisInvite != null) {
-							ArrayList<InviteEntry> inviteList;
-	
-							// Find HashMap entry for player
-							if (!this.inviteEntries.containsKey(thisInvite.getInviteSource().toLowerCase())) {
-								inviteList = new ArrayList<InviteEntry>();
-							} else {
-								// Player not exist. Create dummy entry.
-								inviteList = this.inviteEntries.get(thisInvite.getInviteSource().toLowerCase());
-							}
-							
-							// Don't save if this is a duplicate entry.
-							boolean save = true;
-							for (InviteEntry invite : inviteList) {
-								if (invite.getInviteSource().compareToIgnoreCase(thisInvite.getInviteSource()) == 0) {
-									save = false;
-								}
-							}
-							
-							if (save) {
-								inviteList.add(thisInvite);
-							}
-	
-							this.inviteEntries.put(thisInvite.getInviteSource().toLowerCase(), inviteList);
+						// Don't save if this is a duplicate entry.
+						if (thisInvite != null && findInvite(thisInvite.getInviteSource(), thisInvite.getInviteHome(), thisInvite.getInviteTarget()) == null) {
+							putInvite(thisInvite);
 						}
 					}
 	
@@ -2,7 +2,8 @@ package me.thefatdemon.multihome.data.invite;
 
 import me.thefatdemon.multihome.Messaging;
 import me.thefatdemon.multihome.MultiHome;
-import me.thefatdemon.multihome.Settings;
+import me.thefatdemon.multihome.data.ConnectionPool;
+import me.thefatdemon.multihome.data.SchemaManager;
 import me.thefatdemon.multihome.*;
 
 import java.sql.*;
@@ -12,30 +13,19 @@ import java.util.UUID;
 
 
 public class InviteManagerMySQL extends InviteManager {
-	private final String url; // Database URL to connect to.
-	private final String user; // MySQL user to connect as.
-	private final String password; // Password for MySQL user.
+	// No trailing semicolons, so the driver can rewrite batches into multi-row inserts.
+	private static final String INVITE_COLUMNS = "`invites` (`source_id`, `home_key`, `target_key`, `source`, `home`, `target`, `expires`, `reason`) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+	private static final String UPSERT_INVITE = "INSERT INTO " + INVITE_COLUMNS + " ON DUPLICATE KEY UPDATE `home` = VALUES(`home`), `expires` = VALUES(`expires`), `reason` = VALUES(`reason`)";
+	private static final String INSERT_INVITE_IGNORE = "INSERT IGNORE INTO " + INVITE_COLUMNS;
 
-	public InviteManagerMySQL(MultiHome plugin) {
-		super(plugin);
+	private final ConnectionPool pool; // Shared database connections.
+	private final int batchSize; // Rows sent per round trip when importing.
 
-		// Save settings
-		this.url = Settings.getDataStoreSettingString("sql", "url");
-		this.user = Settings.getDataStoreSettingString("sql", "user");
-		this.password = Settings.getDataStoreSettingString("sql", "pass");
+	public InviteManagerMySQL(MultiHome plugin, ConnectionPool pool) {
+		super(plugin);
 
-		// Test connection
-		try {
-			Connection connection = DriverManager.getConnection(this.url, this.user, this.password);
-			if (!connection.isValid(100)) {
-				throw new SQLException();
-			} else {
-				connection.close();
-			}
-		} catch (SQLException e) {
-			Messaging.logSevere("Failed to contact MySQL server!", this.plugin);
-			e.printStackTrace();
-		}
+		this.pool = pool;
+		this.batchSize = Math.max(1, Settings.getDataStoreSettingInt("sql", "batchSize", 1000));
 	}
 
 	@Override
@@ -44,10 +34,7 @@ public class InviteManagerMySQL extends InviteManager {
 		PreparedStatement statement = null;
 
 		try {
-			connection = DriverManager.getConnection(this.url, this.user, this.password);
-			if (!connection.isValid(100)) {
-				throw new SQLException();
-			}
+			connection = this.pool.getConnection();
 
 			statement = connection.prepareStatement("DELETE FROM `invites`;");
 			statement.execute();
@@ -76,19 +63,16 @@ public class InviteManagerMySQL extends InviteManager {
 		ResultSet resultSet = null;
 
 		try {
-			connection = DriverManager.getConnection(this.url, this.user, this.password);
-			if (!connection.isValid(100)) {
-				throw new SQLException();
-			}
+			connection = this.pool.getConnection();
 
 			updateInviteExpiry(connection);
 
-			statement = connection.prepareStatement("SELECT * FROM `invites` WHERE LOWER(`source`) = LOWER(?) AND LOWER(`home`) = LOWER(?) AND (`target` = '*' OR LOWER(`target`) = LOWER(?));");
-			statement.setString(1, owner.toString());
-			statement.setString(2, home);
+			statement = connection.prepareStatement("SELECT * FROM `invites` WHERE `source_id` = ? AND `home_key` = ? AND `target_key` IN ('*', ?);");
+			statement.setBytes(1, SchemaManager.toBytes(owner));
+			statement.setString(2, home.toLowerCase());
 			statement.setString(3, target.toString());
 			resultSet = statement.executeQuery();
-			if (resultSet.first()) {
+			if (resultSet.next()) {
 				try {
 					return new InviteEntry(resultSet.getString("source"),
 										   resultSet.getString("home"),
@@ -129,54 +113,13 @@ public class InviteManagerMySQL extends InviteManager {
 	public void addInvite(UUID owner, String home, UUID target, Date expiry, String reason) {
 		Connection connection = null;
 		PreparedStatement statement = null;
-		ResultSet resultSet = null;
-		boolean exists = false;
 
 		try {
-			connection = DriverManager.getConnection(this.url, this.user, this.password);
-			if (!connection.isValid(100)) {
-				throw new SQLException();
-			}
-
-			statement = connection.prepareStatement("SELECT COUNT(*) FROM `invites` WHERE LOWER(`source`) = LOWER(?) AND LOWER(`home`) = LOWER(?) AND LOWER(`target`) = LOWER(?);");
-			statement.setString(1, owner.toString());
-			statement.setString(2, home);
-			statement.setString(3, target.toString());
-			resultSet = statement.executeQuery();
-			if (resultSet.first()) {
-				exists = resultSet.getInt(1) > 0;
-			}
-
-			if (exists) {
-				statement = connection.prepareStatement("UPDATE `invites` SET `source` = ?, `home` = ?, `target` = ?, `expires` = ?, `reason` = ? WHERE LOWER(`source`) = LOWER(?) AND LOWER(`home`) = LOWER(?) AND LOWER(`target`) = LOWER(?)");
+			connection = this.pool.getConnection();
 
-				statement.setString(1, owner.toString());
-				statement.setString(2, home);
-				statement.setString(3, target.toString());
-				if (expiry == null) {
-					statement.setNull(4, Types.TIMESTAMP);
-				} else {
-					statement.setTimestamp(4, new Timestamp(expiry.getTime()));
-				}
-				statement.setString(5, reason);
-				statement.setString(6, owner.toString());
-				statement.setString(7, home);
-				statement.setString(8, target.toString());
-				statement.execute();
-			} else {
-				statement = connection.prepareStatement("INSERT INTO `invites` (`source`, `home`, `target`, `expires`, `reason`) VALUES (?, ?, ?, ?, ?);");
-
-				statement.setString(1, owner.toString());
-				statement.setString(2, home);
-				statement.setString(3, target.toString());
-				if (expiry == null) {
-					statement.setNull(4, Types.TIMESTAMP);
-				} else {
-					statement.setTimestamp(4, new Timestamp(expiry.getTime()));
-				}
-				statement.setString(5, reason);
-				statement.execute();
-			}
+			statement = connection.prepareStatement(UPSERT_INVITE);
+			setInviteParameters(statement, SchemaManager.toBytes(owner), owner.toString(), home, target.toString(), expiry, reason);
+			statement.execute();
 
 			updateInviteExpiry(connection);
 
@@ -204,14 +147,11 @@ public class InviteManagerMySQL extends InviteManager {
 		PreparedStatement statement = null;
 
 		try {
-			connection = DriverManager.getConnection(this.url, this.user, this.password);
-			if (!connection.isValid(100)) {
-				throw new SQLException();
-			}
+			connection = this.pool.getConnection();
 
-			statement = connection.prepareStatement("DELETE FROM `invites` WHERE LOWER(`source`) = LOWER(?) AND LOWER(`home`) = LOWER(?) AND LOWER(`target`) = LOWER(?);");
-			statement.setString(1, owner.toString());
-			statement.setString(2, home);
+			statement = connection.prepareStatement("DELETE FROM `invites` WHERE `source_id` = ? AND `home_key` = ? AND `target_key` = ?;");
+			statement.setBytes(1, SchemaManager.toBytes(owner));
+			statement.setString(2, home.toLowerCase());
 			statement.setString(3, target.toString());
 			statement.execute();
 
@@ -237,30 +177,36 @@ public class InviteManagerMySQL extends InviteManager {
 
 	@Override
 	public ArrayList<InviteEntry> listPlayerInvitesToMe(UUID target) {
+		return listPlayerInvitesToMe(target, 0, -1);
+	}
+
+	@Override
+	public ArrayList<InviteEntry> listPlayerInvitesToMe(UUID target, int offset, int limit) {
 		Connection connection = null;
 		PreparedStatement statement = null;
 		ResultSet resultSet = null;
 		ArrayList<InviteEntry> output = new ArrayList<InviteEntry> ();
 
 		try {
-			connection = DriverManager.getConnection(this.url, this.user, this.password);
-			if (!connection.isValid(100)) {
-				throw new SQLException();
-			}
+			connection = this.pool.getConnection();
 
 			updateInviteExpiry(connection);
 
-			statement = connection.prepareStatement("SELECT * FROM `invites` WHERE LOWER(`target`) = LOWER(?);");
+			if (limit < 0) {
+				statement = connection.prepareStatement("SELECT * FROM `invites` WHERE `target_key` = ? ORDER BY `home_key`, `source_id`;");
+			} else {
+				statement = connection.prepareStatement("SELECT * FROM `invites` WHERE `target_key` = ? ORDER BY `home_key`, `source_id` LIMIT ? OFFSET ?;");
+				statement.setInt(2, limit);
+				statement.setInt(3, Math.max(0, offset));
+			}
 			statement.setString(1, target.toString());
 			resultSet = statement.executeQuery();
-			if (resultSet.first()) {
-				do {
-					output.add(new InviteEntry(resultSet.getString("source"),
-							   resultSet.getString("home"),
-							   resultSet.getString("target"),
-							   resultSet.getTimestamp("expires"),
-							   resultSet.getString("reason")));
-				} while (resultSet.next());
+			while (resultSet.next()) {
+				output.add(new InviteEntry(resultSet.getString("source"),
+						   resultSet.getString("home"),
+						   resultSet.getString("target"),
+						   resultSet.getTimestamp("expires"),
+						   resultSet.getString("reason")));
 			}
 			
 		} catch (SQLException e) {
@@ -291,30 +237,36 @@ public class InviteManagerMySQL extends InviteManager {
 
 	@Override
 	public ArrayList<InviteEntry> listPlayerInvitesToOthers(UUID owner) {
+		return listPlayerInvitesToOthers(owner, 0, -1);
+	}
+
+	@Override
+	public ArrayList<InviteEntry> listPlayerInvitesToOthers(UUID owner, int offset, int limit) {
 		Connection connection = null;
 		PreparedStatement statement = null;
 		ResultSet resultSet = null;
 		ArrayList<InviteEntry> output = new ArrayList<InviteEntry> ();
 
 		try {
-			connection = DriverManager.getConnection(this.url, this.user, this.password);
-			if (!connection.isValid(100)) {
-				throw new SQLException();
-			}
+			connection = this.pool.getConnection();
 
 			updateInviteExpiry(connection);
 
-			statement = connection.prepareStatement("SELECT * FROM `invites` WHERE LOWER(`source`) = LOWER(?);");
-			statement.setString(1, owner.toString());
+			if (limit < 0) {
+				statement = connection.prepareStatement("SELECT * FROM `invites` WHERE `source_id` = ? ORDER BY `home_key`, `target_key`;");
+			} else {
+				statement = connection.prepareStatement("SELECT * FROM `invites` WHERE `source_id` = ? ORDER BY `home_key`, `target_key` LIMIT ? OFFSET ?;");
+				statement.setInt(2, limit);
+				statement.setInt(3, Math.max(0, offset));
+			}
+			statement.setBytes(1, SchemaManager.toBytes(owner));
 			resultSet = statement.executeQuery();
-			if (resultSet.first()) {
-				do {
-					output.add(new InviteEntry(resultSet.getString("source"),
-							   resultSet.getString("home"),
-							   resultSet.getString("target"),
-							   resultSet.getTimestamp("expires"),
-							   resultSet.getString("reason")));
-				} while (resultSet.next());
+			while (resultSet.next()) {
+				output.add(new InviteEntry(resultSet.getString("source"),
+						   resultSet.getString("home"),
+						   resultSet.getString("target"),
+						   resultSet.getTimestamp("expires"),
+						   resultSet.getString("reason")));
 			}
 			
 		} catch (SQLException e) {
@@ -346,92 +298,52 @@ public class InviteManagerMySQL extends InviteManager {
 	@Override
 	public void importInvites(ArrayList<InviteEntry> invites, boolean overwrite) {
 		Connection connection = null;
-		PreparedStatement statementExists = null;
-		PreparedStatement statementInsert = null;
-		PreparedStatement statementUpdate = null;
-		ResultSet resultSet = null;
-		boolean recordExists;
+		PreparedStatement statement = null;
+		int pending = 0;
 
 		try {
-			connection = DriverManager.getConnection(this.url, this.user, this.password);
-			if (!connection.isValid(100)) {
-				throw new SQLException();
-			}
+			connection = this.pool.getConnection();
 
 			updateInviteExpiry(connection);
 
-			statementExists = connection.prepareStatement("SELECT COUNT(*) FROM `invites` WHERE LOWER(`source`) = LOWER(?) AND LOWER(`home`) = LOWER(?) AND LOWER(`target`) = LOWER(?);");
-			statementInsert = connection.prepareStatement("INSERT INTO `invites` (`source`, `home`, `target`, `expires`, `reason`) VALUES (?, ?, ?, ?, ?)");
-			statementUpdate = connection.prepareStatement("UPDATE `invites` SET `source` = ?, `home` = ?, `target` = ?, `expires` = ?, `reason` = ? WHERE LOWER(`source`) = LOWER(?) AND LOWER(`home`) = LOWER(?) AND LOWER(`target`) = LOWER(?);");
-		
+			connection.setAutoCommit(false);
+			statement = connection.prepareStatement(overwrite ? UPSERT_INVITE : INSERT_INVITE_IGNORE);
+
 			for (InviteEntry thisEntry : invites) {
-				// Determine if entry exists.
-				recordExists = false;
-				statementExists.setString(1, thisEntry.getInviteSource());
-				statementExists.setString(2, thisEntry.getInviteHome());
-				statementExists.setString(3, thisEntry.getInviteTarget());
-				resultSet = statementExists.executeQuery();
-				if (resultSet.first()) {
-					recordExists = resultSet.getInt(1) > 0;
+				byte[] sourceId;
+				try {
+					sourceId = SchemaManager.toBytes(UUID.fromString(thisEntry.getInviteSource()));
+				} catch (IllegalArgumentException e) {
+					Messaging.logWarning("Skipping invite from unknown player " + thisEntry.getInviteSource() + ".", this.plugin);
+					continue;
 				}
-				resultSet.close();
-				resultSet = null;
-				
-				// Save the entry, if required.
-				if (recordExists) {
-					if (overwrite) {
-						statementInsert.setString(1, thisEntry.getInviteSource());
-						statementInsert.setString(2, thisEntry.getInviteHome());
-						statementInsert.setString(3, thisEntry.getInviteTarget());
-						if (thisEntry.getInviteExpires() == null) {
-							statementInsert.setNull(4, Types.TIMESTAMP);
-						} else {
-							statementInsert.setTimestamp(4, new Timestamp(thisEntry.getInviteExpires().getTime()));
-						}
-						statementInsert.setString(5, thisEntry.getInviteReason());
-						statementInsert.setString(6, thisEntry.getInviteSource());
-						statementInsert.setString(7, thisEntry.getInviteHome());
-						statementInsert.setString(8, thisEntry.getInviteTarget());
-						statementUpdate.execute();
-					}
-				} else {
-					statementInsert.setString(1, thisEntry.getInviteSource());
-					statementInsert.setString(2, thisEntry.getInviteHome());
-					statementInsert.setString(3, thisEntry.getInviteTarget());
-					if (thisEntry.getInviteExpires() == null) {
-						statementInsert.setNull(4, Types.TIMESTAMP);
-					} else {
-						statementInsert.setTimestamp(4, new Timestamp(thisEntry.getInviteExpires().getTime()));
-					}
-					statementInsert.setString(5, thisEntry.getInviteReason());
-					statementInsert.execute();
+
+				setInviteParameters(statement, sourceId, thisEntry.getInviteSource().toLowerCase(), thisEntry.getInviteHome(),
+						thisEntry.getInviteTarget().toLowerCase(), thisEntry.getInviteExpires(), thisEntry.getInviteReason());
+				statement.addBatch();
+
+				if (++pending >= this.batchSize) {
+					statement.executeBatch();
+					pending = 0;
 				}
 			}
 
-			updateInviteExpiry(connection);
+			if (pending > 0) {
+				statement.executeBatch();
+			}
 
+			connection.commit();
 		} catch (SQLException e) {
 			Messaging.logSevere("Failed to import invites!", this.plugin);
 			e.printStackTrace();
 		} finally {
-			if (resultSet != null) {
-				try {
-					resultSet.close();
-				} catch (SQLException ex) {} // Eat errors
-			}
-
-			if (statementExists != null) {
-				try {
-					statementExists.close();
-				} catch (SQLException ex) {} // Eat errors
-			}
-
-			if (statementInsert != null) {
+			if (statement != null) {
 				try {
-					statementInsert.close();
+					statement.close();
 				} catch (SQLException ex) {} // Eat errors
 			}
 
+			// Returning the connection rolls back anything left uncommitted.
 			if (connection != null) {
 				try {
 					connection.close();
@@ -440,6 +352,21 @@ public class InviteManagerMySQL extends InviteManager {
 		}
 	}
 
+	private static void setInviteParameters(PreparedStatement statement, byte[] sourceId, String source, String home, String target, Date expiry, String reason) throws SQLException {
+		statement.setBytes(1, sourceId);
+		statement.setString(2, home.toLowerCase());
+		statement.setString(3, target);
+		statement.setString(4, source);
+		statement.setString(5, home);
+		statement.setString(6, target);
+		if (expiry == null) {
+			statement.setNull(7, Types.TIMESTAMP);
+		} else {
+			statement.setTimestamp(7, new Timestamp(expiry.getTime()));
+		}
+		statement.setString(8, reason);
+	}
+
 
 	/**
 	 * Scans through the invites list, removing expired invites.
@@ -0,0 +1,135 @@
+package me.thefatdemon.multihome.data.invite;
+
+import me.thefatdemon.multihome.LatencyHistogram;
+import me.thefatdemon.multihome.MultiHome;
+import me.thefatdemon.multihome.Timings;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.UUID;
+
+/**
+ * Records the latency of every call to another InviteManager in Timings, under "invite.<backend>.<call>".
+ * Only installed while timings are enabled.
+ */
+public class TimedInviteManager extends InviteManager {
+	private final InviteManager invites;
+
+	private final LatencyHistogram clearInvites;
+	private final LatencyHistogram getInvite;
+	private final LatencyHistogram addInvite;
+	private final LatencyHistogram removeInvite;
+	private final LatencyHistogram listPlayerInvitesToMe;
+	private final LatencyHistogram listPlayerInvitesToOthers;
+	private final LatencyHistogram importInvites;
+
+	/**
+	 * @param plugin The plug-in.
+	 * @param invites Invite database to time.
+	 * @param backend Name of the storage method, used in the histogram names.
+	 */
+	public TimedInviteManager(MultiHome plugin, InviteManager invites, String backend) {
+		super(plugin);
+
+		this.invites = invites;
+
+		String prefix = "invite." + backend + ".";
+		this.clearInvites = Timings.get(prefix + "clearInvites");
+		this.getInvite = Timings.get(prefix + "getInvite");
+		this.addInvite = Timings.get(prefix + "addInvite");
+		this.removeInvite = Timings.get(prefix + "removeInvite");
+		this.listPlayerInvitesToMe = Timings.get(prefix + "listPlayerInvitesToMe");
+		this.listPlayerInvitesToOthers = Timings.get(prefix + "listPlayerInvitesToOthers");
+		this.importInvites = Timings.get(prefix + "importInvites");
+	}
+
+	@Override
+	public void clearInvites() {
+		long start = System.nanoTime();
+		try {
+			this.invites.clearInvites();
+		} finally {
+			this.clearInvites.record(System.nanoTime() - start);
+		}
+	}
+
+	@Override
+	public InviteEntry getInvite(UUID owner, String home, UUID target) {
+		long start = System.nanoTime();
+		try {
+			return this.invites.getInvite(owner, home, target);
+		} finally {
+			this.getInvite.record(System.nanoTime() - start);
+		}
+	}
+
+	@Override
+	public void addInvite(UUID owner, String home, UUID target, Date expiry, String reason) {
+		long start = System.nanoTime();
+		try {
+			this.invites.addInvite(owner, home, target, expiry, reason);
+		} finally {
+			this.addInvite.record(System.nanoTime() - start);
+		}
+	}
+
+	@Override
+	public void removeInvite(UUID owner, String home, UUID target) {
+		long start = System.nanoTime();
+		try {
+			this.invites.removeInvite(owner, home, target);
+		} finally {
+			this.removeInvite.record(System.nanoTime() - start);
+		}
+	}
+
+	@Override
+	public ArrayList<InviteEntry> listPlayerInvitesToMe(UUID target) {
+		long start = System.nanoTime();
+		try {
+			return this.invites.listPlayerInvitesToMe(target);
+		} finally {
+			this.listPlayerInvitesToMe.record(System.nanoTime() - start);
+		}
+	}
+
+	@Override
+	public ArrayList<InviteEntry> listPlayerInvitesToMe(UUID target, int offset, int limit) {
+		long start = System.nanoTime();
+		try {
+			return this.invites.listPlayerInvitesToMe(target, offset, limit);
+		} finally {
+			this.listPlayerInvitesToMe.record(System.nanoTime() - start);
+		}
+	}
+
+	@Override
+	public ArrayList<InviteEntry> listPlayerInvitesToOthers(UUID owner) {
+		long start = System.nanoTime();
+		try {
+			return this.invites.listPlayerInvitesToOthers(owner);
+		} finally {
+			this.listPlayerInvitesToOthers.record(System.nanoTime() - start);
+		}
+	}
+
+	@Override
+	public ArrayList<InviteEntry> listPlayerInvitesToOthers(UUID owner, int offset, int limit) {
+		long start = System.nanoTime();
+		try {
+			return this.invites.listPlayerInvitesToOthers(owner, offset, limit);
+		} finally {
+			this.listPlayerInvitesToOthers.record(System.nanoTime() - start);
+		}
+	}
+
+	@Override
+	public void importInvites(ArrayList<InviteEntry> invites, boolean overwrite) {
+		long start = System.nanoTime();
+		try {
+			this.invites.importInvites(invites, overwrite);
+		} finally {
+			this.importInvites.record(System.nanoTime() - start);
+		}
+	}
+}
@@ -0,0 +1,88 @@
+package me.thefatdemon.multihome.data.warmup;
+
+import me.thefatdemon.multihome.LatencyHistogram;
+import me.thefatdemon.multihome.MultiHome;
+import me.thefatdemon.multihome.Timings;
+
+import java.util.UUID;
+
+/**
+ * Records the latency of every call to another WarmUpManager in Timings, under "warmup.<backend>.<call>".
+ * Warmup tasks belong to the wrapped manager and report back to it directly.
+ * Only installed while timings are enabled.
+ */
+public class TimedWarmUpManager extends WarmUpManager {
+	private final WarmUpManager warmups;
+
+	private final LatencyHistogram clearWarmups;
+	private final LatencyHistogram getWarmup;
+	private final LatencyHistogram addWarmup;
+	private final LatencyHistogram removeWarmup;
+
+	/**
+	 * @param plugin The plug-in.
+	 * @param warmups Warmup manager to time.
+	 * @param backend Name of the storage method, used in the histogram names.
+	 */
+	public TimedWarmUpManager(MultiHome plugin, WarmUpManager warmups, String backend) {
+		super(plugin, warmups.scheduler);
+
+		this.warmups = warmups;
+
+		String prefix = "warmup." + backend + ".";
+		this.clearWarmups = Timings.get(prefix + "clearWarmups");
+		this.getWarmup = Timings.get(prefix + "getWarmup");
+		this.addWarmup = Timings.get(prefix + "addWarmup");
+		this.removeWarmup = Timings.get(prefix + "removeWarmup");
+	}
+
+	@Override
+	public void shutdown() {
+		this.warmups.shutdown();
+	}
+
+	@Override
+	public void clearWarmups() {
+		long start = System.nanoTime();
+		try {
+			this.warmups.clearWarmups();
+		} finally {
+			this.clearWarmups.record(System.nanoTime() - start);
+		}
+	}
+
+	@Override
+	public WarmUpEntry getWarmup(UUID player) {
+		long start = System.nanoTime();
+		try {
+			return this.warmups.getWarmup(player);
+		} finally {
+			this.getWarmup.record(System.nanoTime() - start);
+		}
+	}
+
+	@Override
+	public void addWarmup(WarmUpEntry warmup) {
+		long start = System.nanoTime();
+		try {
+			this.warmups.addWarmup(warmup);
+		} finally {
+			this.addWarmup.record(System.nanoTime() - start);
+		}
+	}
+
+	@Override
+	public void removeWarmup(String player) {
+		long start = System.nanoTime();
+		try {
+			this.warmups.removeWarmup(player);
+		} finally {
+			this.removeWarmup.record(System.nanoTime() - start);
+		}
+	}
+
+	@Override
+	void taskComplete(WarmUpEntry warmup) {
+		this.warmups.taskComplete(warmup);
+	}
+}
@@ -5,9 +5,12 @@ import org.bukkit.Server;
 import org.bukkit.World;
 
 import java.util.Date;
+import java.util.UUID;
 
 public class WarmUpEntry {
 	private final String player;
+	private final UUID playerId; // Null for warmups restored from storage.
+	private final boolean disrupt; // Cancelled when the player takes damage.
 	private final Date expiry;
 	private double x;
 	private double y;
@@ -19,6 +22,8 @@ public class WarmUpEntry {
 	
 	public WarmUpEntry(String player, Date expiry, String world, double x, double y, double z, float pitch, float yaw, double cost) {
 		this.player = player;
+		this.playerId = null;
+		this.disrupt = true;
 		this.expiry = expiry;
 		this.x = x;
 		this.y = y;
@@ -30,7 +35,17 @@ public class WarmUpEntry {
 	}
 	
 	public WarmUpEntry(String player, Date expiry, Location location, double cost) {
+		this(player, null, expiry, location, cost, true);
+	}
+
+	/**
+	 * @param playerId UUID of the player, so the warmup can be found from damage events.
+	 * @param disrupt True if taking damage cancels the warmup. Resolved once here instead of on every hit.
+	 */
+	public WarmUpEntry(String player, UUID playerId, Date expiry, Location location, double cost, boolean disrupt) {
 		this.player = player;
+		this.playerId = playerId;
+		this.disrupt = disrupt;
 		this.expiry = expiry;
 		this.x = location.getX();
 		this.y = location.getY();
@@ -45,6 +60,14 @@ public class WarmUpEntry {
 		return player;
 	}
 
+	public UUID getPlayerId() {
+		return playerId;
+	}
+
+	public boolean isDisruptible() {
+		return disrupt;
+	}
+
 	public Date getExpiry() {
 		return expiry;
 	}
@@ -9,11 +9,25 @@ import java.util.UUID;
  */
 public abstract class WarmUpManager {
 	MultiHome plugin;
+	final WarmUpScheduler scheduler; // Runs the warmup tasks.
 	
 	public WarmUpManager(MultiHome plugin) {
+		this(plugin, new WarmUpScheduler(plugin));
+	}
+
+	/**
+	 * For decorators, which share the scheduler of the manager they wrap instead of creating their own.
+	 */
+	WarmUpManager(MultiHome plugin, WarmUpScheduler scheduler) {
 		this.plugin = plugin;
+		this.scheduler = scheduler;
 	}
 	
+	/**
+	 * Called when the plug-in is disabled, before the warmups are cleared.
+	 */
+	public void shutdown() {}
+
 	/**
 	 * Clears all current warmups.
 	 */
@@ -21,10 +35,13 @@ public abstract class WarmUpManager {
 	
 	/**
 	 * Returns a WarmUpEntry object for the specified warmup. If warmup is not found, returns null. 
+	 * Does not allocate, so it is cheap enough to call from damage events.
 	 * @param player Player to retrieve warmup for.
 	 * @return WarmUpEntry object for this warmup. Otherwise null.
 	 */
-	public abstract WarmUpEntry getWarmup(UUID player);
+	public WarmUpEntry getWarmup(UUID player) {
+		return this.scheduler.getActive(player);
+	}
 
 	/**
 	 * Adds a new warmup or updates an existing one.
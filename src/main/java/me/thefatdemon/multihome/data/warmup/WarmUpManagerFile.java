@@ -1,14 +1,16 @@
 package me.thefatdemon.multihome.data.warmup;
 
+import me.thefatdemon.multihome.IoWatchdog;
 import me.thefatdemon.multihome.Util;
 import me.thefatdemon.multihome.Messaging;
 import me.thefatdemon.multihome.MultiHome;
 
 import java.io.*;
+import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map.Entry;
-import java.util.UUID;
 
 public class WarmUpManagerFile extends WarmUpManager {
     private final File warmupsFile;
@@ -36,19 +38,6 @@ public class WarmUpManagerFile extends WarmUpManager {
 		}
 	}
 
-	@Override
-	public WarmUpEntry getWarmup(UUID player) {
-		try {
-			if (this.warmupEntries.containsKey(player.toString())) {
-				return this.warmupEntries.get(player.toString()).getWarmup();
-			}
-		} catch (Exception e) {
-			Messaging.logSevere("Failed to get warmup: " + e.getMessage(), this.plugin);
-		}
-		
-		return null;
-	}
-
 	@Override
 	public void addWarmup(WarmUpEntry warmup) {
 		try {
@@ -60,7 +49,7 @@ public class WarmUpManagerFile extends WarmUpManager {
 			}
 	
 			// Set new warmup
-			this.warmupEntries.put(warmup.getPlayer().toLowerCase(), new WarmUpTask(plugin, warmup));
+			this.warmupEntries.put(warmup.getPlayer().toLowerCase(), new WarmUpTask(this.plugin, warmup, this.scheduler));
 	
 			saveWarmups();
 		} catch (Exception e) {
@@ -98,76 +87,108 @@ public class WarmUpManagerFile extends WarmUpManager {
 	 * Save warmups list to file. Clears the saveRequired flag.
 	 */
 	private void saveWarmups() {
+		long ioStart = IoWatchdog.start();
+
 		try {
-			FileWriter fstream = new FileWriter(this.warmupsFile);
-			BufferedWriter writer = new BufferedWriter(fstream);
+			writeWarmups(this.warmupsFile, this.warmupEntries.values());
+		} catch (Exception e) {
+			Messaging.logSevere("Could not write the warmups file.", this.plugin);
+		} finally {
+			IoWatchdog.end("warmups.txt write", ioStart);
+		}
+	}
+
+	/**
+	 * Load the warmup list from file.
+	 */
+	private void loadWarmups() {
+		try {
+			if (this.warmupsFile.exists()) {
+				LinkedHashMap<String, WarmUpEntry> warmups = readWarmups(this.warmupsFile);
+
+				for (Entry<String, WarmUpTask> entry : this.warmupEntries.entrySet()) {
+					entry.getValue().cancelWarmUp();
+				}
+
+				this.warmupEntries.clear();
+
+				for (Entry<String, WarmUpEntry> entry : warmups.entrySet()) {
+					this.warmupEntries.put(entry.getKey(), new WarmUpTask(this.plugin, entry.getValue(), this.scheduler));
+				}
+			}
+		} catch (Exception e) {
+			Messaging.logSevere("Could not read the warmups file: " + e.getMessage(), plugin);
+		}
+	}
+
+	/**
+	 * Writes warmups to a warmups.txt file. Shared with WarmUpManagerMemory.
+	 * @param file File to write.
+	 * @param tasks Pending warmups.
+	 */
+	static void writeWarmups(File file, Collection<WarmUpTask> tasks) throws IOException {
+		BufferedWriter writer = new BufferedWriter(new FileWriter(file));
 
+		try {
 			writer.write("# Stores user warmup times." + Util.newLine());
 			writer.write("# <username>;<expiry>;<X>;<Y>;<Z>;<pitch>;<yaw>;<world>;<cost>" + Util.newLine());
 			writer.write(Util.newLine());
 
-			for (Entry<String, WarmUpTask> entry : this.warmupEntries.entrySet()) {
-				WarmUpEntry home = entry.getValue().getWarmup();
-				
+			for (WarmUpTask task : tasks) {
+				WarmUpEntry home = task.getWarmup();
+
 				writer.write(home.getPlayer() + ";" + home.getExpiry().getTime() + ";" +
 						home.getX() + ";" + home.getY() + ";" + home.getZ() + ";" +
 						home.getPitch() + ";" + home.getYaw() + ";" + home.getWorld() + ";" + home.getCost() + Util.newLine());
 			}
+		} finally {
 			writer.close();
-		} catch (Exception e) {
-			Messaging.logSevere("Could not write the warmups file.", this.plugin);
 		}
 	}
 
 	/**
-	 * Load the warmup list from file.
-	 * @return True if load succeeds, otherwise false.
+	 * Reads a warmups.txt file. Entries that cannot be parsed are skipped, and only the first
+	 * entry for each player is kept. Shared with WarmUpManagerMemory.
+	 * @param file File to read.
+	 * @return LinkedHashMap<String, WarmUpEntry> Warmups by lower case player name.
 	 */
-	private void loadWarmups() {
+	static LinkedHashMap<String, WarmUpEntry> readWarmups(File file) throws IOException {
+		LinkedHashMap<String, WarmUpEntry> warmups = new LinkedHashMap<String, WarmUpEntry>();
+		BufferedReader reader = new BufferedReader(new FileReader(file));
+
 		try {
-			if (this.warmupsFile.exists()) {
-				FileReader fstream = new FileReader(this.warmupsFile);
-				BufferedReader reader = new BufferedReader(fstream);
-				
-				for (Entry<String, WarmUpTask> entry : this.warmupEntries.entrySet()) {
-					entry.getValue().cancelWarmUp();
-				}
+			String line;
 
-				this.warmupEntries.clear();
-	
-				String line = reader.readLine().trim();
-	
-				while (line != null) {
-					if (!line.startsWith("#") && line.length() > 0) {
-						String[] values = line.split(";");
-	
-						try {
-							if (values.length == 9) {
-								String player = values[0];
-								Date expiry = new Date(Long.parseLong(values[1]));
-								double x = Double.parseDouble(values[2]);
-								double y = Double.parseDouble(values[3]);
-								double z = Double.parseDouble(values[4]);
-								float pitch = Float.parseFloat(values[5]);
-								float yaw = Float.parseFloat(values[6]);
-								String worldName = values[7];
-								double amount = Double.parseDouble(values[8]);
-
-								if (!this.warmupEntries.containsKey(player.toLowerCase())) {
-									this.warmupEntries.put(player.toLowerCase(), new WarmUpTask(plugin, new WarmUpEntry(player, expiry, worldName, x, y, z, pitch, yaw, amount)));
-								}
-							}
-						} catch (Exception e) {
+			while ((line = reader.readLine()) != null) {
+				line = line.trim();
+				if (line.startsWith("#") || line.length() == 0) continue;
+
+				String[] values = line.split(";");
+
+				try {
+					if (values.length == 9) {
+						String player = values[0];
+						Date expiry = new Date(Long.parseLong(values[1]));
+						double x = Double.parseDouble(values[2]);
+						double y = Double.parseDouble(values[3]);
+						double z = Double.parseDouble(values[4]);
+						float pitch = Float.parseFloat(values[5]);
+						float yaw = Float.parseFloat(values[6]);
+						String worldName = values[7];
+						double amount = Double.parseDouble(values[8]);
+
+						if (!warmups.containsKey(player.toLowerCase())) {
+							warmups.put(player.toLowerCase(), new WarmUpEntry(player, expiry, worldName, x, y, z, pitch, yaw, amount));
 						}
 					}
-	
-					line = reader.readLine();
+				} catch (Exception ignored) {
+					// This entry failed. Ignore and continue.
 				}
-	
-				reader.close();
 			}
-		} catch (Exception e) {
-			Messaging.logSevere("Could not read the warmups file: " + e.getMessage(), plugin);
+		} finally {
+			reader.close();
 		}
+
+		return warmups;
 	}
 }
@@ -0,0 +1,108 @@
+package me.thefatdemon.multihome.data.warmup;
+
+import me.thefatdemon.multihome.Messaging;
+import me.thefatdemon.multihome.MultiHome;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map.Entry;
+
+/**
+ * Keeps warmups in memory only. Warmups last a few seconds, so nothing is written while
+ * the server runs; pending warmups can optionally be saved to warmups.txt when the plug-in
+ * is disabled and restored when it is enabled again.
+ */
+public class WarmUpManagerMemory extends WarmUpManager {
+	private final File warmupsFile;
+	private final boolean persist; // Save pending warmups on shutdown and restore them on startup.
+	private HashMap<String, WarmUpTask> warmupEntries = new HashMap<String, WarmUpTask>();
+
+	/**
+	 * @param plugin The plug-in.
+	 * @param persist True to save pending warmups on shutdown and restore them on startup.
+	 */
+	public WarmUpManagerMemory(MultiHome plugin, boolean persist) {
+		super(plugin);
+		this.warmupsFile = new File(plugin.getDataFolder(), "warmups.txt");
+		this.persist = persist;
+
+		if (this.persist) {
+			loadWarmups();
+		}
+	}
+
+	@Override
+	public void shutdown() {
+		if (this.persist) {
+			saveWarmups();
+		}
+	}
+
+	@Override
+	public void clearWarmups() {
+		for (Entry<String, WarmUpTask> entry : this.warmupEntries.entrySet()) {
+			entry.getValue().cancelWarmUp();
+		}
+
+		this.warmupEntries.clear();
+	}
+
+	@Override
+	public void addWarmup(WarmUpEntry warmup) {
+		// Remove old warmup
+		WarmUpTask task = this.warmupEntries.remove(warmup.getPlayer().toLowerCase());
+		if (task != null) {
+			task.cancelWarmUp();
+		}
+
+		// Set new warmup
+		this.warmupEntries.put(warmup.getPlayer().toLowerCase(), new WarmUpTask(this.plugin, warmup, this.scheduler));
+	}
+
+	@Override
+	public void removeWarmup(String player) {
+		WarmUpTask task = this.warmupEntries.remove(player.toLowerCase());
+
+		if (task != null) {
+			task.cancelWarmUp();
+		}
+	}
+
+	@Override
+	void taskComplete(WarmUpEntry warmup) {
+		this.warmupEntries.remove(warmup.getPlayer().toLowerCase());
+	}
+
+	/**
+	 * Writes pending warmups to file, so they survive a restart.
+	 */
+	private void saveWarmups() {
+		try {
+			WarmUpManagerFile.writeWarmups(this.warmupsFile, this.warmupEntries.values());
+		} catch (Exception e) {
+			Messaging.logSevere("Could not write the warmups file.", this.plugin);
+		}
+	}
+
+	/**
+	 * Restores warmups saved by the last shutdown, then removes the file so they are only restored once.
+	 */
+	private void loadWarmups() {
+		if (!this.warmupsFile.exists()) return;
+
+		try {
+			for (Entry<String, WarmUpEntry> entry : WarmUpManagerFile.readWarmups(this.warmupsFile).entrySet()) {
+				if (!this.warmupEntries.containsKey(entry.getKey())) {
+					this.warmupEntries.put(entry.getKey(), new WarmUpTask(this.plugin, entry.getValue(), this.scheduler));
+				}
+			}
+		} catch (Exception e) {
+			Messaging.logSevere("Could not read the warmups file: " + e.getMessage(), this.plugin);
+			return;
+		}
+
+		if (!this.warmupsFile.delete()) {
+			Messaging.logWarning("Could not remove the restored warmups file.", this.plugin);
+		}
+	}
+}
@@ -1,42 +1,23 @@
 package me.thefatdemon.multihome.data.warmup;
 
-import me.thefatdemon.multihome.Settings;
 import me.thefatdemon.multihome.Messaging;
 import me.thefatdemon.multihome.MultiHome;
+import me.thefatdemon.multihome.data.ConnectionPool;
 
 import java.sql.*;
 import java.util.HashMap;
 import java.util.Map.Entry;
-import java.util.UUID;
 
 public class WarmUpManagerMySQL extends WarmUpManager {
-	private final String url; // Database URL to connect to.
-	private final String user; // MySQL user to connect as.
-	private final String password; // Password for MySQL user.
+	private final ConnectionPool pool; // Shared database connections.
 
 	private HashMap<String, WarmUpTask> warmupEntries = new HashMap<String, WarmUpTask>();
 	
-	public WarmUpManagerMySQL(MultiHome plugin) {
+	public WarmUpManagerMySQL(MultiHome plugin, ConnectionPool pool) {
 		super(plugin);
 
-		// Save settings
-		this.url = Settings.getDataStoreSettingString("sql", "url");
-		this.user = Settings.getDataStoreSettingString("sql", "user");
-		this.password = Settings.getDataStoreSettingString("sql", "pass");
+		this.pool = pool;
 
-		// Test connection
-		try {
-			Connection connection = DriverManager.getConnection(this.url, this.user, this.password);
-			if (!connection.isValid(100)) {
-				throw new SQLException();
-			} else {
-				connection.close();
-			}
-		} catch (SQLException e) {
-			Messaging.logSevere("Failed to contact MySQL server: " + e.getMessage(), this.plugin);
-			return;
-		}
-		
 		loadWarmups();
 	}
 	
@@ -46,10 +27,7 @@ public class WarmUpManagerMySQL extends WarmUpManager {
 		PreparedStatement statement = null;
 
 		try {
-			connection = DriverManager.getConnection(this.url, this.user, this.password);
-			if (!connection.isValid(100)) {
-				throw new SQLException();
-			}
+			connection = this.pool.getConnection();
 
 			// Clear warmups in database
 			statement = connection.prepareStatement("DELETE FROM `warmups`;");
@@ -77,33 +55,17 @@ public class WarmUpManagerMySQL extends WarmUpManager {
 		}
 	}
 
-	@Override
-	public WarmUpEntry getWarmup(UUID player) {
-		try {
-			if (this.warmupEntries.containsKey(player.toString())) {
-				return this.warmupEntries.get(player.toString()).getWarmup();
-			}
-		} catch (Exception e) {
-			Messaging.logSevere("Failed to get warmup: " + e.getMessage(), this.plugin);
-		}
-		
-		return null;
-	}
-
 	@Override
 	public void addWarmup(WarmUpEntry warmup) {
 		Connection connection = null;
 		PreparedStatement statement = null;
 
 		try {
-			connection = DriverManager.getConnection(this.url, this.user, this.password);
-			if (!connection.isValid(100)) {
-				throw new SQLException();
-			}
+			connection = this.pool.getConnection();
 
 			// Remove warmup from database
-			statement = connection.prepareStatement("DELETE FROM `warmups` WHERE LOWER(`player`) = LOWER(?);");
-			statement.setString(1, warmup.getPlayer());
+			statement = connection.prepareStatement("DELETE FROM `warmups` WHERE `player_key` = ?;");
+			statement.setString(1, warmup.getPlayer().toLowerCase());
 			statement.execute();
 			statement.close();
 			statement = null;
@@ -116,7 +78,7 @@ public class WarmUpManagerMySQL extends WarmUpManager {
 			}
 
 			// Insert warmup into database
-			statement = connection.prepareStatement("INSERT INTO `warmups` (`player`, `expiry`, `world`, `x`, `y`, `z`, `pitch`, `yaw`, `cost`) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?);");
+			statement = connection.prepareStatement("INSERT INTO `warmups` (`player`, `expiry`, `world`, `x`, `y`, `z`, `pitch`, `yaw`, `cost`, `player_key`) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?);");
 			statement.setString(1, warmup.getPlayer());
 			statement.setTimestamp(2, new Timestamp(warmup.getExpiry().getTime()));
 			statement.setString(3, warmup.getWorld());
@@ -126,12 +88,13 @@ public class WarmUpManagerMySQL extends WarmUpManager {
 			statement.setFloat(7, warmup.getPitch());
 			statement.setFloat(8, warmup.getYaw());
 			statement.setDouble(9, warmup.getCost());
+			statement.setString(10, warmup.getPlayer().toLowerCase());
 			statement.execute();
 			statement.close();
 			statement = null;
 
 			// Create warmup task
-			this.warmupEntries.put(warmup.getPlayer().toLowerCase(), new WarmUpTask(plugin, warmup));
+			this.warmupEntries.put(warmup.getPlayer().toLowerCase(), new WarmUpTask(this.plugin, warmup, this.scheduler));
 		} catch (Exception e) {
 			Messaging.logSevere("Failed to set warmup: " + e.getMessage(), this.plugin);
 		} finally {
@@ -155,14 +118,11 @@ public class WarmUpManagerMySQL extends WarmUpManager {
 		PreparedStatement statement = null;
 
 		try {
-			connection = DriverManager.getConnection(this.url, this.user, this.password);
-			if (!connection.isValid(100)) {
-				throw new SQLException();
-			}
+			connection = this.pool.getConnection();
 
 			// Remove warmup from database
-			statement = connection.prepareStatement("DELETE FROM `warmups` WHERE LOWER(`player`) = LOWER(?);");
-			statement.setString(1, player);
+			statement = connection.prepareStatement("DELETE FROM `warmups` WHERE `player_key` = ?;");
+			statement.setString(1, player.toLowerCase());
 			statement.execute();
 			statement.close();
 			statement = null;
@@ -195,14 +155,11 @@ public class WarmUpManagerMySQL extends WarmUpManager {
 		PreparedStatement statement = null;
 
 		try {
-			connection = DriverManager.getConnection(this.url, this.user, this.password);
-			if (!connection.isValid(100)) {
-				throw new SQLException();
-			}
+			connection = this.pool.getConnection();
 
 			// Remove warmup from database
-			statement = connection.prepareStatement("DELETE FROM `warmups` WHERE LOWER(`player`) = LOWER(?);");
-			statement.setString(1, warmup.getPlayer());
+			statement = connection.prepareStatement("DELETE FROM `warmups` WHERE `player_key` = ?;");
+			statement.setString(1, warmup.getPlayer().toLowerCase());
 			statement.execute();
 			statement.close();
 			statement = null;
@@ -237,28 +194,24 @@ public class WarmUpManagerMySQL extends WarmUpManager {
 		ResultSet resultSet = null;
 
 		try {
-			connection = DriverManager.getConnection(this.url, this.user, this.password);
-			if (!connection.isValid(100)) {
-				throw new SQLException();
-			}
+			connection = this.pool.getConnection();
 
 			statement = connection.prepareStatement("SELECT * FROM `warmups`;");
 			resultSet = statement.executeQuery();
-			if (resultSet.first()) {
+			while (resultSet.next()) {
 				try {
 					WarmUpEntry warmup = new WarmUpEntry(resultSet.getString("player"), 
-							resultSet.getTimestamp("timeout"),
+							resultSet.getTimestamp("expiry"),
 							resultSet.getString("world"), 
 							resultSet.getDouble("x"),
 							resultSet.getDouble("y"),
 							resultSet.getDouble("z"),
-							resultSet.getFloat("yaw"),
 							resultSet.getFloat("pitch"),
+							resultSet.getFloat("yaw"),
 							resultSet.getDouble("cost"));
 					
-					this.warmupEntries.put(resultSet.getString("player").toLowerCase(), new WarmUpTask(this.plugin, warmup));
+					this.warmupEntries.put(resultSet.getString("player_key"), new WarmUpTask(this.plugin, warmup, this.scheduler));
 				} catch (Exception ex) {}
-
 			}
 			
 		} catch (Exception e) {
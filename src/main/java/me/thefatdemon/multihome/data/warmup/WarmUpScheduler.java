@@ -0,0 +1,153 @@
+package me.thefatdemon.multihome.data.warmup;
+
+import me.thefatdemon.multihome.Messaging;
+import me.thefatdemon.multihome.MultiHome;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.UUID;
+
+/*
+ * This class should not be visible outside the Data package.
+ */
+
+/**
+ * Runs warmups from a hashed timing wheel driven by one repeating task, instead of one
+ * scheduled task per warmup. Each slot of the wheel holds an intrusive linked list of
+ * warmups, so scheduling and cancelling are constant time. Warmups due in the same tick
+ * fire together. The tick task only runs while warmups are pending.
+ * Pending warmups are also indexed by player UUID for the damage listener.
+ * Must only be used from the server thread.
+ */
+class WarmUpScheduler implements Runnable {
+	private static final int WHEEL_SIZE = 512; // Slots; one per tick. Must be a power of two.
+	private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+
+	private final MultiHome plugin;
+	private final WarmUpTask[] wheel = new WarmUpTask[WHEEL_SIZE];
+	private final ArrayList<WarmUpTask> due = new ArrayList<WarmUpTask>();
+	private final HashMap<UUID, WarmUpTask> active = new HashMap<UUID, WarmUpTask>();
+
+	private long currentTick = 0;
+	private int pending = 0;
+	private BukkitTask tickTask;
+
+	public WarmUpScheduler(MultiHome plugin) {
+		this.plugin = plugin;
+	}
+
+	/**
+	 * Schedules a warmup to run after the given number of ticks.
+	 */
+	public void schedule(WarmUpTask task, long delay) {
+		if (task.slot >= 0) cancel(task);
+
+		task.deadline = this.currentTick + Math.max(1, delay);
+		task.slot = (int) (task.deadline & WHEEL_MASK);
+		task.previous = null;
+		task.next = this.wheel[task.slot];
+		if (task.next != null) task.next.previous = task;
+		this.wheel[task.slot] = task;
+
+		UUID playerId = task.getWarmup().getPlayerId();
+		if (playerId != null) {
+			this.active.put(playerId, task);
+		}
+
+		if (this.pending++ == 0) {
+			this.tickTask = this.plugin.getServer().getScheduler().runTaskTimer(this.plugin, this, 1, 1);
+		}
+	}
+
+	/**
+	 * Removes a warmup from the wheel. Does nothing if it is not scheduled.
+	 */
+	public void cancel(WarmUpTask task) {
+		if (task.slot < 0) return;
+
+		unlink(task);
+
+		if (--this.pending == 0) {
+			stop();
+		}
+	}
+
+	/**
+	 * @return WarmUpEntry Pending warmup of the player, or null if there is none.
+	 */
+	public WarmUpEntry getActive(UUID player) {
+		if (this.active.isEmpty()) return null;
+
+		WarmUpTask task = this.active.get(player);
+		return task == null ? null : task.getWarmup();
+	}
+
+	/**
+	 * @return int Number of warmups waiting to run.
+	 */
+	public int getPending() {
+		return this.pending;
+	}
+
+	@Override
+	public void run() {
+		this.currentTick++;
+
+		int slot = (int) (this.currentTick & WHEEL_MASK);
+		WarmUpTask task = this.wheel[slot];
+
+		// Unlink everything due first, so warmups can reschedule while the batch runs.
+		while (task != null) {
+			WarmUpTask next = task.next;
+			if (task.deadline <= this.currentTick) {
+				unlink(task);
+				this.pending--;
+				this.due.add(task);
+			}
+			task = next;
+		}
+
+		if (this.pending == 0) {
+			stop();
+		}
+
+		if (this.due.isEmpty()) return;
+
+		for (int index = 0; index < this.due.size(); index++) {
+			try {
+				this.due.get(index).run();
+			} catch (Exception e) {
+				Messaging.logSevere("Failed to complete warmup: " + e.getMessage(), this.plugin);
+			}
+		}
+		this.due.clear();
+	}
+
+	private void unlink(WarmUpTask task) {
+		if (task.previous != null) {
+			task.previous.next = task.next;
+		} else {
+			this.wheel[task.slot] = task.next;
+		}
+		if (task.next != null) {
+			task.next.previous = task.previous;
+		}
+
+		task.previous = null;
+		task.next = null;
+		task.slot = -1;
+
+		UUID playerId = task.getWarmup().getPlayerId();
+		if (playerId != null && this.active.get(playerId) == task) {
+			this.active.remove(playerId);
+		}
+	}
+
+	private void stop() {
+		if (this.tickTask != null) {
+			this.tickTask.cancel();
+			this.tickTask = null;
+		}
+	}
+}
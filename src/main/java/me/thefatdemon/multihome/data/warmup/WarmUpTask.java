@@ -17,20 +17,27 @@ import java.util.Date;
 class WarmUpTask implements Runnable {
 	private final MultiHome plugin;
 	private final WarmUpEntry warmup;
-	private final int taskId;
+	private final WarmUpScheduler scheduler;
+
+	// Position in the scheduler's timing wheel.
+	int slot = -1;
+	long deadline;
+	WarmUpTask previous;
+	WarmUpTask next;
 	
-	public WarmUpTask(MultiHome plugin, WarmUpEntry warmup) {
+	public WarmUpTask(MultiHome plugin, WarmUpEntry warmup, WarmUpScheduler scheduler) {
 		this.plugin = plugin;
 		this.warmup = warmup;
+		this.scheduler = scheduler;
 
 		long delay = (this.warmup.getExpiry().getTime() - (new Date()).getTime()) / 50;
 		if (delay < 1) delay = 1;
 
-		this.taskId = this.plugin.getServer().getScheduler().scheduleSyncDelayedTask(this.plugin, this, delay);
+		this.scheduler.schedule(this, delay);
 	}
 
 	public void cancelWarmUp() {
-		this.plugin.getServer().getScheduler().cancelTask(taskId);
+		this.scheduler.cancel(this);
 	}
 
 	public WarmUpEntry getWarmup() {